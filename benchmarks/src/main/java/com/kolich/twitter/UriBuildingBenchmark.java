@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter;
+
+import static com.kolich.twitter.TwitterApiClient.addCursoredUserListParameters;
+import static com.kolich.twitter.TwitterApiClient.addTweetSearchParameters;
+import static com.kolich.twitter.TwitterApiClient.addUserTimelineParameters;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Building the final request URI the way every closure's getFinalURI and
+ * before do: parse the endpoint URL into a {@link URIBuilder}, add the
+ * query parameters with the client's own parameter builders, build the
+ * URI and hand the parameters on to the signer.  Compared against
+ * parsing the parameters back out of the built URI, which is what
+ * signing used to cost on top.
+ *
+ * Lives in the client's package, not with the other benchmarks, because
+ * the parameter builders are package-private.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UriBuildingBenchmark {
+
+	private static final String USER_TIMELINE_URL =
+		"https://api.twitter.com/1.1/statuses/user_timeline.json";
+	private static final String SEARCH_URL =
+		"https://api.twitter.com/1.1/search/tweets.json";
+	private static final String FRIENDS_LIST_URL =
+		"https://api.twitter.com/1.1/friends/list.json";
+
+	private static final String UTF_8 = "UTF-8";
+
+	public String username = "markkolich";
+	public String query = "#kolich OR from:markkolich \"twitter api\"";
+	public String cursor = "1374004777531007833";
+	public long maxId = 477777777777777777L;
+	public long sinceId = 477777777777777776L;
+
+	private URIBuilder userTimelineBuilder() throws Exception {
+		return addUserTimelineParameters(new URIBuilder(USER_TIMELINE_URL),
+			username, 200, maxId, 0L);
+	}
+
+	@Benchmark
+	public URI userTimeline() throws Exception {
+		return userTimelineBuilder().build();
+	}
+
+	@Benchmark
+	public List<NameValuePair> userTimelineWithQueryParams() throws Exception {
+		final URIBuilder builder = userTimelineBuilder();
+		builder.build();
+		return builder.getQueryParams();
+	}
+
+	@Benchmark
+	public List<NameValuePair> userTimelineReparsed() throws Exception {
+		return URLEncodedUtils.parse(userTimelineBuilder().build(), UTF_8);
+	}
+
+	@Benchmark
+	public URI search() throws Exception {
+		return addTweetSearchParameters(new URIBuilder(SEARCH_URL), query,
+			100, 0L, sinceId).build();
+	}
+
+	@Benchmark
+	public URI cursoredUserList() throws Exception {
+		return addCursoredUserListParameters(new URIBuilder(FRIENDS_LIST_URL),
+			username, cursor).build();
+	}
+
+}
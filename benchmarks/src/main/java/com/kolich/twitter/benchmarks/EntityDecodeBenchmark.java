@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.benchmarks;
+
+import static com.kolich.twitter.entities.TwitterEntityCodec.LIST_OF_TWEETS_TYPE;
+import static com.kolich.twitter.entities.TwitterEntityCodec.TWEET_SEARCH_RESULTS_TYPE;
+import static com.kolich.twitter.entities.TwitterEntityCodec.TWEET_TYPE;
+import static com.kolich.twitter.entities.TwitterEntityCodec.USER_LIST_TYPE;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.gson.stream.JsonReader;
+import com.kolich.twitter.entities.Tweet;
+import com.kolich.twitter.entities.TweetSearchResults;
+import com.kolich.twitter.entities.TwitterEntityCallback;
+import com.kolich.twitter.entities.TwitterEntityCodec;
+import com.kolich.twitter.entities.UserList;
+
+/**
+ * Decoding each of the response shapes the client maps, from canned JSON
+ * of the given size, with the shared codec: a user timeline, a page of
+ * friends or followers, and a page of search results.  The timeline is
+ * also pulled through the streaming decoder the callback methods use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EntityDecodeBenchmark {
+
+	@Param({"20", "200"})
+	public int entities;
+
+	private String tweets_;
+	private String userList_;
+	private String searchResults_;
+
+	@Setup
+	public void setup() {
+		tweets_ = TwitterJsonFixtures.tweets(entities);
+		userList_ = TwitterJsonFixtures.userList(entities);
+		searchResults_ = TwitterJsonFixtures.searchResults(entities);
+	}
+
+	@Benchmark
+	public List<Tweet> decodeTweets() {
+		return TwitterEntityCodec.fromJson(tweets_, LIST_OF_TWEETS_TYPE);
+	}
+
+	@Benchmark
+	public int streamTweets(final Blackhole bh) throws IOException {
+		return TwitterEntityCodec.streamArray(new JsonReader(
+			new StringReader(tweets_)), TWEET_TYPE,
+			new TwitterEntityCallback<Tweet>() {
+				@Override
+				public void onEntity(final Tweet tweet) {
+					bh.consume(tweet);
+				}
+			});
+	}
+
+	@Benchmark
+	public UserList decodeUserList() {
+		return TwitterEntityCodec.fromJson(userList_, USER_LIST_TYPE);
+	}
+
+	@Benchmark
+	public TweetSearchResults decodeSearchResults() {
+		return TwitterEntityCodec.fromJson(searchResults_,
+			TWEET_SEARCH_RESULTS_TYPE);
+	}
+
+}
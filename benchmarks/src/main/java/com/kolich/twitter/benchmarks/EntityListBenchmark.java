@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.kolich.twitter.entities.Tweet;
+import com.kolich.twitter.entities.TweetList;
+
+/**
+ * Reading and accumulating large {@link TweetList}s.  The "copying"
+ * variants do what the LinkedList backed lists used to: a full copy into
+ * a new LinkedList on every read, and a crawl that re-reads everything
+ * gathered so far to add each page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EntityListBenchmark {
+
+	@Param({"100000"})
+	public int tweets;
+
+	@Param({"200"})
+	public int pageSize;
+
+	private TweetList list_;
+	private List<TweetList> pages_;
+
+	@Setup
+	public void setup() {
+		final List<Tweet> all = new ArrayList<Tweet>(tweets);
+		pages_ = new ArrayList<TweetList>();
+		List<Tweet> page = new ArrayList<Tweet>(pageSize);
+		final long now = System.currentTimeMillis();
+		for(int i = 0; i < tweets; i++) {
+			final Tweet tweet = new Tweet(Long.toString(477777777777777777L - i),
+				new Date(now - (i * 1000L)), "Tweet number " + i);
+			all.add(tweet);
+			page.add(tweet);
+			if(page.size() == pageSize) {
+				pages_.add(new TweetList(page));
+				page = new ArrayList<Tweet>(pageSize);
+			}
+		}
+		if(!page.isEmpty()) {
+			pages_.add(new TweetList(page));
+		}
+		list_ = new TweetList(all);
+	}
+
+	@Benchmark
+	public long iterate() {
+		long sum = 0L;
+		for(final Tweet tweet : list_.getTweets()) {
+			sum += tweet.getText().length();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public long iterateCopying() {
+		long sum = 0L;
+		for(final Tweet tweet : new LinkedList<Tweet>(list_.getTweets())) {
+			sum += tweet.getText().length();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public TweetList appendPages() {
+		final TweetList crawl = new TweetList();
+		for(final TweetList page : pages_) {
+			crawl.append(page);
+		}
+		return crawl;
+	}
+
+	@Benchmark
+	public TweetList mergePages() {
+		return TweetList.merge(pages_);
+	}
+
+	@Benchmark
+	public TweetList appendPagesCopying() {
+		TweetList crawl = new TweetList(new LinkedList<Tweet>());
+		for(final TweetList page : pages_) {
+			final List<Tweet> tweets = new LinkedList<Tweet>(
+				crawl.getTweets());
+			tweets.addAll(new LinkedList<Tweet>(page.getTweets()));
+			crawl = new TweetList(tweets);
+		}
+		return crawl;
+	}
+
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.HttpRoutePlanner;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.kolich.common.functional.either.Either;
+import com.kolich.http.common.response.HttpFailure;
+import com.kolich.twitter.TwitterApiClient;
+import com.kolich.twitter.TwitterApiClientBuilder;
+import com.kolich.twitter.entities.Tweet;
+import com.kolich.twitter.entities.TwitterEntityCallback;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A whole getTweets call (rate limiter, URI building, signing, a keep-alive
+ * round trip and decoding) against an in-process HTTP server that answers
+ * every request with the same canned timeline.  Every request the client
+ * makes for api.twitter.com is routed to the local server instead, over
+ * plain HTTP, so nothing but the client itself is being measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GetTweetsEndToEndBenchmark {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	@Param({"20", "200"})
+	public int tweets;
+
+	private HttpServer server_;
+	private ExecutorService serverExecutor_;
+	private CloseableHttpClient httpClient_;
+	private TwitterApiClient client_;
+
+	@Setup
+	public void setup() throws IOException {
+		final byte[] body = TwitterJsonFixtures.tweets(tweets).getBytes(UTF_8);
+		// Otherwise Nagle's algorithm holds back small response bodies
+		// until the client's delayed ACK, ~40ms a request.
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		server_ = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server_.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().set("Content-Type",
+					"application/json;charset=utf-8");
+				exchange.sendResponseHeaders(200, body.length);
+				final OutputStream os = exchange.getResponseBody();
+				try {
+					os.write(body);
+				} finally {
+					os.close();
+				}
+			}
+		});
+		serverExecutor_ = Executors.newCachedThreadPool();
+		server_.setExecutor(serverExecutor_);
+		server_.start();
+		final HttpHost local = new HttpHost("127.0.0.1",
+			server_.getAddress().getPort(), "http");
+		final PoolingHttpClientConnectionManager manager =
+			new PoolingHttpClientConnectionManager();
+		manager.setDefaultMaxPerRoute(64);
+		manager.setMaxTotal(64);
+		httpClient_ = HttpClients.custom()
+			.setConnectionManager(manager)
+			.setRoutePlanner(new HttpRoutePlanner() {
+				@Override
+				public HttpRoute determineRoute(final HttpHost target,
+					final HttpRequest request, final HttpContext context) {
+					return new HttpRoute(local);
+				}
+			})
+			.build();
+		client_ = new TwitterApiClientBuilder()
+			.setCredentials("consumerKey", "consumerSecret", "token",
+				"tokenSecret")
+			.setHttpClient(httpClient_)
+			.build();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		httpClient_.close();
+		server_.stop(0);
+		serverExecutor_.shutdownNow();
+	}
+
+	@Benchmark
+	public List<Tweet> getTweets() {
+		final Either<HttpFailure,List<Tweet>> result =
+			client_.getTweets("markkolich", tweets, 0L, 0L);
+		if(!result.success()) {
+			throw new IllegalStateException("Request failed: " +
+				result.left().getStatusCode(), result.left().getCause());
+		}
+		return result.right();
+	}
+
+	@Benchmark
+	public Integer getTweetsStreaming(final Blackhole bh) {
+		final Either<HttpFailure,Integer> result =
+			client_.getTweets("markkolich", tweets, 0L, 0L, null,
+				new TwitterEntityCallback<Tweet>() {
+					@Override
+					public void onEntity(final Tweet tweet) {
+						bh.consume(tweet);
+					}
+				});
+		if(!result.success()) {
+			throw new IllegalStateException("Request failed: " +
+				result.left().getStatusCode(), result.left().getCause());
+		}
+		return result.right();
+	}
+
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.benchmarks;
+
+import static com.kolich.twitter.entities.TwitterEntity.getNewTwitterGsonInstance;
+import static com.kolich.twitter.entities.TwitterEntityCodec.LIST_OF_TWEETS_TYPE;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.kolich.twitter.entities.Tweet;
+import com.kolich.twitter.entities.TwitterEntityCodec;
+
+/**
+ * Compares building a new {@link Gson} instance for every call (the way
+ * the client used to work) against the shared {@link TwitterEntityCodec}.
+ * Run with "-prof gc" to see the per-call allocation rate alongside the
+ * throughput numbers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GsonCodecBenchmark {
+
+	@Param({"1", "20", "200"})
+	public int tweets;
+
+	private String json_;
+	private Tweet tweet_;
+
+	@Setup
+	public void setup() {
+		json_ = TwitterJsonFixtures.tweets(tweets);
+		tweet_ = TwitterEntityCodec.fromJson(TwitterJsonFixtures.tweet(0),
+			Tweet.class);
+	}
+
+	@Benchmark
+	public Gson buildGsonInstance() {
+		return getNewTwitterGsonInstance();
+	}
+
+	@Benchmark
+	public List<Tweet> decodeWithNewGsonPerCall() {
+		return getNewTwitterGsonInstance().fromJson(json_,
+			new TypeToken<List<Tweet>>(){}.getType());
+	}
+
+	@Benchmark
+	public List<Tweet> decodeWithSharedCodec() {
+		return TwitterEntityCodec.fromJson(json_, LIST_OF_TWEETS_TYPE);
+	}
+
+	@Benchmark
+	public String toStringWithNewGsonPerCall() {
+		return getNewTwitterGsonInstance().toJson(tweet_);
+	}
+
+	@Benchmark
+	public String toStringWithSharedCodec() {
+		return tweet_.toString();
+	}
+
+}
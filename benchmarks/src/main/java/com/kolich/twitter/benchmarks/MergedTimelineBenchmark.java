@@ -0,0 +1,119 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.kolich.twitter.entities.Tweet;
+import com.kolich.twitter.feed.MergedTimeline;
+
+/**
+ * Building a home feed out of many timelines: the k-way merge, in full
+ * and cut off at the first page, against concatenating, sorting and
+ * deduplicating everything.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MergedTimelineBenchmark {
+
+	@Param({"300"})
+	public int timelines;
+
+	@Param({"200"})
+	public int tweetsPerTimeline;
+
+	public int feedSize = 200;
+
+	private List<List<Tweet>> timelines_;
+
+	@Setup
+	public void setup() {
+		final Random random = new Random(42L);
+		final long now = System.currentTimeMillis();
+		timelines_ = new ArrayList<List<Tweet>>(timelines);
+		for(int i = 0; i < timelines; i++) {
+			final List<Tweet> timeline = new ArrayList<Tweet>(
+				tweetsPerTimeline);
+			long id = 477777777777777777L;
+			for(int j = 0; j < tweetsPerTimeline; j++) {
+				// Steps of at least 1 << 16 so rounding an id down below
+				// keeps each timeline newest first.
+				id -= (1 << 16) + random.nextInt(1 << 20);
+				// Roughly one tweet in ten is shared with other timelines.
+				final long tweetId = (random.nextInt(10) == 0) ?
+					id & ~0xFFFFL : id;
+				timeline.add(new Tweet(Long.toString(tweetId),
+					new Date(now - ((477777777777777777L - tweetId) >> 12)),
+					"Tweet " + tweetId));
+			}
+			timelines_.add(timeline);
+		}
+	}
+
+	@Benchmark
+	public List<Tweet> merge() {
+		return new MergedTimeline(timelines_).toList();
+	}
+
+	@Benchmark
+	public List<Tweet> mergeFirstPage() {
+		return new MergedTimeline(timelines_, feedSize).toList();
+	}
+
+	@Benchmark
+	public List<Tweet> concatAndSort() {
+		final List<Tweet> all = new ArrayList<Tweet>();
+		for(final List<Tweet> timeline : timelines_) {
+			all.addAll(timeline);
+		}
+		Collections.sort(all);
+		return new ArrayList<Tweet>(new LinkedHashSet<Tweet>(all));
+	}
+
+	@Benchmark
+	public List<Tweet> concatAndSortFirstPage() {
+		final List<Tweet> feed = concatAndSort();
+		return feed.subList(0, Math.min(feedSize, feed.size()));
+	}
+
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import oauth.signpost.OAuthConsumer;
+import oauth.signpost.commonshttp.CommonsHttpOAuthConsumer;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.kolich.twitter.signpost.TwitterApiCommonsHttpOAuthConsumer;
+import com.kolich.twitter.signpost.TwitterApiOAuthSigner;
+
+/**
+ * OAuth signatures per second, per core, for the default credentials:
+ * a new Signpost consumer per request (what the client used to do), a
+ * single shared Signpost consumer, and the pre-built native signer, both
+ * parsing the query back out of the URI and taking the parameters as
+ * assembled by {@link URIBuilder} (what the client does now).
+ * Re-run with "-t" set to the number of cores to see how each scales;
+ * the shared Signpost consumer has to be locked around every signature.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OAuthSigningBenchmark {
+
+	private static final String CONSUMER_KEY = "xvz1evFS4wEEPTGEFPHBog";
+	private static final String CONSUMER_SECRET =
+		"kAcSOqF21Fu85e7zjz7ZN2U4ZRhfV3WpwPAoE3Z7kBw";
+	private static final String TOKEN =
+		"370773112-GmHxMAgYyLbNEtIKZeRNFsMKPR9EyMZeS9weJAEb";
+	private static final String TOKEN_SECRET =
+		"LswwdoUaIvS8ltyTt5jkRh4J50vUPVVHtR2YPi5kE";
+
+	@Param({"https://api.twitter.com/1.1/users/show.json?screen_name=markkolich",
+		"https://api.twitter.com/1.1/search/tweets.json?q=%23java%20OR%20%23scala&count=100&result_type=recent&since_id=210462857140252672"})
+	public String uri;
+
+	private OAuthConsumer sharedConsumer_;
+	private TwitterApiOAuthSigner signer_;
+	private List<NameValuePair> queryParams_;
+
+	@Setup
+	public void setup() throws Exception {
+		sharedConsumer_ = newConsumer();
+		signer_ = new TwitterApiOAuthSigner(CONSUMER_KEY, CONSUMER_SECRET,
+			TOKEN, TOKEN_SECRET);
+		queryParams_ = new URIBuilder(uri).getQueryParams();
+		// Sanity check, both have to produce the same signature given
+		// the same nonce and timestamp.
+		final OAuthConsumer fixed = new CommonsHttpOAuthConsumer(
+			CONSUMER_KEY, CONSUMER_SECRET) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected String generateNonce() {
+				return "kYjzVBB8Y0ZFabxSWbWovY3uYSQ2pTgmZeNu2VS4cg";
+			}
+			@Override
+			protected String generateTimestamp() {
+				return "1318622958";
+			}
+		};
+		fixed.setTokenWithSecret(TOKEN, TOKEN_SECRET);
+		final HttpGet expected = new HttpGet(uri), actual = new HttpGet(uri);
+		fixed.sign(expected);
+		signer_.sign(actual, "kYjzVBB8Y0ZFabxSWbWovY3uYSQ2pTgmZeNu2VS4cg",
+			1318622958L);
+		if(!expected.getFirstHeader("Authorization").getValue().equals(
+			actual.getFirstHeader("Authorization").getValue())) {
+			throw new IllegalStateException("Native signer doesn't agree " +
+				"with Signpost.");
+		}
+	}
+
+	private static final OAuthConsumer newConsumer() {
+		final OAuthConsumer consumer = new TwitterApiCommonsHttpOAuthConsumer(
+			CONSUMER_KEY, CONSUMER_SECRET);
+		consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
+		return consumer;
+	}
+
+	@Benchmark
+	public HttpGet signpostNewConsumerPerRequest() throws Exception {
+		final HttpGet request = new HttpGet(uri);
+		newConsumer().sign(request);
+		return request;
+	}
+
+	@Benchmark
+	public HttpGet signpostSharedConsumer() throws Exception {
+		final HttpGet request = new HttpGet(uri);
+		synchronized(sharedConsumer_) {
+			sharedConsumer_.sign(request);
+		}
+		return request;
+	}
+
+	@Benchmark
+	public HttpGet nativeSigner() throws Exception {
+		final HttpGet request = new HttpGet(uri);
+		signer_.sign(request);
+		return request;
+	}
+
+	@Benchmark
+	public HttpGet nativeSignerWithBuiltParams() throws Exception {
+		final HttpGet request = new HttpGet(uri);
+		signer_.sign(request, queryParams_);
+		return request;
+	}
+
+}
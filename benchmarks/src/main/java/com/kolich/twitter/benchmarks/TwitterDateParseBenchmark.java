@@ -0,0 +1,118 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.benchmarks;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.kolich.twitter.date.TwitterDateFormat;
+import com.kolich.twitter.date.TwitterDateParser;
+
+/**
+ * Parses Twitter dates from every available core at once, comparing the
+ * old single-lock SimpleDateFormat path against the lock-free parser.
+ * Re-run with "-t 1" for the single threaded baseline; the lock-free
+ * variants should scale close to linearly while the legacy one won't.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(Threads.MAX)
+public class TwitterDateParseBenchmark {
+
+	private static final String API_DATE = "Thu May 13 14:24:37 +0000 2010";
+	private static final String SEARCH_API_DATE = "Mon, 21 Jun 2010 18:56:18 +0000";
+
+	// A faithful copy of the synchronized implementation this replaced.
+	private static final DateFormat legacyApiFormat__;
+	private static final DateFormat legacySearchApiFormat__;
+	static {
+		legacyApiFormat__ = new SimpleDateFormat(
+			TwitterDateFormat.getTwitterApiFormatString());
+		legacyApiFormat__.setTimeZone(TimeZone.getTimeZone("GMT"));
+		legacySearchApiFormat__ = new SimpleDateFormat(
+			TwitterDateFormat.getTwitterSearchApiFormatString());
+		legacySearchApiFormat__.setTimeZone(TimeZone.getTimeZone("GMT"));
+	}
+
+	private static synchronized final Date legacyParse(final String date) {
+		try {
+			return legacyApiFormat__.parse(date);
+		} catch (ParseException e) {
+			try {
+				return legacySearchApiFormat__.parse(date);
+			} catch (ParseException f) {
+				throw new IllegalArgumentException(date, f);
+			}
+		}
+	}
+
+	@Param({"api", "search"})
+	public String layout;
+
+	private String date_;
+
+	@Setup
+	public void setup() {
+		date_ = "api".equals(layout) ? API_DATE : SEARCH_API_DATE;
+	}
+
+	@Benchmark
+	public Date legacySynchronizedParse() {
+		return legacyParse(date_);
+	}
+
+	@Benchmark
+	public long lockFreeParseToMillis() {
+		return TwitterDateParser.parse(date_);
+	}
+
+	@Benchmark
+	public Date twitterDateFormatParse() {
+		return TwitterDateFormat.parse(date_);
+	}
+
+	@Benchmark
+	public String twitterDateFormatFormat() {
+		return TwitterDateParser.format(1273760677000L);
+	}
+
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.benchmarks;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import com.kolich.twitter.date.TwitterDateFormat;
+
+/**
+ * Generates canned, deterministic Twitter API JSON payloads shaped like
+ * the real thing so the benchmarks never need live credentials.
+ */
+public final class TwitterJsonFixtures {
+
+	// Fri Jun 13 14:24:37 +0000 2014
+	private static final long BASE_TIME_MS = 1402669477000L;
+	private static final long BASE_TWEET_ID = 477777777777777777L;
+
+	// Cannot be instantiated.
+	private TwitterJsonFixtures() { }
+
+	private static final DateFormat newTwitterDateFormat() {
+		final DateFormat df = new SimpleDateFormat(
+			TwitterDateFormat.getTwitterApiFormatString(), Locale.US);
+		df.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return df;
+	}
+
+	public static final String createdAt(final int i) {
+		return newTwitterDateFormat().format(
+			new Date(BASE_TIME_MS - (i * 60000L)));
+	}
+
+	public static final String tweet(final int i) {
+		final DateFormat df = newTwitterDateFormat();
+		return appendTweet(new StringBuilder(), df, i).toString();
+	}
+
+	/**
+	 * A JSON array of tweets, as returned by statuses/user_timeline.
+	 */
+	public static final String tweets(final int count) {
+		final DateFormat df = newTwitterDateFormat();
+		final StringBuilder sb = new StringBuilder("[");
+		for(int i = 0; i < count; i++) {
+			if(i > 0) {
+				sb.append(',');
+			}
+			appendTweet(sb, df, i);
+		}
+		return sb.append(']').toString();
+	}
+
+	/**
+	 * A JSON search result object, as returned by search/tweets.
+	 */
+	public static final String searchResults(final int count) {
+		return new StringBuilder("{\"statuses\":")
+			.append(tweets(count))
+			.append(",\"search_metadata\":{\"count\":").append(count)
+			.append(",\"query\":\"%23kolich\"}}")
+			.toString();
+	}
+
+	/**
+	 * A cursored JSON user list, as returned by friends/list and
+	 * followers/list.
+	 */
+	public static final String userList(final int count) {
+		final DateFormat df = newTwitterDateFormat();
+		final StringBuilder sb = new StringBuilder("{\"users\":[");
+		for(int i = 0; i < count; i++) {
+			if(i > 0) {
+				sb.append(',');
+			}
+			appendUser(sb, df, i);
+		}
+		return sb.append("],\"next_cursor\":0,\"next_cursor_str\":\"0\",")
+			.append("\"previous_cursor\":0,\"previous_cursor_str\":\"0\"}")
+			.toString();
+	}
+
+	private static final StringBuilder appendTweet(final StringBuilder sb,
+		final DateFormat df, final int i) {
+		final long id = BASE_TWEET_ID - i;
+		sb.append("{\"created_at\":\"")
+			.append(df.format(new Date(BASE_TIME_MS - (i * 60000L))))
+			.append("\",\"id\":").append(id)
+			.append(",\"id_str\":\"").append(id)
+			.append("\",\"text\":\"Tweet number ").append(i)
+			.append(" about #kolich, see http://t.co/abc").append(i)
+			.append("\",\"source\":\"web\",\"truncated\":false,")
+			.append("\"retweet_count\":").append(i % 17)
+			.append(",\"favorited\":false,\"retweeted\":false,\"lang\":\"en\",")
+			.append("\"user\":");
+		return appendUser(sb, df, i % 10).append('}');
+	}
+
+	private static final StringBuilder appendUser(final StringBuilder sb,
+		final DateFormat df, final int i) {
+		return sb.append("{\"id\":").append(1000L + i)
+			.append(",\"id_str\":\"").append(1000L + i)
+			.append("\",\"name\":\"User ").append(i)
+			.append("\",\"screen_name\":\"user").append(i)
+			.append("\",\"location\":\"San Francisco, CA\",")
+			.append("\"description\":\"Just another synthetic account.\",")
+			.append("\"followers_count\":").append(i * 31)
+			.append(",\"friends_count\":").append(i * 7)
+			.append(",\"created_at\":\"")
+			.append(df.format(new Date(BASE_TIME_MS - (i * 86400000L))))
+			.append("\",\"profile_image_url\":")
+			.append("\"http://pbs.twimg.com/profile_images/").append(i)
+			.append("/avatar_normal.png\"}");
+	}
+
+}
@@ -37,10 +37,28 @@ object Dependencies {
 
   private val signpostCore = "oauth.signpost" % "signpost-core" % "1.2.1.2" % "compile"
   private val signpostHttpClient4 = "oauth.signpost" % "signpost-commonshttp4" % "1.2.1.2" % "compile"
+  // Non-blocking I/O for the AsyncTwitterApiClient, built on the same HttpCore
+  // 4.3 as the HttpClient 4.3 the closures use.
+  private val httpAsyncClient = "org.apache.httpcomponents" % "httpasyncclient" % "4.0" % "compile"
 
   val deps = Seq(
     kolichHttpClient4Closure,
-    signpostCore, signpostHttpClient4)
+    signpostCore, signpostHttpClient4,
+    httpAsyncClient)
+
+  // Test only dependencies.
+
+  private val junit = "junit" % "junit" % "4.11" % "test"
+  private val junitInterface = "com.novocode" % "junit-interface" % "0.10" % "test"
+
+  val testDeps = Seq(junit, junitInterface)
+
+  // Benchmark only dependencies, never shipped with the library itself.
+
+  private val jmhCore = "org.openjdk.jmh" % "jmh-core" % "1.0" % "compile"
+  private val jmhAnnProcess = "org.openjdk.jmh" % "jmh-generator-annprocess" % "1.0" % "compile"
+
+  val benchmarkDeps = Seq(jmhCore, jmhAnnProcess)
 
 }
 
@@ -122,8 +140,54 @@ object Twitter extends Build {
       artifactPath in (Test, packageBin) ~= { defaultPath =>
         file("dist") / "test" / defaultPath.getName
       },
-      libraryDependencies ++= deps,
+      libraryDependencies ++= deps ++ testDeps,
       retrieveManaged := true)
   )
 
+  /**
+   * An embeddable, fake, Twitter API server for load and regression
+   * testing the client without real credentials or a network.  Kept out
+   * of the library itself, but published so other projects can use it.
+   */
+  lazy val testkit: Project = Project(
+    aName + "-testkit",
+    new File("testkit"),
+    settings = Defaults.defaultSettings ++ Seq(resolvers := depResolvers) ++ Seq(
+      version := aVer,
+      organization := aOrg,
+      scalaVersion := "2.10.1",
+      javacOptions ++= Seq("-Xlint", "-g"),
+      crossPaths := false,
+      autoScalaLibrary := false,
+      unmanagedSourceDirectories in Compile <<= baseDirectory(new File(_, "src/main/java"))(Seq(_)),
+      unmanagedSourceDirectories in Compile in packageSrc <<= baseDirectory(new File(_, "src/main/java"))(Seq(_)),
+      publishArtifact in packageDoc := false)
+  ) dependsOn(twitter)
+
+  /**
+   * JMH micro-benchmarks for the client's hot paths.  The JMH annotation
+   * processor generates the benchmark harness at compile time, so no
+   * special plugin is needed.  Run with something like:
+   *   sbt "kolich-twitter-benchmarks/run -f 1 -wi 5 -i 5 -prof gc .*Codec.*"
+   */
+  lazy val benchmarks: Project = Project(
+    aName + "-benchmarks",
+    new File("benchmarks"),
+    settings = Defaults.defaultSettings ++ Seq(resolvers := depResolvers) ++ Seq(
+      version := aVer,
+      organization := aOrg,
+      scalaVersion := "2.10.1",
+      javacOptions ++= Seq("-Xlint", "-g"),
+      crossPaths := false,
+      autoScalaLibrary := false,
+      unmanagedSourceDirectories in Compile <<= baseDirectory(new File(_, "src/main/java"))(Seq(_)),
+      // JMH forks its own JVMs for each benchmark and needs a real classpath
+      // to do so, which it won't get when run inside of the SBT JVM.
+      fork in run := true,
+      mainClass in (Compile, run) := Some("org.openjdk.jmh.Main"),
+      // Benchmarks are never published.
+      publishArtifact := false,
+      libraryDependencies ++= benchmarkDeps)
+  ) dependsOn(twitter)
+
 }
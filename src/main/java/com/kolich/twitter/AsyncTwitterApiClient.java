@@ -0,0 +1,444 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.kolich.common.DefaultCharacterEncoding.UTF_8;
+import static com.kolich.twitter.TwitterApiClient.STATUSES_UPDATE_URL;
+import static com.kolich.twitter.TwitterApiClient.STATUSES_USER_TIMELINE_URL;
+import static com.kolich.twitter.TwitterApiClient.TWEET_SEARCH_URL;
+import static com.kolich.twitter.TwitterApiClient.USERS_SEARCH_URL;
+import static com.kolich.twitter.TwitterApiClient.USERS_SHOW_URL;
+import static com.kolich.twitter.TwitterApiClient.addTweetSearchParameters;
+import static com.kolich.twitter.TwitterApiClient.addUserParameters;
+import static com.kolich.twitter.TwitterApiClient.addUserSearchParameters;
+import static com.kolich.twitter.TwitterApiClient.addUserTimelineParameters;
+import static com.kolich.twitter.TwitterApiClient.getStatusUpdateEntity;
+import static com.kolich.twitter.TwitterApiClient.getTweetsCount;
+import static com.kolich.twitter.entities.TwitterEntityCodec.LIST_OF_TWEETS_TYPE;
+import static com.kolich.twitter.entities.TwitterEntityCodec.LIST_OF_USERS_TYPE;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import oauth.signpost.OAuthConsumer;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.kolich.common.functional.either.Either;
+import com.kolich.common.functional.either.Left;
+import com.kolich.common.functional.either.Right;
+import com.kolich.http.common.response.HttpFailure;
+import com.kolich.twitter.TwitterApiClient.TwitterApiExchange;
+import com.kolich.twitter.TwitterApiClient.TwitterApiUriBuilder;
+import com.kolich.twitter.entities.Tweet;
+import com.kolich.twitter.entities.TweetSearchResults;
+import com.kolich.twitter.entities.TwitterEntityCodec;
+import com.kolich.twitter.entities.User;
+
+/**
+ * Makes the most common {@link TwitterApiClient} calls without blocking,
+ * over non-blocking I/O: every request is multiplexed onto the handful of
+ * I/O dispatcher threads of an {@link CloseableHttpAsyncClient}, so
+ * thousands of requests can be outstanding at once without a thread
+ * apiece.  Each call returns a {@link ListenableFuture} right away.
+ *
+ * Requests are signed, rate limited and recorded in the metrics exactly
+ * like the blocking client's, with the same credentials, token pool and
+ * rate limiter, and decoded with the same Gson.  Signing and the rate
+ * limiter run on the calling thread as the request is submitted, so a
+ * rate limiter that waits blocks the caller, never the I/O threads.
+ *
+ * At most maxInFlight requests are on the wire at any one time; the rest
+ * wait in a queue, not on a thread, for one of those to complete.
+ *
+ * Responses are decoded on the I/O thread that read them, and listeners
+ * added to the returned futures with a same thread executor run there
+ * too, so they should be quick.
+ */
+public final class AsyncTwitterApiClient {
+
+	private static final Logger logger__ =
+		LoggerFactory.getLogger(AsyncTwitterApiClient.class);
+
+	private static final String IO_THREAD_NAME_FORMAT =
+		"twitter-api-async-io-%d";
+
+	private final TwitterApiClient client_;
+	private final CloseableHttpAsyncClient httpClient_;
+	private final boolean ownsHttpClient_;
+	private final Gson gson_;
+
+	/**
+	 * One per request allowed on the wire.
+	 */
+	private final Semaphore permits_;
+
+	/**
+	 * Signed requests waiting for a permit, oldest first.
+	 */
+	private final Queue<AsyncRequest<?>> pending_;
+
+	private AsyncTwitterApiClient(final TwitterApiClient client,
+		final CloseableHttpAsyncClient httpClient, final boolean ownsHttpClient,
+		final int maxInFlight) {
+		checkNotNull(client, "Twitter API client cannot be null.");
+		checkNotNull(httpClient, "HttpAsyncClient cannot be null.");
+		checkArgument(maxInFlight > 0, "Max in-flight requests must be " +
+			"greater than zero: %s", maxInFlight);
+		client_ = client;
+		httpClient_ = httpClient;
+		ownsHttpClient_ = ownsHttpClient;
+		gson_ = TwitterEntityCodec.getGson();
+		permits_ = new Semaphore(maxInFlight);
+		pending_ = new ConcurrentLinkedQueue<AsyncRequest<?>>();
+		if(!httpClient_.isRunning()) {
+			httpClient_.start();
+		}
+	}
+
+	/**
+	 * Sends requests with the given client, starting it if it isn't
+	 * already.  The caller owns the client, and should allow it at least
+	 * maxInFlight connections to api.twitter.com.
+	 */
+	public AsyncTwitterApiClient(final TwitterApiClient client,
+		final CloseableHttpAsyncClient httpClient, final int maxInFlight) {
+		this(client, httpClient, false, maxInFlight);
+	}
+
+	/**
+	 * Sends requests with a new {@link CloseableHttpAsyncClient} of its
+	 * own, allowed maxInFlight connections; call {@link #shutdown()} when
+	 * done.
+	 */
+	public AsyncTwitterApiClient(final TwitterApiClient client,
+		final int maxInFlight) {
+		this(client, HttpAsyncClients.custom()
+			.setMaxConnTotal(maxInFlight)
+			.setMaxConnPerRoute(maxInFlight)
+			.setThreadFactory(new ThreadFactoryBuilder()
+				.setNameFormat(IO_THREAD_NAME_FORMAT)
+				.setDaemon(true)
+				.build())
+			.build(), true, maxInFlight);
+	}
+
+	public TwitterApiClient getClient() {
+		return client_;
+	}
+
+	/**
+	 * Closes the {@link CloseableHttpAsyncClient} if this created it.
+	 * Requests still outstanding fail.
+	 */
+	public void shutdown() {
+		if(ownsHttpClient_) {
+			try {
+				httpClient_.close();
+			} catch (IOException e) {
+				logger__.debug("Failed to close HttpAsyncClient.", e);
+			}
+		}
+	}
+
+	public ListenableFuture<Either<HttpFailure,User>> getUser(
+		final String username) {
+		return getUser(username, null);
+	}
+
+	public ListenableFuture<Either<HttpFailure,User>> getUser(
+		final String username, final OAuthConsumer consumer) {
+		checkNotNull(username, "Username cannot be null!");
+		return submit(new HttpGet(USERS_SHOW_URL), consumer, User.class,
+			new TwitterApiUriBuilder() {
+			@Override
+			public URIBuilder getFinalURI(final URIBuilder builder) {
+				return addUserParameters(builder, username);
+			}
+		});
+	}
+
+	public ListenableFuture<Either<HttpFailure,List<Tweet>>> getTweets(
+		final String username) {
+		// A count of zero is the default count.
+		return getTweets(username, 0, 0L, 0L);
+	}
+
+	public ListenableFuture<Either<HttpFailure,List<Tweet>>> getTweets(
+		final String username, final int count, final long maxId,
+		final long sinceId) {
+		return getTweets(username, getTweetsCount(count), maxId, sinceId,
+			null);
+	}
+
+	public ListenableFuture<Either<HttpFailure,List<Tweet>>> getTweets(
+		final String username, final int count, final long maxId,
+		final long sinceId, final OAuthConsumer consumer) {
+		checkNotNull(username, "Username cannot be null!");
+		return submit(new HttpGet(STATUSES_USER_TIMELINE_URL), consumer,
+			LIST_OF_TWEETS_TYPE, new TwitterApiUriBuilder() {
+			@Override
+			public URIBuilder getFinalURI(final URIBuilder builder) {
+				return addUserTimelineParameters(builder, username, count,
+					maxId, sinceId);
+			}
+		});
+	}
+
+	public ListenableFuture<Either<HttpFailure,TweetSearchResults>> searchTweets(
+		final String query) {
+		// A count of zero is the default count.
+		return searchTweets(query, 0, 0L, null);
+	}
+
+	public ListenableFuture<Either<HttpFailure,TweetSearchResults>> searchTweets(
+		final String query, final int count, final long sinceId,
+		final OAuthConsumer consumer) {
+		return searchTweets(query, count, 0L, sinceId, consumer);
+	}
+
+	public ListenableFuture<Either<HttpFailure,TweetSearchResults>> searchTweets(
+		final String query, final int count, final long maxId,
+		final long sinceId, final OAuthConsumer consumer) {
+		checkNotNull(query, "Query cannot be null!");
+		return submit(new HttpGet(TWEET_SEARCH_URL), consumer,
+			TweetSearchResults.class, new TwitterApiUriBuilder() {
+			@Override
+			public URIBuilder getFinalURI(final URIBuilder builder) {
+				return addTweetSearchParameters(builder, query, count, maxId,
+					sinceId);
+			}
+		});
+	}
+
+	public ListenableFuture<Either<HttpFailure,List<User>>> userSearch(
+		final String query) {
+		return userSearch(query, null);
+	}
+
+	public ListenableFuture<Either<HttpFailure,List<User>>> userSearch(
+		final String query, final OAuthConsumer consumer) {
+		// A per_page of zero is the default per_page.
+		return userSearch(query, 0, consumer);
+	}
+
+	public ListenableFuture<Either<HttpFailure,List<User>>> userSearch(
+		final String query, final int perPage, final OAuthConsumer consumer) {
+		checkNotNull(query, "Query cannot be null!");
+		return submit(new HttpGet(USERS_SEARCH_URL), consumer,
+			LIST_OF_USERS_TYPE, new TwitterApiUriBuilder() {
+			@Override
+			public URIBuilder getFinalURI(final URIBuilder builder) {
+				return addUserSearchParameters(builder, query, perPage);
+			}
+		});
+	}
+
+	public ListenableFuture<Either<HttpFailure,Tweet>> statusUpdate(
+		final String text) {
+		return statusUpdate(text, null);
+	}
+
+	public ListenableFuture<Either<HttpFailure,Tweet>> statusUpdate(
+		final String text, final OAuthConsumer consumer) {
+		checkNotNull(text, "Tweet text cannot be null!");
+		final HttpPost post = new HttpPost(STATUSES_UPDATE_URL);
+		post.setEntity(getStatusUpdateEntity(text));
+		return submit(post, consumer, Tweet.class,
+			new TwitterApiUriBuilder() {
+			@Override
+			public URIBuilder getFinalURI(final URIBuilder builder) {
+				return builder;
+			}
+		});
+	}
+
+	/**
+	 * Signs the request and queues it to be sent as soon as there's room
+	 * on the wire.
+	 */
+	private <T> ListenableFuture<Either<HttpFailure,T>> submit(
+		final HttpRequestBase request, final OAuthConsumer consumer,
+		final Type type, final TwitterApiUriBuilder uris) {
+		final TwitterApiExchange exchange = client_.newExchange(consumer);
+		try {
+			exchange.before(request, uris);
+		} catch (Exception e) {
+			// Rate limited, or failed to sign, just like the blocking
+			// client this never makes it onto the wire.
+			return Futures.<Either<HttpFailure,T>>immediateFuture(
+				Left.<HttpFailure,T>left(new HttpFailure(e)));
+		}
+		final AsyncRequest<T> async = new AsyncRequest<T>(request, exchange,
+			type);
+		pending_.add(async);
+		dispatch();
+		return async.result_;
+	}
+
+	/**
+	 * Sends pending requests for as long as there's room on the wire.
+	 * Called whenever a request is queued and whenever one completes, so
+	 * nothing is left waiting while there's a permit free.
+	 */
+	private void dispatch() {
+		while(!pending_.isEmpty() && permits_.tryAcquire()) {
+			final AsyncRequest<?> async = pending_.poll();
+			if(async == null) {
+				// Someone else got to it first.
+				permits_.release();
+			} else {
+				async.send();
+			}
+		}
+	}
+
+	private final class AsyncRequest<T> implements FutureCallback<HttpResponse> {
+
+		private final HttpRequestBase request_;
+		private final TwitterApiExchange exchange_;
+		private final Type type_;
+		private final HttpContext context_;
+		private final SettableFuture<Either<HttpFailure,T>> result_;
+
+		private volatile Future<HttpResponse> response_;
+
+		private AsyncRequest(final HttpRequestBase request,
+			final TwitterApiExchange exchange, final Type type) {
+			request_ = request;
+			exchange_ = exchange;
+			type_ = type;
+			context_ = new BasicHttpContext();
+			result_ = SettableFuture.create();
+			// Cancelling the result aborts the request, if it's been sent.
+			result_.addListener(new Runnable() {
+				@Override
+				public void run() {
+					final Future<HttpResponse> response = response_;
+					if(result_.isCancelled() && response != null) {
+						response.cancel(true);
+					}
+				}
+			}, MoreExecutors.sameThreadExecutor());
+		}
+
+		/**
+		 * Called holding a permit, which is given back when the request
+		 * completes, one way or another.
+		 */
+		private void send() {
+			if(result_.isDone()) {
+				// Cancelled while it was waiting.
+				done();
+				return;
+			}
+			try {
+				exchange_.sent();
+				response_ = httpClient_.execute(request_, context_, this);
+			} catch (Exception e) {
+				// Shut down.
+				result_.set(Left.<HttpFailure,T>left(new HttpFailure(e)));
+				done();
+				return;
+			}
+			if(result_.isCancelled()) {
+				response_.cancel(true);
+			}
+		}
+
+		@Override
+		public void completed(final HttpResponse response) {
+			try {
+				if(!exchange_.check(response)) {
+					result_.set(Left.<HttpFailure,T>left(
+						new HttpFailure(response, context_)));
+					return;
+				}
+				final long start = System.nanoTime();
+				final T entity;
+				try {
+					entity = gson_.fromJson(new InputStreamReader(
+						response.getEntity().getContent(), UTF_8), type_);
+				} finally {
+					exchange_.parsed(start);
+				}
+				result_.set(Right.<HttpFailure,T>right(entity));
+			} catch (Exception e) {
+				result_.set(Left.<HttpFailure,T>left(
+					new HttpFailure(e, response, context_)));
+			} finally {
+				EntityUtils.consumeQuietly(response.getEntity());
+				done();
+			}
+		}
+
+		@Override
+		public void failed(final Exception e) {
+			result_.set(Left.<HttpFailure,T>left(new HttpFailure(e)));
+			done();
+		}
+
+		@Override
+		public void cancelled() {
+			result_.cancel(false);
+			done();
+		}
+
+		private void done() {
+			permits_.release();
+			dispatch();
+		}
+
+	}
+
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import oauth.signpost.OAuthConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.kolich.common.functional.either.Either;
+import com.kolich.common.functional.either.Right;
+import com.kolich.http.common.response.HttpFailure;
+import com.kolich.twitter.cache.TwitterApiCacheEntry;
+import com.kolich.twitter.cache.TwitterApiCacheStats;
+import com.kolich.twitter.cache.TwitterApiResponseCache;
+import com.kolich.twitter.entities.User;
+
+/**
+ * Answers the cacheable read methods of {@link TwitterApiClient} from a
+ * {@link TwitterApiResponseCache} when it can, saving both the round trip
+ * and a unit of rate limit.  Stale entries are served as-is while a
+ * single background thread revalidates them.
+ *
+ * Only requests made with the client's own credentials are cached; calls
+ * that pass an explicit consumer may see things (protected accounts, say)
+ * that other callers shouldn't, and always go straight to the API.
+ * Failures are never cached.
+ */
+public final class CachingTwitterApiClient {
+
+	private static final Logger logger__ =
+		LoggerFactory.getLogger(CachingTwitterApiClient.class);
+
+	/**
+	 * Cache endpoint names, for configuring per-endpoint TTLs.
+	 */
+	public static final String USERS_SHOW_ENDPOINT = "users/show";
+	public static final String USERS_SEARCH_ENDPOINT = "users/search";
+
+	private static final String REVALIDATE_THREAD_NAME_FORMAT =
+		"twitter-api-cache-revalidate-%d";
+
+	private final TwitterApiClient client_;
+	private final TwitterApiResponseCache cache_;
+	private final ExecutorService revalidator_;
+
+	/**
+	 * Revalidates stale entries on the given executor, which the caller
+	 * owns.
+	 */
+	public CachingTwitterApiClient(final TwitterApiClient client,
+		final TwitterApiResponseCache cache,
+		final ExecutorService revalidator) {
+		checkNotNull(client, "Twitter API client cannot be null.");
+		checkNotNull(cache, "Response cache cannot be null.");
+		checkNotNull(revalidator, "Revalidation executor cannot be null.");
+		client_ = client;
+		cache_ = cache;
+		revalidator_ = revalidator;
+	}
+
+	/**
+	 * Revalidates stale entries on a new daemon thread, call
+	 * {@link #shutdown()} when done.
+	 */
+	public CachingTwitterApiClient(final TwitterApiClient client,
+		final TwitterApiResponseCache cache) {
+		this(client, cache, newSingleThreadExecutor(
+			new ThreadFactoryBuilder()
+				.setNameFormat(REVALIDATE_THREAD_NAME_FORMAT)
+				.setDaemon(true)
+				.build()));
+	}
+
+	public TwitterApiClient getClient() {
+		return client_;
+	}
+
+	public TwitterApiResponseCache getCache() {
+		return cache_;
+	}
+
+	public TwitterApiCacheStats getStats() {
+		return cache_.getStats();
+	}
+
+	public void shutdown() {
+		revalidator_.shutdown();
+	}
+
+	public Either<HttpFailure,User> getUser(final String username) {
+		return getUser(username, null);
+	}
+
+	public Either<HttpFailure,User> getUser(final String username,
+		final OAuthConsumer consumer) {
+		checkNotNull(username, "Username cannot be null!");
+		if(consumer != null) {
+			return client_.getUser(username, consumer);
+		}
+		// Screen names are case insensitive, just like User.equals().
+		return cached(USERS_SHOW_ENDPOINT, username.toLowerCase(Locale.ENGLISH),
+			new Supplier<Either<HttpFailure,User>>() {
+				@Override
+				public Either<HttpFailure,User> get() {
+					return client_.getUser(username);
+				}
+			});
+	}
+
+	public Either<HttpFailure,List<User>> userSearch(final String query) {
+		// Zero per page gets the API client's default.
+		return userSearch(query, 0, null);
+	}
+
+	public Either<HttpFailure,List<User>> userSearch(final String query,
+		final OAuthConsumer consumer) {
+		return userSearch(query, 0, consumer);
+	}
+
+	/**
+	 * The returned list is shared with every other caller that gets the
+	 * same cached response, and so cannot be modified.
+	 */
+	public Either<HttpFailure,List<User>> userSearch(final String query,
+		final int perPage, final OAuthConsumer consumer) {
+		checkNotNull(query, "Query cannot be null!");
+		if(consumer != null) {
+			return client_.userSearch(query, perPage, consumer);
+		}
+		// Key on what's actually requested, so the default and an explicit
+		// (or out of range) per page asking for the same thing share an
+		// entry.
+		return cached(USERS_SEARCH_ENDPOINT,
+			TwitterApiClient.getUserSearchPerPage(perPage) + " " +
+				query.toLowerCase(Locale.ENGLISH),
+			new Supplier<Either<HttpFailure,List<User>>>() {
+				@Override
+				public Either<HttpFailure,List<User>> get() {
+					final Either<HttpFailure,List<User>> result =
+						client_.userSearch(query, perPage, null);
+					if(!result.success()) {
+						return result;
+					}
+					return Right.right(Collections.unmodifiableList(
+						result.right()));
+				}
+			});
+	}
+
+	private <T> Either<HttpFailure,T> cached(final String endpoint,
+		final String key, final Supplier<Either<HttpFailure,T>> fetch) {
+		final TwitterApiCacheEntry entry = cache_.get(endpoint, key);
+		if(entry == null) {
+			return fetch(endpoint, key, fetch);
+		}
+		if(!entry.isFresh(System.currentTimeMillis()) &&
+			entry.tryStartRevalidation()) {
+			revalidate(endpoint, key, entry, fetch);
+		}
+		return Right.right(entry.<T>getValue());
+	}
+
+	private <T> Either<HttpFailure,T> fetch(final String endpoint,
+		final String key, final Supplier<Either<HttpFailure,T>> fetch) {
+		final Either<HttpFailure,T> result = fetch.get();
+		if(result.success()) {
+			cache_.put(endpoint, key, result.right());
+		}
+		return result;
+	}
+
+	private <T> void revalidate(final String endpoint, final String key,
+		final TwitterApiCacheEntry entry,
+		final Supplier<Either<HttpFailure,T>> fetch) {
+		try {
+			revalidator_.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if(!fetch(endpoint, key, fetch).success()) {
+							entry.revalidationFailed();
+						}
+					} catch (Exception e) {
+						logger__.debug("Failed to revalidate cached " +
+							"response: " + endpoint + " " + key, e);
+						entry.revalidationFailed();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			// Shut down, keep serving what we have.
+			entry.revalidationFailed();
+		}
+	}
+
+}
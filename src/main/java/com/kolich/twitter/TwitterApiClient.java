@@ -26,18 +26,41 @@
 
 package com.kolich.twitter;
 
-import com.google.gson.reflect.TypeToken;
+import com.google.common.base.Function;
+import com.google.common.base.Joiner;
+import com.google.common.base.Supplier;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
 import com.kolich.common.functional.either.Either;
+import com.kolich.common.functional.either.Left;
+import com.kolich.common.functional.either.Right;
 import com.kolich.http.common.response.HttpFailure;
+import com.kolich.http.common.response.HttpSuccess;
 import com.kolich.http.helpers.ByteArrayClosures.ByteArrayOrHttpFailureClosure;
 import com.kolich.http.helpers.GsonClosures.GsonOrHttpFailureClosure;
 import com.kolich.http.helpers.StringClosures.StringOrHttpFailureClosure;
+import com.kolich.twitter.entities.CompactTweet;
 import com.kolich.twitter.entities.Tweet;
 import com.kolich.twitter.entities.TweetSearchResults;
+import com.kolich.twitter.entities.TwitterEntity;
+import com.kolich.twitter.entities.TwitterEntityCallback;
+import com.kolich.twitter.entities.TwitterEntityCodec;
 import com.kolich.twitter.entities.User;
 import com.kolich.twitter.entities.UserList;
 import com.kolich.twitter.exceptions.TwitterApiException;
+import com.kolich.twitter.http.CountingHttpEntity;
+import com.kolich.twitter.http.TwitterApiConnectionPool;
+import com.kolich.twitter.metrics.NoopTwitterApiMetrics;
+import com.kolich.twitter.metrics.TwitterApiMetrics;
+import com.kolich.twitter.paging.CursoredUserIterable;
+import com.kolich.twitter.paging.TimelineIterable;
+import com.kolich.twitter.ratelimit.TwitterApiRateLimiter;
+import com.kolich.twitter.ratelimit.TwitterApiTokenPool;
 import com.kolich.twitter.signpost.TwitterApiCommonsHttpOAuthConsumer;
+import com.kolich.twitter.signpost.TwitterApiOAuthSigner;
+import com.kolich.twitter.singleflight.SingleFlight;
 import oauth.signpost.OAuthConsumer;
 import oauth.signpost.commonshttp.CommonsHttpOAuthConsumer;
 import oauth.signpost.http.HttpParameters;
@@ -53,17 +76,36 @@ import org.apache.http.protocol.HttpContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Type;
-import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.kolich.common.DefaultCharacterEncoding.UTF_8;
-import static com.kolich.twitter.entities.TwitterEntity.getNewTwitterGsonInstance;
+import static com.kolich.twitter.entities.TwitterEntityCodec.COMPACT_TWEET_TYPE;
+import static com.kolich.twitter.entities.TwitterEntityCodec.LIST_OF_TWEETS_TYPE;
+import static com.kolich.twitter.entities.TwitterEntityCodec.LIST_OF_USERS_TYPE;
+import static com.kolich.twitter.entities.TwitterEntityCodec.TWEET_TYPE;
+import static com.kolich.twitter.entities.TwitterEntityCodec.USER_TYPE;
+import static com.kolich.twitter.entities.TwitterEntityCodec.streamArray;
 import static oauth.signpost.OAuth.decodeForm;
+import static org.apache.http.HttpStatus.SC_NOT_FOUND;
 import static org.apache.http.HttpStatus.SC_OK;
 
 public final class TwitterApiClient {
@@ -72,6 +114,7 @@ public final class TwitterApiClient {
 		LoggerFactory.getLogger(TwitterApiClient.class);
 		
 	private static final String API_BEGIN_CURSOR = "-1";
+	private static final String API_END_CURSOR = "0";
 	private static final String API_CURSOR_PARAM = "cursor";
 	private static final String API_COUNT_PARAM = "count";
 	private static final String API_MAXID_PARAM = "max_id";
@@ -79,9 +122,16 @@ public final class TwitterApiClient {
 	private static final String API_STATUS_PARAM = "status";
 	private static final String API_QUERY_PARAM = "q";
 	private static final String API_SCREEN_NAME_PARAM = "screen_name";
+	private static final String API_USER_ID_PARAM = "user_id";
+	private static final String API_ID_PARAM = "id";
 	private static final String API_USER_SEARCH_QUERY_PARAM = "q";
 	private static final String API_USER_SEARCH_PERPAGE_PARAM = "per_page";
 	
+	// Response fields we pick apart ourselves when streaming.
+	private static final String API_USERS_FIELD = "users";
+	private static final String API_STATUSES_FIELD = "statuses";
+	private static final String API_NEXT_CURSOR_FIELD = "next_cursor_str";
+	
 	/**
 	 * This value must be "client_auth" (referring to the xAuth process.)
 	 */
@@ -168,25 +218,41 @@ public final class TwitterApiClient {
 	private static final int API_USER_SEARCH_PERPAGE_DEFAULT =
 		API_USER_SEARCH_PERPAGE_MAX;
 	
-	// Standard API calls, to be used once OAuth authenticated	
+	/**
+	 * A single users/lookup request can ask for at most 100 users, by
+	 * screen name or by user id.
+	 */
+	private static final int API_USERS_LOOKUP_MAX = 100;
+	
+	/**
+	 * A single statuses/lookup request can ask for at most 100 tweets.
+	 */
+	private static final int API_STATUSES_LOOKUP_MAX = 100;
+	
+	// Standard API calls, to be used once OAuth authenticated; the ones
+	// AsyncTwitterApiClient makes too are package-private.
 	private static final String FRIENDS_LIST_API_URL =
 		"https://api.twitter.com/1.1/friends/list.json";
 	
 	private static final String FOLLOWERS_LIST_API_URL =
 		"https://api.twitter.com/1.1/followers/list.json";	
 	
-	private static final String USERS_SHOW_URL =
+	static final String USERS_SHOW_URL =
 		"https://api.twitter.com/1.1/users/show.json";
-	private static final String USERS_SEARCH_URL =
+	static final String USERS_SEARCH_URL =
 		"https://api.twitter.com/1.1/users/search.json";
+	private static final String USERS_LOOKUP_URL =
+		"https://api.twitter.com/1.1/users/lookup.json";
 	
-	private static final String TWEET_SEARCH_URL =
+	static final String TWEET_SEARCH_URL =
 		"https://api.twitter.com/1.1/search/tweets.json";
 	
-	private static final String STATUSES_USER_TIMELINE_URL =
+	static final String STATUSES_USER_TIMELINE_URL =
 		"https://api.twitter.com/1.1/statuses/user_timeline.json";	
-	private static final String STATUSES_UPDATE_URL =
+	static final String STATUSES_UPDATE_URL =
 		"https://api.twitter.com/1.1/statuses/update.json";
+	private static final String STATUSES_LOOKUP_URL =
+		"https://api.twitter.com/1.1/statuses/lookup.json";
 	
 	// OAuth specific API resources
 	private static final String OAUTH_REQUEST_TOKEN_URL =
@@ -198,97 +264,542 @@ public final class TwitterApiClient {
 	
 	private final HttpClient httpClient_;
 	
+	/**
+	 * Tracks the rate limit windows reported by the API and holds back
+	 * requests that would only come back with a 429.
+	 */
+	private final TwitterApiRateLimiter rateLimiter_;
+	
+	/**
+	 * If set, requests made without an explicit consumer are spread
+	 * across the pooled tokens instead of using the default token.
+	 * May be null.
+	 */
+	private final TwitterApiTokenPool tokenPool_;
+	
+	/**
+	 * The {@link Gson} instance shared by every request this client makes.
+	 * Gson instances are thread-safe once built, so there's no need to
+	 * construct a new one (and re-register all of its type adapters) for
+	 * each API call.
+	 */
+	private final Gson gson_;
+	
 	private final String consumerKey_;
 	private final String consumerKeySecret_;
 	private final String apiToken_;
 	private final String apiTokenSecret_;
-		
-	public TwitterApiClient(final HttpClient httpClient,
+	
+	/**
+	 * Signs every request made with the default credentials.  Built once,
+	 * up front, and safe to share across threads, so there's no need to
+	 * construct (and lock) a new Signpost consumer for each API call.
+	 */
+	private final TwitterApiOAuthSigner defaultSigner_;
+	
+	/**
+	 * Collapses concurrent, identical, read requests into one.
+	 */
+	private final SingleFlight inFlight_;
+	
+	/**
+	 * The pool behind httpClient_, if this client was built by a
+	 * {@link TwitterApiClientBuilder}.  May be null.
+	 */
+	private final TwitterApiConnectionPool connectionPool_;
+	
+	/**
+	 * Told about every request's signing, network and parse time.
+	 */
+	private final TwitterApiMetrics metrics_;
+	
+	TwitterApiClient(final HttpClient httpClient,
 		final String consumerKey, final String consumerKeySecret,
-		final String apiToken, final String apiTokenSecret) {
+		final String apiToken, final String apiTokenSecret,
+		final TwitterApiRateLimiter rateLimiter,
+		final TwitterApiTokenPool tokenPool,
+		final TwitterApiConnectionPool connectionPool,
+		final TwitterApiMetrics metrics) {
 		checkNotNull(httpClient, "HttpClient cannot be null.");		
 		checkNotNull(consumerKey, "OAuth consumer key cannot be null.");
 		checkNotNull(consumerKeySecret, "OAuth consumer key secret cannot be null.");
 		checkNotNull(apiToken, "OAuth API token cannot be null.");
 		checkNotNull(apiTokenSecret, "OAuth API token secret cannot be null.");
+		checkNotNull(rateLimiter, "Rate limiter cannot be null.");
+		checkNotNull(metrics, "Metrics cannot be null.");
+		checkArgument(tokenPool == null ||
+			tokenPool.getRateLimiter() == rateLimiter, "Token pool must " +
+			"share the client's rate limiter.");
 		httpClient_ = httpClient;
+		rateLimiter_ = rateLimiter;
+		tokenPool_ = tokenPool;
+		gson_ = TwitterEntityCodec.getGson();
 		consumerKey_ = consumerKey;
 		consumerKeySecret_ = consumerKeySecret;
 		apiToken_ = apiToken;
 		apiTokenSecret_ = apiTokenSecret;
+		defaultSigner_ = new TwitterApiOAuthSigner(consumerKey,
+			consumerKeySecret, apiToken, apiTokenSecret);
+		inFlight_ = new SingleFlight();
+		connectionPool_ = connectionPool;
+		metrics_ = metrics;
+	}
+	
+	public TwitterApiClient(final HttpClient httpClient,
+		final String consumerKey, final String consumerKeySecret,
+		final String apiToken, final String apiTokenSecret,
+		final TwitterApiRateLimiter rateLimiter,
+		final TwitterApiTokenPool tokenPool) {
+		this(httpClient, consumerKey, consumerKeySecret, apiToken,
+			apiTokenSecret, rateLimiter, tokenPool, null,
+			NoopTwitterApiMetrics.INSTANCE);
+	}
+	
+	public TwitterApiClient(final HttpClient httpClient,
+		final String consumerKey, final String consumerKeySecret,
+		final String apiToken, final String apiTokenSecret,
+		final TwitterApiRateLimiter rateLimiter) {
+		this(httpClient, consumerKey, consumerKeySecret, apiToken,
+			apiTokenSecret, rateLimiter, null);
+	}
+	
+	/**
+	 * Requests against an exhausted rate limit window fail fast, locally,
+	 * instead of being sent.
+	 */
+	public TwitterApiClient(final HttpClient httpClient,
+		final String consumerKey, final String consumerKeySecret,
+		final String apiToken, final String apiTokenSecret) {
+		this(httpClient, consumerKey, consumerKeySecret, apiToken,
+			apiTokenSecret, new TwitterApiRateLimiter());
+	}
+	
+	public TwitterApiRateLimiter getRateLimiter() {
+		return rateLimiter_;
+	}
+	
+	/**
+	 * How many read requests were actually sent, versus how many rode
+	 * along on an identical one already in flight.
+	 */
+	public SingleFlight getSingleFlight() {
+		return inFlight_;
+	}
+	
+	/**
+	 * The connection pool this client was built with, for its statistics,
+	 * or null if it was handed an arbitrary {@link HttpClient}.
+	 */
+	public TwitterApiConnectionPool getConnectionPool() {
+		return connectionPool_;
+	}
+	
+	public TwitterApiMetrics getMetrics() {
+		return metrics_;
+	}
+	
+	/**
+	 * The underlying {@link HttpClient}, for sharing its connections with
+	 * requests that don't go through the API, like fetching avatars.
+	 */
+	public HttpClient getHttpClient() {
+		return httpClient_;
+	}
+	
+	/**
+	 * Rate limits are tracked per token; requests signed without a user
+	 * token (the OAuth dance) count against the application instead.
+	 */
+	private static final String getRateLimitToken(
+		final OAuthConsumer consumer) {
+		final String token = consumer.getToken();
+		return (token != null) ? token : consumer.getConsumerKey();
+	}
+	
+	/**
+	 * The consumer used to sign requests to the given endpoint when the
+	 * caller didn't supply one, or null if the request should be signed
+	 * with the default credentials.
+	 */
+	private OAuthConsumer getDefaultConsumer(final String endpoint) {
+		return (tokenPool_ != null) ? tokenPool_.select(endpoint) : null;
+	}
+	
+	/**
+	 * Signpost consumers are not thread-safe, and pooled or caller supplied
+	 * consumers may well be shared across threads, so signing is serialized
+	 * per consumer.  A null consumer means the request is signed with the
+	 * default credentials, and pooled consumers have pre-built signers of
+	 * their own; neither needs any locking at all.
+	 */
+	private void sign(final OAuthConsumer consumer,
+		final HttpRequestBase request, final List<NameValuePair> queryParams)
+		throws Exception {
+		final TwitterApiOAuthSigner signer = (consumer == null) ?
+			defaultSigner_ : (tokenPool_ != null) ?
+				tokenPool_.getSigner(consumer) : null;
+		if(signer != null) {
+			signer.sign(request, queryParams);
+		} else {
+			synchronized(consumer) {
+				consumer.sign(request);
+			}
+		}
 	}
 		
-	private abstract class TwitterApiGsonClosure<S>
-		extends GsonOrHttpFailureClosure<S> {
+	/**
+	 * Builds the final URI of a request, before it's signed.
+	 */
+	interface TwitterApiUriBuilder {
+		public URIBuilder getFinalURI(final URIBuilder builder)
+			throws Exception;
+	}
+	
+	/**
+	 * The bookkeeping every API request goes through, whichever closure
+	 * sends it: picking the consumer, waiting on the rate limiter, building
+	 * and signing the final URI, then updating the rate limiter and
+	 * recording metrics once the response comes back.  One per request.
+	 */
+	final class TwitterApiExchange {
 		private final OAuthConsumer consumer_;
+		private String endpoint_;
+		private OAuthConsumer signer_;
+		private String rateLimitToken_;
+		private long sentAt_;
+		private CountingHttpEntity entity_;
+		private TwitterApiExchange(final OAuthConsumer consumer) {
+			// If consumer is null, a default is picked once we know which
+			// endpoint the request is going to.
+			consumer_ = consumer;
+		}
+		/**
+		 * Identifies the token a request will be signed with, for telling
+		 * apart otherwise identical requests.  Requests without an explicit
+		 * consumer all go out with the default credentials, or
+		 * interchangeable pooled ones.
+		 */
+		private String getCoalescingToken() {
+			return (consumer_ != null) ? getRateLimitToken(consumer_) : "";
+		}
+		void before(final HttpRequestBase request,
+			final TwitterApiUriBuilder uris) throws Exception {
+			// The URI without any query parameters identifies the endpoint.
+			endpoint_ = request.getURI().toString();
+			signer_ = (consumer_ != null) ? consumer_ :
+				getDefaultConsumer(endpoint_);
+			rateLimitToken_ = (signer_ != null) ?
+				getRateLimitToken(signer_) : apiToken_;
+			rateLimiter_.acquire(endpoint_, rateLimitToken_);
+			final URIBuilder builder = uris.getFinalURI(
+				new URIBuilder(request.getURI()));
+			request.setURI(builder.build());
+			// OAuth sign the request, handing the signer the query
+			// parameters as built so it doesn't have to parse them back
+			// out of the final URI.
+			final long signStart = System.nanoTime();
+			sign(signer_, request, builder.getQueryParams());
+			sentAt_ = System.nanoTime();
+			metrics_.recordRequest(endpoint_, sentAt_ - signStart);
+		}
+		/**
+		 * Restarts the network clock, for a request that was signed well
+		 * before it was actually sent.
+		 */
+		void sent() {
+			sentAt_ = System.nanoTime();
+		}
+		boolean check(final HttpResponse response) {
+			rateLimiter_.update(endpoint_, rateLimitToken_, response);
+			final int status = response.getStatusLine().getStatusCode();
+			metrics_.recordResponse(endpoint_, status,
+				System.nanoTime() - sentAt_,
+				rateLimiter_.getStatus(endpoint_, rateLimitToken_));
+			if(status == SC_OK && response.getEntity() != null) {
+				entity_ = new CountingHttpEntity(response.getEntity());
+				response.setEntity(entity_);
+			}
+			return status == SC_OK;
+		}
+		/**
+		 * Records the time spent decoding the response since start, and
+		 * how much of it was read.
+		 */
+		void parsed(final long start) {
+			metrics_.recordParse(endpoint_, System.nanoTime() - start,
+				(entity_ != null) ? entity_.getBytesRead() : 0L);
+		}
+	}
+	
+	/**
+	 * For requests sent some other way than through a closure.
+	 */
+	TwitterApiExchange newExchange(final OAuthConsumer consumer) {
+		return new TwitterApiExchange(consumer);
+	}
+		
+	private abstract class TwitterApiGsonClosure<S>
+		extends GsonOrHttpFailureClosure<S> implements TwitterApiUriBuilder {
+		private final TwitterApiExchange exchange_;
 		public TwitterApiGsonClosure(final Type type,
 			final OAuthConsumer consumer) {
-			super(httpClient_, getNewTwitterGsonInstance(), type);
-			// If consumer is null, then we need to generate a default one
-			// using the key, secret, token and token secret.
-			consumer_ = (consumer == null) ?
-				oAuthBuildDefaultConsumer() :
-				consumer;
+			super(httpClient_, gson_, type);
+			exchange_ = new TwitterApiExchange(consumer);
 		}
 		public TwitterApiGsonClosure(final Class<S> clazz,
 			final OAuthConsumer consumer) {
-			this(TypeToken.get(clazz).getType(), consumer);
+			this((Type)clazz, consumer);
+		}
+		/**
+		 * Like {@link #get(String)}, except that concurrent requests for
+		 * the same final URI, signed with the same token, share a single
+		 * round trip (and a single unit of rate limit).  Every caller gets
+		 * its own copy of a successful result, made by copier, so the
+		 * shared instance is never handed out; copier can be null if the
+		 * result is immutable.
+		 */
+		public Either<HttpFailure,S> coalescedGet(final String url,
+			final Function<S,S> copier) {
+			final String key;
+			try {
+				key = getFinalURI(new URIBuilder(url)).build().toString() +
+					" " + exchange_.getCoalescingToken();
+			} catch (Exception e) {
+				// Let the request itself fail, the usual way.
+				return get(url);
+			}
+			final Either<HttpFailure,S> result = inFlight_.execute(key,
+				new Supplier<Either<HttpFailure,S>>() {
+				@Override
+				public Either<HttpFailure,S> get() {
+					return TwitterApiGsonClosure.this.get(url);
+				}
+			});
+			return (copier == null || !result.success()) ? result :
+				Right.<HttpFailure,S>right(copier.apply(result.right()));
 		}
 		@Override
 		public void before(final HttpRequestBase request) throws Exception {
-			request.setURI(getFinalURI(request.getURI()));
-			// OAuth sign the request.
-			consumer_.sign(request);
+			exchange_.before(request, this);
 		}
 		/**
 		 * Override this method if you need to modify the request URI
 		 * before execution.  Allows the appending/inclusion of query
 		 * parameters (if a GET), etc.
 		 */
-		public URI getFinalURI(final URI uri) throws Exception {
+		@Override
+		public URIBuilder getFinalURI(final URIBuilder builder)
+			throws Exception {
 			// Default behavior is no modifications to final URI.
-			return uri;
+			return builder;
 		}
 		@Override
 		public boolean check(final HttpResponse response,
 			final HttpContext context) {
-			return response.getStatusLine().getStatusCode() == SC_OK;
+			return exchange_.check(response);
+		}
+		@Override
+		public final S success(final HttpSuccess success) throws Exception {
+			final long start = System.nanoTime();
+			try {
+				return decode(success);
+			} finally {
+				exchange_.parsed(start);
+			}
+		}
+		/**
+		 * Maps the successful response to a result, by default with Gson.
+		 */
+		public S decode(final HttpSuccess success) throws Exception {
+			return super.success(success);
 		}
 	}
 	
 	private abstract class TwitterApiStringOrHttpFailureClosure
-		extends StringOrHttpFailureClosure {
-		private final OAuthConsumer consumer_;
+		extends StringOrHttpFailureClosure implements TwitterApiUriBuilder {
+		private final TwitterApiExchange exchange_;
 		public TwitterApiStringOrHttpFailureClosure(final OAuthConsumer consumer) {
 			super(httpClient_);
-			// If consumer is null, then we need to generate a default one
-			// using the key, secret, token and token secret.
-			consumer_ = (consumer == null) ?
-				oAuthBuildDefaultConsumer() :
-				consumer;
+			exchange_ = new TwitterApiExchange(consumer);
 		}
 		@Override
 		public void before(final HttpRequestBase request) throws Exception {
-			request.setURI(getFinalURI(request.getURI()));
-			// OAuth sign the request.
-			consumer_.sign(request);
+			exchange_.before(request, this);
 		}
 		/**
 		 * Override this method if you need to modify the request URI
 		 * before execution.  Allows the appending/inclusion of query
 		 * parameters (if a GET), etc.
 		 */
-		public URI getFinalURI(final URI uri) throws Exception {
+		@Override
+		public URIBuilder getFinalURI(final URIBuilder builder)
+			throws Exception {
 			// Default behavior is no modifications to final URI.
-			return uri;
+			return builder;
 		}
 		@Override
 		public boolean check(final HttpResponse response,
 			final HttpContext context) {
-			return response.getStatusLine().getStatusCode() == SC_OK;
+			return exchange_.check(response);
+		}
+		@Override
+		public String success(final HttpSuccess success) throws Exception {
+			final long start = System.nanoTime();
+			try {
+				return super.success(success);
+			} finally {
+				exchange_.parsed(start);
+			}
 		}
 	}
 	
+	/**
+	 * Decodes the response entity incrementally with a pull parser,
+	 * straight off of the wire, instead of materializing the entire
+	 * response body before mapping it.
+	 */
+	private abstract class TwitterApiStreamingClosure<S>
+		extends TwitterApiGsonClosure<S> {
+		public TwitterApiStreamingClosure(final OAuthConsumer consumer) {
+			// The type is never used, the body is never handed to Gson
+			// in one piece.
+			super((Type)Object.class, consumer);
+		}
+		@Override
+		public final S decode(final HttpSuccess success) throws Exception {
+			final JsonReader reader = new JsonReader(new InputStreamReader(
+				success.getResponse().getEntity().getContent(), UTF_8));
+			return stream(reader);
+		}
+		public abstract S stream(final JsonReader reader) throws Exception;
+	}
+	
+	private static final Function<UserList,UserList> COPY_USER_LIST =
+		new Function<UserList,UserList>() {
+		@Override
+		public UserList apply(final UserList list) {
+			// The views handed out are read-only, but a caller may still
+			// append to its list, so each gets a list of its own.
+			return new UserList(new ArrayList<User>(list.getUsers()),
+				list.getNextCursor());
+		}
+	};
+	
+	private static final Function<TweetSearchResults,TweetSearchResults>
+		COPY_TWEET_SEARCH_RESULTS =
+			new Function<TweetSearchResults,TweetSearchResults>() {
+		@Override
+		public TweetSearchResults apply(final TweetSearchResults results) {
+			return new TweetSearchResults(new ArrayList<Tweet>(
+				results.getResults()));
+		}
+	};
+	
+	private static final <T> Function<List<T>,List<T>> copyList() {
+		return new Function<List<T>,List<T>>() {
+			@Override
+			public List<T> apply(final List<T> list) {
+				return (list == null) ? null : new ArrayList<T>(list);
+			}
+		};
+	}
+	
+	// The parameter builders below are package-private so that the
+	// benchmarks can measure the real thing, and so AsyncTwitterApiClient
+	// asks for exactly the same thing.
+	
+	static final URIBuilder addUserParameters(final URIBuilder builder,
+		final String username) {
+		return builder.addParameter(API_SCREEN_NAME_PARAM, username);
+	}
+	
+	static final URIBuilder addCursoredUserListParameters(
+		final URIBuilder builder, final String username,
+		final String cursor) {
+		return builder
+			.addParameter(API_SCREEN_NAME_PARAM, username)
+			// Cursor can be null, if so then the default value is -1
+			.addParameter(API_CURSOR_PARAM,
+				(cursor == null) ? API_BEGIN_CURSOR : cursor);
+	}
+	
+	static final URIBuilder addUserTimelineParameters(
+		final URIBuilder builder, final String username, final int count,
+		final long maxId, final long sinceId) {
+		builder.addParameter(API_SCREEN_NAME_PARAM, username)
+			.addParameter(API_COUNT_PARAM, Integer.toString(count));
+		if(maxId > 0L) {
+			builder.addParameter(API_MAXID_PARAM,
+				Long.toString(maxId - 1L));
+		}
+		if(sinceId > 0L) {
+			builder.addParameter(API_SINCEID_PARAM,
+				Long.toString(sinceId));
+		}
+		return builder;
+	}
+	
+	static final URIBuilder addTweetSearchParameters(
+		final URIBuilder builder, final String query, final int count,
+		final long maxId, final long sinceId) {
+		builder.addParameter(API_QUERY_PARAM, query)
+			.addParameter(API_COUNT_PARAM, 
+				(count <= 0 || count > API_SEARCH_TWEETS_MAX_COUNT) ?
+					Integer.toString(API_TWEETS_DEFAULT_COUNT) :
+					Integer.toString(count));
+		if(maxId > 0L) {
+			builder.addParameter(API_MAXID_PARAM, Long.toString(maxId));
+		}
+		if(sinceId > 0L) {
+			builder.addParameter(API_SINCEID_PARAM,
+				Long.toString(sinceId));
+		}
+		return builder;
+	}
+	
+	/**
+	 * Streams the "users" array of a cursored user list response to the
+	 * callback, returning the next cursor.
+	 */
+	private static final String streamUserList(final JsonReader reader,
+		final TwitterEntityCallback<User> callback) throws Exception {
+		String nextCursor = API_END_CURSOR;
+		reader.beginObject();
+		while(reader.hasNext()) {
+			final String name = reader.nextName();
+			if(API_USERS_FIELD.equals(name)) {
+				streamArray(reader, USER_TYPE, callback);
+			} else if(API_NEXT_CURSOR_FIELD.equals(name)) {
+				nextCursor = reader.nextString();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return nextCursor;
+	}
+	
+	/**
+	 * Streams the "statuses" array of a search response to the callback,
+	 * returning the number of tweets it was handed.
+	 */
+	private static final <T extends TwitterEntity> int streamSearchResults(
+		final JsonReader reader, final Type type,
+		final TwitterEntityCallback<T> callback) throws Exception {
+		int count = 0;
+		reader.beginObject();
+		while(reader.hasNext()) {
+			final String name = reader.nextName();
+			if(API_STATUSES_FIELD.equals(name)) {
+				count += streamArray(reader, type, callback);
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+		return count;
+	}
+	
 	public Either<HttpFailure,User> getUser(final String username) {
 		return getUser(username, null);
 	}
@@ -298,11 +809,167 @@ public final class TwitterApiClient {
 		checkNotNull(username, "Username cannot be null!");
 		return new TwitterApiGsonClosure<User>(User.class, consumer) {
 			@Override
-			public URI getFinalURI(final URI uri) throws Exception {
-				return new URIBuilder(uri)
-					.addParameter(API_SCREEN_NAME_PARAM, username).build();
+			public URIBuilder getFinalURI(final URIBuilder builder)
+				throws Exception {
+				return addUserParameters(builder, username);
+			}
+		}.coalescedGet(USERS_SHOW_URL, null);
+	}
+	
+	/**
+	 * Looks up a single batch of at most 100 users by screen name.  Users
+	 * that don't exist (or are suspended) are silently left out; if none
+	 * of them do, the API responds with a 404.
+	 */
+	public Either<HttpFailure,List<User>> lookupUsers(
+		final List<String> screenNames, final OAuthConsumer consumer) {
+		return lookupUsers(API_SCREEN_NAME_PARAM, screenNames, consumer);
+	}
+	
+	/**
+	 * Looks up a single batch of at most 100 users by user id.
+	 */
+	public Either<HttpFailure,List<User>> lookupUsersById(
+		final List<String> ids, final OAuthConsumer consumer) {
+		return lookupUsers(API_USER_ID_PARAM, ids, consumer);
+	}
+	
+	private Either<HttpFailure,List<User>> lookupUsers(final String param,
+		final List<String> values, final OAuthConsumer consumer) {
+		checkNotNull(values, "Users to look up cannot be null!");
+		checkArgument(!values.isEmpty() &&
+			values.size() <= API_USERS_LOOKUP_MAX, "Can only look up " +
+			"between 1 and " + API_USERS_LOOKUP_MAX + " users at a time: %s",
+			values.size());
+		return new TwitterApiGsonClosure<List<User>>(
+			LIST_OF_USERS_TYPE, consumer) {
+			@Override
+			public URIBuilder getFinalURI(final URIBuilder builder)
+				throws Exception {
+				return builder.addParameter(param,
+					Joiner.on(',').join(values));
+			}
+		}.coalescedGet(USERS_LOOKUP_URL, TwitterApiClient.<User>copyList());
+	}
+	
+	/**
+	 * Looks up any number of users by screen name, 100 at a time, on the
+	 * calling thread.
+	 * @see #getUsers(Collection, OAuthConsumer, ExecutorService)
+	 */
+	public Either<HttpFailure,Map<String,User>> getUsers(
+		final Collection<String> screenNames) {
+		return getUsers(screenNames, null, null);
+	}
+	
+	/**
+	 * Looks up any number of users by screen name, in batches of 100 per
+	 * users/lookup request, running the batches concurrently on the given
+	 * executor (or one after another on the calling thread if it's null.)
+	 * Every batch goes through the client's rate limiter like any other
+	 * request, so the executor's size is the only concurrency limit.
+	 * @return the users found, keyed by screen name; just like
+	 * {@link User#equals(Object)} the keys are case insensitive.  Users
+	 * that don't exist are left out.  If any batch fails, the whole
+	 * lookup fails.
+	 */
+	public Either<HttpFailure,Map<String,User>> getUsers(
+		final Collection<String> screenNames, final OAuthConsumer consumer,
+		final ExecutorService executor) {
+		checkNotNull(screenNames, "Screen names cannot be null!");
+		return bulkLookupUsers(API_SCREEN_NAME_PARAM, screenNames, consumer,
+			executor);
+	}
+	
+	/**
+	 * Looks up any number of users by user id, in batches of 100.
+	 * @return the users found, keyed by user id
+	 * @see #getUsers(Collection, OAuthConsumer, ExecutorService)
+	 */
+	public Either<HttpFailure,Map<String,User>> getUsersById(
+		final Collection<String> ids, final OAuthConsumer consumer,
+		final ExecutorService executor) {
+		checkNotNull(ids, "User ids cannot be null!");
+		return bulkLookupUsers(API_USER_ID_PARAM, ids, consumer, executor);
+	}
+	
+	private Either<HttpFailure,Map<String,User>> bulkLookupUsers(
+		final String param, final Collection<String> values,
+		final OAuthConsumer consumer, final ExecutorService executor) {
+		// Screen names are case insensitive, so there's no point in
+		// asking for the same one twice in different cases.
+		final Set<String> unique = new TreeSet<String>(
+			String.CASE_INSENSITIVE_ORDER);
+		for(final String value : values) {
+			checkNotNull(value, "Cannot look up a null user!");
+			unique.add(value);
+		}
+		final boolean byId = API_USER_ID_PARAM.equals(param);
+		final Map<String,User> users = new TreeMap<String,User>(
+			String.CASE_INSENSITIVE_ORDER);
+		final List<List<String>> batches = Lists.partition(
+			new ArrayList<String>(unique), API_USERS_LOOKUP_MAX);
+		if(executor == null) {
+			for(final List<String> batch : batches) {
+				final HttpFailure failure = addUsers(users,
+					lookupUsers(param, batch, consumer), byId);
+				if(failure != null) {
+					return Left.left(failure);
+				}
 			}
-		}.get(USERS_SHOW_URL);
+			return Right.right(users);
+		}
+		final List<Future<Either<HttpFailure,List<User>>>> futures =
+			new ArrayList<Future<Either<HttpFailure,List<User>>>>(
+				batches.size());
+		try {
+			for(final List<String> batch : batches) {
+				futures.add(executor.submit(
+					new Callable<Either<HttpFailure,List<User>>>() {
+					@Override
+					public Either<HttpFailure,List<User>> call() {
+						return lookupUsers(param, batch, consumer);
+					}
+				}));
+			}
+			for(final Future<Either<HttpFailure,List<User>>> future : futures) {
+				final HttpFailure failure = addUsers(users,
+					Uninterruptibles.getUninterruptibly(future), byId);
+				if(failure != null) {
+					return Left.left(failure);
+				}
+			}
+			return Right.right(users);
+		} catch (ExecutionException e) {
+			return Left.left(new HttpFailure(e));
+		} finally {
+			// No-op for batches that already finished; stops the rest
+			// from being sent if we're bailing out early.
+			for(final Future<Either<HttpFailure,List<User>>> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+	
+	/**
+	 * Adds a successful batch of users to the map, returning null, or
+	 * returns the failure.  A batch where none of the users exist comes
+	 * back from the API as a 404, which isn't a failure here.
+	 */
+	private static final HttpFailure addUsers(final Map<String,User> users,
+		final Either<HttpFailure,List<User>> batch, final boolean byId) {
+		if(!batch.success()) {
+			final HttpFailure failure = batch.left();
+			return (failure.getResponse() != null &&
+				failure.getStatusCode() == SC_NOT_FOUND) ? null : failure;
+		}
+		for(final User user : batch.right()) {
+			final String key = byId ? user.getId() : user.getScreenName();
+			if(key != null) {
+				users.put(key, user);
+			}
+		}
+		return null;
 	}
 	
 	public Either<HttpFailure,UserList> getFriends(final String username) {
@@ -315,17 +982,63 @@ public final class TwitterApiClient {
 		checkNotNull(cursor, "Cursor cannot be null!");
 		return new TwitterApiGsonClosure<UserList>(UserList.class, consumer) {
 			@Override
-			public URI getFinalURI(final URI uri) throws Exception {
-				return new URIBuilder(uri)
-					.addParameter(API_SCREEN_NAME_PARAM, username)
-					// Cursor can be null, if so then the default value is -1
-					.addParameter(API_CURSOR_PARAM,
-						(cursor == null) ? API_BEGIN_CURSOR : cursor)
-					.build();
+			public URIBuilder getFinalURI(final URIBuilder builder)
+				throws Exception {
+				return addCursoredUserListParameters(builder, username, cursor);
+			}
+		}.coalescedGet(FRIENDS_LIST_API_URL, COPY_USER_LIST);
+	}
+	
+	/**
+	 * Streams a single page of friends to the callback, one user at a
+	 * time as each is decoded off of the wire.
+	 * @return the cursor of the next page, "0" if this was the last page
+	 */
+	public Either<HttpFailure,String> getFriends(final String username,
+		final String cursor, final OAuthConsumer consumer,
+		final TwitterEntityCallback<User> callback) {
+		checkNotNull(username, "Username cannot be null!");
+		checkNotNull(cursor, "Cursor cannot be null!");
+		checkNotNull(callback, "Callback cannot be null!");
+		return new TwitterApiStreamingClosure<String>(consumer) {
+			@Override
+			public URIBuilder getFinalURI(final URIBuilder builder)
+				throws Exception {
+				return addCursoredUserListParameters(builder, username, cursor);
+			}
+			@Override
+			public String stream(final JsonReader reader) throws Exception {
+				return streamUserList(reader, callback);
 			}
 		}.get(FRIENDS_LIST_API_URL);
 	}
 	
+	/**
+	 * Returns a lazy {@link Iterable} over all of a user's friends, across
+	 * every page, fetched on the calling thread as they're needed.
+	 */
+	public CursoredUserIterable getAllFriends(final String username) {
+		return getAllFriends(username, null, null, 0);
+	}
+	
+	/**
+	 * Returns a lazy {@link Iterable} over all of a user's friends, across
+	 * every page.  When prefetchDepth is greater than zero, up to that many
+	 * pages are fetched ahead of the consumer on the given executor.
+	 */
+	public CursoredUserIterable getAllFriends(final String username,
+		final OAuthConsumer consumer, final ExecutorService executor,
+		final int prefetchDepth) {
+		checkNotNull(username, "Username cannot be null!");
+		return new CursoredUserIterable(executor, prefetchDepth) {
+			@Override
+			protected Either<HttpFailure,UserList> fetchPage(
+				final String cursor) {
+				return getFriends(username, cursor, consumer);
+			}
+		};
+	}
+	
 	public Either<HttpFailure,UserList> getFollowers(final String username) {
 		return getFollowers(username, API_BEGIN_CURSOR);
 	}
@@ -340,17 +1053,63 @@ public final class TwitterApiClient {
 		checkNotNull(username, "Username cannot be null!");
 		return new TwitterApiGsonClosure<UserList>(UserList.class, consumer) {
 			@Override
-			public URI getFinalURI(final URI uri) throws Exception {
-				return new URIBuilder(uri)
-					.addParameter(API_SCREEN_NAME_PARAM, username)
-					// Cursor can be null, if so then the default value is -1
-					.addParameter(API_CURSOR_PARAM,
-						(cursor == null) ? API_BEGIN_CURSOR : cursor)
-					.build();
+			public URIBuilder getFinalURI(final URIBuilder builder)
+				throws Exception {
+				return addCursoredUserListParameters(builder, username, cursor);
+			}
+		}.coalescedGet(FOLLOWERS_LIST_API_URL, COPY_USER_LIST);
+	}
+	
+	/**
+	 * Streams a single page of followers to the callback, one user at a
+	 * time as each is decoded off of the wire.
+	 * @return the cursor of the next page, "0" if this was the last page
+	 */
+	public Either<HttpFailure,String> getFollowers(final String username,
+		final String cursor, final OAuthConsumer consumer,
+		final TwitterEntityCallback<User> callback) {
+		checkNotNull(username, "Username cannot be null!");
+		checkNotNull(callback, "Callback cannot be null!");
+		return new TwitterApiStreamingClosure<String>(consumer) {
+			@Override
+			public URIBuilder getFinalURI(final URIBuilder builder)
+				throws Exception {
+				return addCursoredUserListParameters(builder, username, cursor);
+			}
+			@Override
+			public String stream(final JsonReader reader) throws Exception {
+				return streamUserList(reader, callback);
 			}
 		}.get(FOLLOWERS_LIST_API_URL);
 	}
 	
+	/**
+	 * Returns a lazy {@link Iterable} over all of a user's followers,
+	 * across every page, fetched on the calling thread as they're needed.
+	 */
+	public CursoredUserIterable getAllFollowers(final String username) {
+		return getAllFollowers(username, null, null, 0);
+	}
+	
+	/**
+	 * Returns a lazy {@link Iterable} over all of a user's followers,
+	 * across every page.  When prefetchDepth is greater than zero, up to
+	 * that many pages are fetched ahead of the consumer on the given
+	 * executor.
+	 */
+	public CursoredUserIterable getAllFollowers(final String username,
+		final OAuthConsumer consumer, final ExecutorService executor,
+		final int prefetchDepth) {
+		checkNotNull(username, "Username cannot be null!");
+		return new CursoredUserIterable(executor, prefetchDepth) {
+			@Override
+			protected Either<HttpFailure,UserList> fetchPage(
+				final String cursor) {
+				return getFollowers(username, cursor, consumer);
+			}
+		};
+	}
+	
 	public Either<HttpFailure,List<Tweet>> getTweets(
 		final String username) {
 		return getTweets(username, API_TWEETS_DEFAULT_COUNT, 0L, 0L);
@@ -358,67 +1117,277 @@ public final class TwitterApiClient {
 	
 	public Either<HttpFailure,List<Tweet>> getTweets(final String username,
 		final int count, final long maxId, final long sinceId) {
-		return getTweets(username,
-			// Count cannot be <= zero nor can it be greater
-			// than the API max we self-inforce on ourselves.
-			(count <= 0 || count > API_TWEETS_MAX_COUNT) ?
-				API_TWEETS_DEFAULT_COUNT : count,
-			maxId, sinceId,
+		return getTweets(username, getTweetsCount(count), maxId, sinceId,
 			// Use a default OAuthConsumer
 			null);
 	}
 	
+	/**
+	 * Count cannot be <= zero nor can it be greater than the API max we
+	 * self-inforce on ourselves.
+	 */
+	static final int getTweetsCount(final int count) {
+		return (count <= 0 || count > API_TWEETS_MAX_COUNT) ?
+			API_TWEETS_DEFAULT_COUNT : count;
+	}
+	
 	public Either<HttpFailure,List<Tweet>> getTweets(final String username,
 		final int count, final long maxId, final long sinceId,
 		final OAuthConsumer consumer) {
 		checkNotNull(username, "Username cannot be null!");		
 		return new TwitterApiGsonClosure<List<Tweet>>(
-			new TypeToken<List<Tweet>>(){}.getType(),
-			consumer) {
+			LIST_OF_TWEETS_TYPE, consumer) {
 			@Override
-			public URI getFinalURI(final URI uri) throws Exception {
-				final URIBuilder builder = new URIBuilder(uri)
-					.addParameter(API_SCREEN_NAME_PARAM, username)
-					.addParameter(API_COUNT_PARAM, Integer.toString(count));
-				if(maxId > 0L) {
-					builder.addParameter(API_MAXID_PARAM,
-						Long.toString(maxId - 1L));
-				}
-				if(sinceId > 0L) {
-					builder.addParameter(API_SINCEID_PARAM,
-						Long.toString(sinceId));
-				}
-				return builder.build();
+			public URIBuilder getFinalURI(final URIBuilder builder)
+				throws Exception {
+				return addUserTimelineParameters(builder, username, count, maxId,
+					sinceId);
+			}
+		}.coalescedGet(STATUSES_USER_TIMELINE_URL,
+			TwitterApiClient.<Tweet>copyList());
+	}
+	
+	/**
+	 * Streams a user's timeline to the callback, one tweet at a time as
+	 * each is decoded off of the wire.
+	 * @return the number of tweets handed to the callback
+	 */
+	public Either<HttpFailure,Integer> getTweets(final String username,
+		final int count, final long maxId, final long sinceId,
+		final OAuthConsumer consumer,
+		final TwitterEntityCallback<Tweet> callback) {
+		checkNotNull(username, "Username cannot be null!");
+		checkNotNull(callback, "Callback cannot be null!");
+		return new TwitterApiStreamingClosure<Integer>(consumer) {
+			@Override
+			public URIBuilder getFinalURI(final URIBuilder builder)
+				throws Exception {
+				return addUserTimelineParameters(builder, username, count, maxId,
+					sinceId);
+			}
+			@Override
+			public Integer stream(final JsonReader reader) throws Exception {
+				return streamArray(reader, TWEET_TYPE, callback);
+			}
+		}.get(STATUSES_USER_TIMELINE_URL);
+	}
+	
+	/**
+	 * Same as {@link #getTweets(String, int, long, long, OAuthConsumer,
+	 * TwitterEntityCallback)}, but decodes each tweet straight into a
+	 * {@link CompactTweet}, for callers holding on to lots of them.
+	 * @return the number of tweets handed to the callback
+	 */
+	public Either<HttpFailure,Integer> getCompactTweets(final String username,
+		final int count, final long maxId, final long sinceId,
+		final OAuthConsumer consumer,
+		final TwitterEntityCallback<CompactTweet> callback) {
+		checkNotNull(username, "Username cannot be null!");
+		checkNotNull(callback, "Callback cannot be null!");
+		return new TwitterApiStreamingClosure<Integer>(consumer) {
+			@Override
+			public URIBuilder getFinalURI(final URIBuilder builder)
+				throws Exception {
+				return addUserTimelineParameters(builder, username, count, maxId,
+					sinceId);
+			}
+			@Override
+			public Integer stream(final JsonReader reader) throws Exception {
+				return streamArray(reader, COMPACT_TWEET_TYPE, callback);
 			}
 		}.get(STATUSES_USER_TIMELINE_URL);
 	}
 	
+	/**
+	 * Returns a lazy {@link Iterable} that backfills a user's entire
+	 * available timeline, newest to oldest, paging backwards by max_id.
+	 */
+	public TimelineIterable getAllTweets(final String username) {
+		return getAllTweets(username, 0L, null, null, 0);
+	}
+	
+	/**
+	 * Returns a lazy {@link Iterable} over every tweet in a user's
+	 * timeline newer than sinceId, newest first.  The first tweet it
+	 * yields is the since_id to use for the next incremental sync.
+	 */
+	public TimelineIterable getTweetsSince(final String username,
+		final long sinceId) {
+		return getAllTweets(username, sinceId, null, null, 0);
+	}
+	
+	/**
+	 * Returns a lazy {@link Iterable} over a user's timeline, paging
+	 * backwards by max_id, the API maximum of 200 tweets at a time,
+	 * until the API hands back an empty page.  A sinceId greater than
+	 * zero bounds the walk for incremental syncs.  When prefetchDepth is
+	 * greater than zero, the next request is pipelined on the given
+	 * executor while the current page is being consumed.
+	 */
+	public TimelineIterable getAllTweets(final String username,
+		final long sinceId, final OAuthConsumer consumer,
+		final ExecutorService executor, final int prefetchDepth) {
+		checkNotNull(username, "Username cannot be null!");
+		return new TimelineIterable(executor, prefetchDepth) {
+			@Override
+			protected Either<HttpFailure,List<Tweet>> fetchPage(
+				final Long maxId) {
+				return getTweets(username, API_TWEETS_MAX_COUNT, maxId,
+					sinceId, consumer);
+			}
+		};
+	}
+	
 	public Either<HttpFailure,TweetSearchResults> searchTweets(final String query,
 		final int count, final long sinceId, final OAuthConsumer consumer) {
+		return searchTweets(query, count, 0L, sinceId, consumer);
+	}
+	
+	/**
+	 * Searches for tweets with ids in (sinceId, maxId], either bound
+	 * left off if it's not positive; for paging backwards through
+	 * results newer than sinceId, lowering maxId as you go.
+	 */
+	public Either<HttpFailure,TweetSearchResults> searchTweets(final String query,
+		final int count, final long maxId, final long sinceId,
+		final OAuthConsumer consumer) {
 		checkNotNull(query, "Query cannot be null!");
 		return new TwitterApiGsonClosure<TweetSearchResults>(
 			TweetSearchResults.class, consumer) {
 			@Override
-			public URI getFinalURI(final URI uri) throws Exception {
-				final URIBuilder builder = new URIBuilder(uri)
-					.addParameter(API_QUERY_PARAM, query)
-					.addParameter(API_COUNT_PARAM, 
-						(count <= 0 || count > API_SEARCH_TWEETS_MAX_COUNT) ?
-							Integer.toString(API_TWEETS_DEFAULT_COUNT) :
-							Integer.toString(count));
-				if(sinceId > 0L) {
-					builder.addParameter(API_SINCEID_PARAM,
-						Long.toString(sinceId));
-				}
-				return builder.build();
+			public URIBuilder getFinalURI(final URIBuilder builder)
+				throws Exception {
+				return addTweetSearchParameters(builder, query, count, maxId,
+					sinceId);
+			}
+		}.coalescedGet(TWEET_SEARCH_URL, COPY_TWEET_SEARCH_RESULTS);
+	}
+	
+	/**
+	 * Streams tweet search results to the callback, one tweet at a time
+	 * as each is decoded off of the wire.
+	 * @return the number of tweets handed to the callback
+	 */
+	public Either<HttpFailure,Integer> searchTweets(final String query,
+		final int count, final long sinceId, final OAuthConsumer consumer,
+		final TwitterEntityCallback<Tweet> callback) {
+		checkNotNull(query, "Query cannot be null!");
+		checkNotNull(callback, "Callback cannot be null!");
+		return new TwitterApiStreamingClosure<Integer>(consumer) {
+			@Override
+			public URIBuilder getFinalURI(final URIBuilder builder)
+				throws Exception {
+				return addTweetSearchParameters(builder, query, count, 0L,
+					sinceId);
+			}
+			@Override
+			public Integer stream(final JsonReader reader) throws Exception {
+				return streamSearchResults(reader, TWEET_TYPE, callback);
 			}
 		}.get(TWEET_SEARCH_URL);
 	}	
 	
+	/**
+	 * Looks up a single batch of at most 100 tweets by id.  Tweets that
+	 * don't exist, were deleted or can't be seen are left out.
+	 */
+	public Either<HttpFailure,List<Tweet>> lookupTweets(final List<String> ids,
+		final OAuthConsumer consumer) {
+		checkNotNull(ids, "Tweet ids cannot be null!");
+		checkArgument(!ids.isEmpty() && ids.size() <= API_STATUSES_LOOKUP_MAX,
+			"Can only look up between 1 and " + API_STATUSES_LOOKUP_MAX +
+			" tweets at a time: %s", ids.size());
+		return new TwitterApiGsonClosure<List<Tweet>>(
+			LIST_OF_TWEETS_TYPE, consumer) {
+			@Override
+			public URIBuilder getFinalURI(final URIBuilder builder)
+				throws Exception {
+				return builder.addParameter(API_ID_PARAM,
+					Joiner.on(',').join(ids));
+			}
+		}.coalescedGet(STATUSES_LOOKUP_URL,
+			TwitterApiClient.<Tweet>copyList());
+	}
+	
+	/**
+	 * Hydrates any number of tweet ids, in batches of 100 per
+	 * statuses/lookup request, with at most maxConcurrentBatches of them
+	 * running on the executor at any one time.  Tweets are handed to the
+	 * callback as soon as the batch they're in completes, in whatever
+	 * order the batches complete, always on the calling thread, so the
+	 * callback doesn't need to be thread-safe.  Tweets that don't exist
+	 * are left out.
+	 * @return the number of tweets handed to the callback; if any batch
+	 * fails, the batches still outstanding are cancelled and the failure
+	 * is returned instead, though tweets from batches that had already
+	 * completed have been handed to the callback
+	 */
+	public Either<HttpFailure,Integer> hydrateTweets(
+		final Collection<String> ids, final OAuthConsumer consumer,
+		final ExecutorService executor, final int maxConcurrentBatches,
+		final TwitterEntityCallback<Tweet> callback) {
+		checkNotNull(ids, "Tweet ids cannot be null!");
+		checkNotNull(executor, "Executor service cannot be null!");
+		checkNotNull(callback, "Callback cannot be null!");
+		checkArgument(maxConcurrentBatches > 0, "Max concurrent batches " +
+			"must be greater than zero: %s", maxConcurrentBatches);
+		final List<List<String>> batches = Lists.partition(
+			new ArrayList<String>(new LinkedHashSet<String>(ids)),
+			API_STATUSES_LOOKUP_MAX);
+		final CompletionService<Either<HttpFailure,List<Tweet>>> completed =
+			new ExecutorCompletionService<Either<HttpFailure,List<Tweet>>>(
+				executor);
+		final List<Future<Either<HttpFailure,List<Tweet>>>> futures =
+			new ArrayList<Future<Either<HttpFailure,List<Tweet>>>>(
+				batches.size());
+		int count = 0;
+		try {
+			int submitted = 0;
+			for(int done = 0; done < batches.size(); done++) {
+				// Keep up to maxConcurrentBatches in flight.
+				while(submitted < batches.size() &&
+					submitted - done < maxConcurrentBatches) {
+					final List<String> batch = batches.get(submitted++);
+					futures.add(completed.submit(
+						new Callable<Either<HttpFailure,List<Tweet>>>() {
+						@Override
+						public Either<HttpFailure,List<Tweet>> call() {
+							return lookupTweets(batch, consumer);
+						}
+					}));
+				}
+				final Either<HttpFailure,List<Tweet>> result =
+					Uninterruptibles.getUninterruptibly(completed.take());
+				if(!result.success()) {
+					return Left.left(result.left());
+				}
+				for(final Tweet tweet : result.right()) {
+					callback.onEntity(tweet);
+					count++;
+				}
+			}
+			return Right.right(count);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return Left.left(new HttpFailure(e));
+		} catch (ExecutionException e) {
+			return Left.left(new HttpFailure(e));
+		} finally {
+			for(final Future<Either<HttpFailure,List<Tweet>>> future : futures) {
+				future.cancel(true);
+			}
+		}
+	}
+	
 	public Either<HttpFailure,TweetSearchResults> searchTweets(final String query) {
 		return searchTweets(query, API_TWEETS_DEFAULT_COUNT, 0L, null);
 	}
 	
+	/**
+	 * Downloads the avatar at url into memory, every time it's called.
+	 * See {@link com.kolich.twitter.avatar.TwitterAvatarCache} for
+	 * fetching lots of them, or the same ones repeatedly.
+	 */
 	public Either<HttpFailure,byte[]> userGetProfileImage(final String url) {
 		checkNotNull(url, "Avatar URL cannot be null!");
 		return new ByteArrayOrHttpFailureClosure(httpClient_).get(url);
@@ -439,19 +1408,31 @@ public final class TwitterApiClient {
 		final int perPage, final OAuthConsumer consumer) {
 		checkNotNull(query, "Query cannot be null!");
 		return new TwitterApiGsonClosure<List<User>>(
-			new TypeToken<List<User>>(){}.getType(),
-			consumer) {
+			LIST_OF_USERS_TYPE, consumer) {
 			@Override
-			public URI getFinalURI(final URI uri) throws Exception {
-				return new URIBuilder(uri)
-					.addParameter(API_USER_SEARCH_QUERY_PARAM, query)
-					.addParameter(API_USER_SEARCH_PERPAGE_PARAM, 
-						(perPage <= 0 || perPage > API_USER_SEARCH_PERPAGE_MAX) ?
-							Integer.toString(API_USER_SEARCH_PERPAGE_DEFAULT) :
-							Integer.toString(perPage))
-					.build();
+			public URIBuilder getFinalURI(final URIBuilder builder)
+				throws Exception {
+				return addUserSearchParameters(builder, query, perPage);
 			}
-		}.get(USERS_SEARCH_URL);
+		}.coalescedGet(USERS_SEARCH_URL,
+			TwitterApiClient.<User>copyList());
+	}
+	
+	static final URIBuilder addUserSearchParameters(final URIBuilder builder,
+		final String query, final int perPage) {
+		return builder
+			.addParameter(API_USER_SEARCH_QUERY_PARAM, query)
+			.addParameter(API_USER_SEARCH_PERPAGE_PARAM, 
+				Integer.toString(getUserSearchPerPage(perPage)));
+	}
+	
+	/**
+	 * The per_page a user search actually asks for: the default if
+	 * perPage isn't positive, capped at the most the API allows.
+	 */
+	static final int getUserSearchPerPage(final int perPage) {
+		return (perPage <= 0) ? API_USER_SEARCH_PERPAGE_DEFAULT :
+			Math.min(perPage, API_USER_SEARCH_PERPAGE_MAX);
 	}
 	
 	public Either<HttpFailure,Tweet> statusUpdate(final String text) {
@@ -464,22 +1445,26 @@ public final class TwitterApiClient {
 		return new TwitterApiGsonClosure<Tweet>(Tweet.class, consumer) {
 			@Override
 			public void before(final HttpRequestBase request) throws Exception {
-				final List<NameValuePair> params = new ArrayList<NameValuePair>();
-				params.add(new BasicNameValuePair(API_STATUS_PARAM, text));
 				// Build the request entity.
-				try {
-					((HttpPost)request).setEntity(new UrlEncodedFormEntity(
-						params, UTF_8));
-				} catch (UnsupportedEncodingException e) {
-					throw new TwitterApiException("Failed to UTF-8 " +
-						"encode POST body.", e);
-				}
+				((HttpPost)request).setEntity(getStatusUpdateEntity(text));
 				// OAuth sign the request.
 				super.before(request);
 			}
 		}.post(STATUSES_UPDATE_URL);
 	}
 	
+	static final UrlEncodedFormEntity getStatusUpdateEntity(
+		final String text) {
+		final List<NameValuePair> params = new ArrayList<NameValuePair>();
+		params.add(new BasicNameValuePair(API_STATUS_PARAM, text));
+		try {
+			return new UrlEncodedFormEntity(params, UTF_8);
+		} catch (UnsupportedEncodingException e) {
+			throw new TwitterApiException("Failed to UTF-8 " +
+				"encode POST body.", e);
+		}
+	}
+	
 	public OAuthConsumer xAuthRetrieveAccessTokenConsumer(
 		final String username, final String password) {
 		checkNotNull(username, "Username cannot be null!");
@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import org.apache.http.client.HttpClient;
+
+import com.kolich.twitter.http.TwitterApiConnectionPool;
+import com.kolich.twitter.metrics.DefaultTwitterApiMetrics;
+import com.kolich.twitter.metrics.NoopTwitterApiMetrics;
+import com.kolich.twitter.metrics.TwitterApiMetrics;
+import com.kolich.twitter.ratelimit.TwitterApiRateLimiter;
+import com.kolich.twitter.ratelimit.TwitterApiTokenPool;
+
+/**
+ * Builds a {@link TwitterApiClient} on top of a pooled, keep-alive
+ * {@link TwitterApiConnectionPool} unless told to use some other
+ * {@link HttpClient}.  The pool's statistics are available afterwards
+ * through {@link TwitterApiClient#getConnectionPool()}.
+ */
+public final class TwitterApiClientBuilder {
+	
+	private String consumerKey_;
+	private String consumerKeySecret_;
+	private String apiToken_;
+	private String apiTokenSecret_;
+	
+	private TwitterApiRateLimiter rateLimiter_ = null;
+	private TwitterApiTokenPool tokenPool_ = null;
+	
+	private HttpClient httpClient_ = null;
+	private TwitterApiConnectionPool connectionPool_ = null;
+	private int warmUpConnections_ = 0;
+	
+	private TwitterApiMetrics metrics_ = NoopTwitterApiMetrics.INSTANCE;
+	
+	public TwitterApiClientBuilder setCredentials(final String consumerKey,
+		final String consumerKeySecret, final String apiToken,
+		final String apiTokenSecret) {
+		consumerKey_ = consumerKey;
+		consumerKeySecret_ = consumerKeySecret;
+		apiToken_ = apiToken;
+		apiTokenSecret_ = apiTokenSecret;
+		return this;
+	}
+	
+	/**
+	 * Defaults to the token pool's rate limiter, if there is one, or a
+	 * new fail fast one if not.
+	 */
+	public TwitterApiClientBuilder setRateLimiter(
+		final TwitterApiRateLimiter rateLimiter) {
+		rateLimiter_ = rateLimiter;
+		return this;
+	}
+	
+	public TwitterApiClientBuilder setTokenPool(
+		final TwitterApiTokenPool tokenPool) {
+		tokenPool_ = tokenPool;
+		return this;
+	}
+	
+	/**
+	 * Use this connection pool, possibly shared with other clients,
+	 * instead of a new one with the default settings.
+	 */
+	public TwitterApiClientBuilder setConnectionPool(
+		final TwitterApiConnectionPool connectionPool) {
+		connectionPool_ = connectionPool;
+		return this;
+	}
+	
+	/**
+	 * Use this {@link HttpClient} as is, no connection pool is built and
+	 * none is reported by the client.
+	 */
+	public TwitterApiClientBuilder setHttpClient(final HttpClient httpClient) {
+		httpClient_ = httpClient;
+		return this;
+	}
+	
+	/**
+	 * Open this many connections to the API before returning the client,
+	 * so the first requests don't have to wait on a TLS handshake.
+	 */
+	public TwitterApiClientBuilder setWarmUpConnections(final int connections) {
+		checkArgument(connections >= 0, "Warm up connections cannot be " +
+			"negative: %s", connections);
+		warmUpConnections_ = connections;
+		return this;
+	}
+	
+	/**
+	 * Records every request's signing, network and parse time, by
+	 * endpoint; for example a {@link DefaultTwitterApiMetrics}.  Records
+	 * nothing by default.
+	 */
+	public TwitterApiClientBuilder setMetrics(final TwitterApiMetrics metrics) {
+		metrics_ = metrics;
+		return this;
+	}
+	
+	public TwitterApiClient build() {
+		checkNotNull(consumerKey_, "Credentials must be set.");
+		checkState(httpClient_ == null || connectionPool_ == null,
+			"Set either an HttpClient or a connection pool, not both.");
+		checkState(httpClient_ == null || warmUpConnections_ == 0,
+			"Only a connection pool can be warmed up.");
+		final TwitterApiRateLimiter rateLimiter = (rateLimiter_ != null) ?
+			rateLimiter_ : (tokenPool_ != null) ?
+				tokenPool_.getRateLimiter() : new TwitterApiRateLimiter();
+		TwitterApiConnectionPool pool = connectionPool_;
+		if(httpClient_ == null && pool == null) {
+			pool = TwitterApiConnectionPool.builder().build();
+		}
+		if(pool != null && warmUpConnections_ > 0) {
+			pool.warmUp(warmUpConnections_);
+		}
+		return new TwitterApiClient(
+			(pool != null) ? pool.getHttpClient() : httpClient_,
+			consumerKey_, consumerKeySecret_, apiToken_, apiTokenSecret_,
+			rateLimiter, tokenPool_, pool, metrics_);
+	}
+	
+}
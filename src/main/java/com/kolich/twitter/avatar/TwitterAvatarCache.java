@@ -0,0 +1,586 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.avatar;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.apache.http.HttpStatus.SC_NOT_MODIFIED;
+import static org.apache.http.HttpStatus.SC_OK;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.kolich.common.functional.either.Either;
+import com.kolich.common.functional.either.Left;
+import com.kolich.common.functional.either.Right;
+import com.kolich.http.common.response.HttpFailure;
+import com.kolich.http.common.response.HttpSuccess;
+import com.kolich.http.helpers.definitions.OrHttpFailureClosure;
+import com.kolich.twitter.TwitterApiClient;
+import com.kolich.twitter.singleflight.SingleFlight;
+
+/**
+ * Fetches and caches profile images, the kind of thing you'd otherwise
+ * do with {@link TwitterApiClient#userGetProfileImage(String)} over and
+ * over again when rendering a grid of followers.
+ *
+ * Images are streamed straight from the socket to disk, never held on
+ * the heap, and stored under the SHA-1 of their content so the same
+ * avatar behind different URLs is only kept once.  A small index maps
+ * each URL to its content along with the ETag and Last-Modified the
+ * server sent, so once an entry is older than the configured max age
+ * it's revalidated with a conditional GET and a 304 costs nothing but
+ * the round trip.  Repeat requests are answered with a read-only,
+ * memory-mapped view of the cached file.
+ *
+ * At most maxConcurrentDownloads images are downloaded at once, no matter
+ * how many threads ask, and concurrent requests for the same URL share a
+ * single download.
+ */
+public final class TwitterAvatarCache implements Closeable {
+
+	private static final Logger logger__ =
+		LoggerFactory.getLogger(TwitterAvatarCache.class);
+
+	private static final String BLOBS_DIR = "blobs";
+	private static final String INDEX_DIR = "index";
+	private static final String TMP_DIR = "tmp";
+
+	private static final String INDEX_URL = "url";
+	private static final String INDEX_CONTENT = "content";
+	private static final String INDEX_ETAG = "etag";
+	private static final String INDEX_LAST_MODIFIED = "lastModified";
+	private static final String INDEX_VALIDATED = "validated";
+
+	private static final String ETAG = "ETag";
+	private static final String LAST_MODIFIED = "Last-Modified";
+	private static final String IF_NONE_MATCH = "If-None-Match";
+	private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+	/**
+	 * How much of a response body to move from the socket to the file
+	 * in a single transfer.
+	 */
+	private static final long TRANSFER_CHUNK_SIZE = 64L * 1024L;
+
+	private static final int DEFAULT_MAX_MAPPED_FILES = 4096;
+
+	private static final BaseEncoding HEX = BaseEncoding.base16().lowerCase();
+
+	private final HttpClient httpClient_;
+	private final Path blobs_;
+	private final Path index_;
+	private final Path tmp_;
+	private final long maxAgeMillis_;
+
+	private final Semaphore downloadPermits_;
+	private final ExecutorService executor_;
+	private final SingleFlight inFlight_;
+
+	/**
+	 * Index entries we've already seen, by URL.  Anything missing here
+	 * may still be on disk from a previous run.
+	 */
+	private final ConcurrentMap<String,AvatarEntry> entries_;
+
+	/**
+	 * Mapped cache files, by content hash.  Evicted mappings are released
+	 * whenever the garbage collector gets around to it.
+	 */
+	private final Cache<String,MappedByteBuffer> mapped_;
+
+	private final AtomicLong hits_;
+	private final AtomicLong downloads_;
+	private final AtomicLong notModified_;
+	private final AtomicLong bytesDownloaded_;
+
+	public TwitterAvatarCache(final HttpClient httpClient,
+		final Path directory, final int maxConcurrentDownloads,
+		final long maxAge, final TimeUnit unit, final int maxMappedFiles) {
+		checkNotNull(httpClient, "HTTP client cannot be null.");
+		checkNotNull(directory, "Cache directory cannot be null.");
+		checkNotNull(unit, "Max age time unit cannot be null.");
+		checkArgument(maxConcurrentDownloads > 0, "Max concurrent downloads " +
+			"must be greater than zero.");
+		checkArgument(maxAge >= 0L, "Max age cannot be negative.");
+		checkArgument(maxMappedFiles > 0, "Max mapped files must be " +
+			"greater than zero.");
+		httpClient_ = httpClient;
+		blobs_ = directory.resolve(BLOBS_DIR);
+		index_ = directory.resolve(INDEX_DIR);
+		tmp_ = directory.resolve(TMP_DIR);
+		try {
+			Files.createDirectories(blobs_);
+			Files.createDirectories(index_);
+			Files.createDirectories(tmp_);
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Failed to create avatar " +
+				"cache directory: " + directory, e);
+		}
+		maxAgeMillis_ = unit.toMillis(maxAge);
+		downloadPermits_ = new Semaphore(maxConcurrentDownloads);
+		executor_ = Executors.newFixedThreadPool(maxConcurrentDownloads,
+			new ThreadFactoryBuilder()
+				.setDaemon(true)
+				.setNameFormat("twitter-avatar-download-%d")
+				.build());
+		inFlight_ = new SingleFlight();
+		entries_ = new ConcurrentHashMap<String,AvatarEntry>();
+		mapped_ = CacheBuilder.newBuilder()
+			.maximumSize(maxMappedFiles)
+			.build();
+		hits_ = new AtomicLong();
+		downloads_ = new AtomicLong();
+		notModified_ = new AtomicLong();
+		bytesDownloaded_ = new AtomicLong();
+	}
+
+	public TwitterAvatarCache(final HttpClient httpClient,
+		final Path directory, final int maxConcurrentDownloads,
+		final long maxAge, final TimeUnit unit) {
+		this(httpClient, directory, maxConcurrentDownloads, maxAge, unit,
+			DEFAULT_MAX_MAPPED_FILES);
+	}
+
+	/**
+	 * Shares the given client's {@link HttpClient}, and so its connection
+	 * pool.  Avatars are served from a CDN and aren't OAuth signed or rate
+	 * limited, so nothing else about the client is used.
+	 */
+	public TwitterAvatarCache(final TwitterApiClient client,
+		final Path directory, final int maxConcurrentDownloads,
+		final long maxAge, final TimeUnit unit) {
+		this(checkNotNull(client, "Client cannot be null.").getHttpClient(),
+			directory, maxConcurrentDownloads, maxAge, unit);
+	}
+
+	/**
+	 * Returns a read-only view of the image at url, downloading it first
+	 * if it isn't cached, or revalidating it if the cached copy is older
+	 * than the max age.  Every call gets its own view with its own
+	 * position and limit; the underlying mapping is shared.
+	 */
+	public Either<HttpFailure,ByteBuffer> get(final String url) {
+		checkNotNull(url, "Avatar URL cannot be null.");
+		final AvatarEntry entry = getEntry(url);
+		if(entry != null && !isStale(entry)) {
+			final ByteBuffer buffer = map(entry.content_);
+			if(buffer != null) {
+				hits_.incrementAndGet();
+				return Right.right(buffer);
+			}
+			// The file went missing underneath us, fall through and
+			// download it again.
+		}
+		final Either<HttpFailure,String> content = inFlight_.execute(url,
+			new Supplier<Either<HttpFailure,String>>() {
+			@Override
+			public Either<HttpFailure,String> get() {
+				return fetch(url);
+			}
+		});
+		if(!content.success()) {
+			return Left.left(content.left());
+		}
+		final ByteBuffer buffer = map(content.right());
+		if(buffer == null) {
+			return Left.left(new HttpFailure(new IOException("Cached " +
+				"avatar disappeared before it could be mapped: " + url)));
+		}
+		return Right.right(buffer);
+	}
+
+	/**
+	 * Fetches every distinct URL in parallel, never more than the cap
+	 * at once, and waits for all of them.  The returned map is in the
+	 * iteration order of urls.
+	 */
+	public Map<String,Either<HttpFailure,ByteBuffer>> getAll(
+		final Collection<String> urls) {
+		checkNotNull(urls, "Avatar URLs cannot be null.");
+		final Map<String,Future<Either<HttpFailure,ByteBuffer>>> futures =
+			new LinkedHashMap<String,Future<Either<HttpFailure,ByteBuffer>>>();
+		for(final String url : new LinkedHashSet<String>(urls)) {
+			futures.put(url, executor_.submit(
+				new Callable<Either<HttpFailure,ByteBuffer>>() {
+				@Override
+				public Either<HttpFailure,ByteBuffer> call() {
+					return get(url);
+				}
+			}));
+		}
+		final Map<String,Either<HttpFailure,ByteBuffer>> results =
+			new LinkedHashMap<String,Either<HttpFailure,ByteBuffer>>();
+		for(final Map.Entry<String,Future<Either<HttpFailure,ByteBuffer>>> e :
+			futures.entrySet()) {
+			try {
+				results.put(e.getKey(),
+					Uninterruptibles.getUninterruptibly(e.getValue()));
+			} catch (ExecutionException ex) {
+				final Throwable cause = ex.getCause();
+				results.put(e.getKey(), Left.<HttpFailure,ByteBuffer>left(
+					new HttpFailure((cause instanceof Exception) ?
+						(Exception)cause : ex)));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * The cached file holding the image at url, or null if there isn't
+	 * one yet.  Handy for handing straight to something that serves files.
+	 */
+	public Path getPath(final String url) {
+		checkNotNull(url, "Avatar URL cannot be null.");
+		final AvatarEntry entry = getEntry(url);
+		if(entry == null) {
+			return null;
+		}
+		final Path path = blobs_.resolve(entry.content_);
+		return Files.exists(path) ? path : null;
+	}
+
+	/**
+	 * Requests answered from the cache without touching the network.
+	 */
+	public long getHits() {
+		return hits_.get();
+	}
+
+	/**
+	 * Requests that actually downloaded an image body.
+	 */
+	public long getDownloads() {
+		return downloads_.get();
+	}
+
+	/**
+	 * Revalidations the server answered with a 304.
+	 */
+	public long getNotModified() {
+		return notModified_.get();
+	}
+
+	public long getBytesDownloaded() {
+		return bytesDownloaded_.get();
+	}
+
+	public SingleFlight getSingleFlight() {
+		return inFlight_;
+	}
+
+	/**
+	 * Stops the download threads.  Anything already on disk stays there
+	 * for the next instance pointed at the same directory.
+	 */
+	@Override
+	public void close() {
+		executor_.shutdownNow();
+		mapped_.invalidateAll();
+	}
+
+	private final Either<HttpFailure,String> fetch(final String url) {
+		final AvatarEntry cached = getEntry(url);
+		// Only revalidate if we still have the content to fall back on,
+		// otherwise a 304 would leave us with nothing.
+		final AvatarEntry previous = (cached != null &&
+			Files.exists(blobs_.resolve(cached.content_))) ? cached : null;
+		downloadPermits_.acquireUninterruptibly();
+		try {
+			return new AvatarClosure(url, previous).get(url);
+		} finally {
+			downloadPermits_.release();
+		}
+	}
+
+	private final boolean isStale(final AvatarEntry entry) {
+		return System.currentTimeMillis() - entry.validated_ > maxAgeMillis_;
+	}
+
+	private final ByteBuffer map(final String content) {
+		MappedByteBuffer buffer = mapped_.getIfPresent(content);
+		if(buffer == null) {
+			try {
+				final FileChannel channel = FileChannel.open(
+					blobs_.resolve(content), READ);
+				try {
+					buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L,
+						channel.size());
+				} finally {
+					// The mapping stays valid after the channel is closed.
+					channel.close();
+				}
+			} catch (NoSuchFileException e) {
+				mapped_.invalidate(content);
+				return null;
+			} catch (IOException e) {
+				logger__.warn("Failed to map cached avatar: " + content, e);
+				return null;
+			}
+			mapped_.put(content, buffer);
+		}
+		return buffer.asReadOnlyBuffer();
+	}
+
+	private final AvatarEntry getEntry(final String url) {
+		AvatarEntry entry = entries_.get(url);
+		if(entry == null) {
+			entry = readEntry(url);
+			if(entry != null) {
+				final AvatarEntry existing = entries_.putIfAbsent(url, entry);
+				if(existing != null) {
+					entry = existing;
+				}
+			}
+		}
+		return entry;
+	}
+
+	private final Path getIndexPath(final String url) {
+		return index_.resolve(Hashing.sha1().hashUnencodedChars(url)
+			.toString());
+	}
+
+	private final AvatarEntry readEntry(final String url) {
+		final Path path = getIndexPath(url);
+		if(!Files.exists(path)) {
+			return null;
+		}
+		final Properties props = new Properties();
+		try {
+			final InputStream is = Files.newInputStream(path);
+			try {
+				props.load(is);
+			} finally {
+				is.close();
+			}
+			// Guard against the (astronomically unlikely) hash collision.
+			if(!url.equals(props.getProperty(INDEX_URL))) {
+				return null;
+			}
+			return new AvatarEntry(props.getProperty(INDEX_CONTENT),
+				props.getProperty(INDEX_ETAG),
+				props.getProperty(INDEX_LAST_MODIFIED),
+				Long.parseLong(props.getProperty(INDEX_VALIDATED)));
+		} catch (Exception e) {
+			logger__.warn("Ignoring unreadable avatar index entry: " +
+				path, e);
+			return null;
+		}
+	}
+
+	private final void writeEntry(final String url, final AvatarEntry entry)
+		throws IOException {
+		final Properties props = new Properties();
+		props.setProperty(INDEX_URL, url);
+		props.setProperty(INDEX_CONTENT, entry.content_);
+		if(entry.etag_ != null) {
+			props.setProperty(INDEX_ETAG, entry.etag_);
+		}
+		if(entry.lastModified_ != null) {
+			props.setProperty(INDEX_LAST_MODIFIED, entry.lastModified_);
+		}
+		props.setProperty(INDEX_VALIDATED, Long.toString(entry.validated_));
+		// Write to the side and move into place so a reader never sees a
+		// half written entry.
+		final Path tmp = Files.createTempFile(tmp_, "index", null);
+		try {
+			final OutputStream os = Files.newOutputStream(tmp, WRITE);
+			try {
+				props.store(os, null);
+			} finally {
+				os.close();
+			}
+			Files.move(tmp, getIndexPath(url), ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+		entries_.put(url, entry);
+	}
+
+	/**
+	 * Streams the response body into the blob directory and returns the
+	 * content hash it was stored under.
+	 */
+	private final String store(final HttpEntity entity) throws Exception {
+		final Path tmp = Files.createTempFile(tmp_, "avatar", null);
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			final FileChannel out = FileChannel.open(tmp, WRITE);
+			try {
+				final ReadableByteChannel in = Channels.newChannel(
+					new DigestInputStream(entity.getContent(), digest));
+				try {
+					long position = 0L, transferred;
+					while((transferred = out.transferFrom(in, position,
+						TRANSFER_CHUNK_SIZE)) > 0L) {
+						position += transferred;
+					}
+					bytesDownloaded_.addAndGet(position);
+				} finally {
+					in.close();
+				}
+			} finally {
+				out.close();
+			}
+			final String content = HEX.encode(digest.digest());
+			final Path blob = blobs_.resolve(content);
+			if(!Files.exists(blob)) {
+				try {
+					Files.move(tmp, blob, ATOMIC_MOVE);
+				} catch (FileAlreadyExistsException e) {
+					// Someone else stored the same image first, fine.
+				}
+			}
+			return content;
+		} finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	private final class AvatarClosure extends OrHttpFailureClosure<String> {
+		private final String url_;
+		private final AvatarEntry previous_;
+		public AvatarClosure(final String url, final AvatarEntry previous) {
+			super(httpClient_);
+			url_ = url;
+			previous_ = previous;
+		}
+		@Override
+		public void before(final HttpRequestBase request) throws Exception {
+			if(previous_ != null) {
+				if(previous_.etag_ != null) {
+					request.setHeader(IF_NONE_MATCH, previous_.etag_);
+				}
+				if(previous_.lastModified_ != null) {
+					request.setHeader(IF_MODIFIED_SINCE,
+						previous_.lastModified_);
+				}
+			}
+		}
+		@Override
+		public boolean check(final HttpResponse response,
+			final HttpContext context) {
+			final int status = response.getStatusLine().getStatusCode();
+			return status == SC_OK ||
+				(status == SC_NOT_MODIFIED && previous_ != null);
+		}
+		@Override
+		public String success(final HttpSuccess success) throws Exception {
+			final HttpResponse response = success.getResponse();
+			final long now = System.currentTimeMillis();
+			if(response.getStatusLine().getStatusCode() == SC_NOT_MODIFIED) {
+				notModified_.incrementAndGet();
+				// Same content, but the server may have sent new validators.
+				writeEntry(url_, new AvatarEntry(previous_.content_,
+					getHeader(response, ETAG, previous_.etag_),
+					getHeader(response, LAST_MODIFIED,
+						previous_.lastModified_),
+					now));
+				return previous_.content_;
+			}
+			final HttpEntity entity = response.getEntity();
+			if(entity == null) {
+				throw new IOException("Avatar response had no body: " + url_);
+			}
+			final String content = store(entity);
+			downloads_.incrementAndGet();
+			writeEntry(url_, new AvatarEntry(content,
+				getHeader(response, ETAG, null),
+				getHeader(response, LAST_MODIFIED, null), now));
+			return content;
+		}
+	}
+
+	private static final String getHeader(final HttpResponse response,
+		final String name, final String defaultValue) {
+		final Header header = response.getFirstHeader(name);
+		return (header != null) ? header.getValue() : defaultValue;
+	}
+
+	private static final class AvatarEntry {
+		private final String content_;
+		private final String etag_;
+		private final String lastModified_;
+		private final long validated_;
+		private AvatarEntry(final String content, final String etag,
+			final String lastModified, final long validated) {
+			content_ = checkNotNull(content, "Content hash cannot be null.");
+			etag_ = etag;
+			lastModified_ = lastModified;
+			validated_ = validated;
+		}
+	}
+
+}
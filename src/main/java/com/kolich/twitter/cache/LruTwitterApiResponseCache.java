@@ -0,0 +1,177 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.cache;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * A size bounded, least recently used, response cache with per-endpoint
+ * time to live and stale-while-revalidate windows.  Backed by a Guava
+ * {@link Cache}, which is segmented, so readers of different keys don't
+ * contend on a single lock; eviction is LRU within each segment.
+ *
+ * Entries past their stale window are dropped lazily, on read, or by
+ * eviction once the cache is full.
+ */
+public final class LruTwitterApiResponseCache
+	implements TwitterApiResponseCache {
+
+	private final Cache<String,TwitterApiCacheEntry> cache_;
+
+	private final long defaultTtlMillis_;
+	private final long defaultStaleMillis_;
+
+	/**
+	 * Per-endpoint overrides of the default windows: {ttl, stale}.
+	 */
+	private final ConcurrentMap<String,long[]> ttls_;
+
+	private final AtomicLong hits_;
+	private final AtomicLong staleHits_;
+	private final AtomicLong misses_;
+	private final AtomicLong evictions_;
+
+	/**
+	 * @param maximumSize the maximum number of cached responses
+	 * @param ttl how long a response is fresh
+	 * @param stale how long after that a response can still be served
+	 * while it's revalidated, zero to never serve stale responses
+	 */
+	public LruTwitterApiResponseCache(final long maximumSize,
+		final long ttl, final long stale, final TimeUnit unit) {
+		checkArgument(maximumSize > 0L, "Maximum size must be greater " +
+			"than zero: %s", maximumSize);
+		checkArgument(ttl >= 0L && stale >= 0L, "TTL and stale windows " +
+			"cannot be negative.");
+		checkNotNull(unit, "Time unit cannot be null.");
+		defaultTtlMillis_ = unit.toMillis(ttl);
+		defaultStaleMillis_ = unit.toMillis(stale);
+		ttls_ = new ConcurrentHashMap<String,long[]>();
+		hits_ = new AtomicLong();
+		staleHits_ = new AtomicLong();
+		misses_ = new AtomicLong();
+		evictions_ = new AtomicLong();
+		cache_ = CacheBuilder.newBuilder()
+			.maximumSize(maximumSize)
+			.removalListener(new RemovalListener<String,TwitterApiCacheEntry>() {
+				@Override
+				public void onRemoval(final RemovalNotification<String,
+					TwitterApiCacheEntry> notification) {
+					if(notification.getCause() == RemovalCause.SIZE) {
+						evictions_.incrementAndGet();
+					}
+				}
+			})
+			.build();
+	}
+
+	/**
+	 * Overrides the default windows for a single endpoint.
+	 */
+	public LruTwitterApiResponseCache setTtl(final String endpoint,
+		final long ttl, final long stale, final TimeUnit unit) {
+		checkNotNull(endpoint, "Endpoint cannot be null.");
+		checkArgument(ttl >= 0L && stale >= 0L, "TTL and stale windows " +
+			"cannot be negative.");
+		ttls_.put(endpoint, new long[]{unit.toMillis(ttl),
+			unit.toMillis(stale)});
+		return this;
+	}
+
+	@Override
+	public TwitterApiCacheEntry get(final String endpoint, final String key) {
+		final String cacheKey = getCacheKey(endpoint, key);
+		final TwitterApiCacheEntry entry = cache_.getIfPresent(cacheKey);
+		final long now = System.currentTimeMillis();
+		if(entry == null) {
+			misses_.incrementAndGet();
+			return null;
+		} else if(entry.isFresh(now)) {
+			hits_.incrementAndGet();
+			return entry;
+		} else if(entry.isUsable(now)) {
+			staleHits_.incrementAndGet();
+			return entry;
+		}
+		// Too old to serve at all.
+		cache_.asMap().remove(cacheKey, entry);
+		misses_.incrementAndGet();
+		return null;
+	}
+
+	@Override
+	public void put(final String endpoint, final String key,
+		final Object value) {
+		final long[] ttl = ttls_.get(endpoint);
+		final long ttlMillis = (ttl != null) ? ttl[0] : defaultTtlMillis_;
+		final long staleMillis = (ttl != null) ? ttl[1] : defaultStaleMillis_;
+		if(ttlMillis + staleMillis == 0L) {
+			// Caching is turned off for this endpoint.
+			return;
+		}
+		final long now = System.currentTimeMillis();
+		cache_.put(getCacheKey(endpoint, key), new TwitterApiCacheEntry(
+			value, now + ttlMillis, now + ttlMillis + staleMillis));
+	}
+
+	@Override
+	public void invalidate(final String endpoint, final String key) {
+		cache_.invalidate(getCacheKey(endpoint, key));
+	}
+
+	public void invalidateAll() {
+		cache_.invalidateAll();
+	}
+
+	public long size() {
+		return cache_.size();
+	}
+
+	@Override
+	public TwitterApiCacheStats getStats() {
+		return new TwitterApiCacheStats(hits_.get(), staleHits_.get(),
+			misses_.get(), evictions_.get());
+	}
+
+	private static final String getCacheKey(final String endpoint,
+		final String key) {
+		return endpoint + " " + key;
+	}
+
+}
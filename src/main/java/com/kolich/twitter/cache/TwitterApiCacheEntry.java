@@ -0,0 +1,86 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.cache;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A single cached response.  Fresh until freshUntil, after which it can
+ * still be served until staleUntil while a single caller revalidates it.
+ */
+public final class TwitterApiCacheEntry {
+
+	private final Object value_;
+	private final long freshUntil_;
+	private final long staleUntil_;
+	private final AtomicBoolean revalidating_;
+
+	public TwitterApiCacheEntry(final Object value, final long freshUntil,
+		final long staleUntil) {
+		value_ = value;
+		freshUntil_ = freshUntil;
+		staleUntil_ = Math.max(freshUntil, staleUntil);
+		revalidating_ = new AtomicBoolean(false);
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T getValue() {
+		return (T)value_;
+	}
+
+	public long getFreshUntil() {
+		return freshUntil_;
+	}
+
+	public long getStaleUntil() {
+		return staleUntil_;
+	}
+
+	public boolean isFresh(final long now) {
+		return now < freshUntil_;
+	}
+
+	public boolean isUsable(final long now) {
+		return now < staleUntil_;
+	}
+
+	/**
+	 * Returns true for exactly one caller, the one that should go and
+	 * revalidate this (stale) entry.
+	 */
+	public boolean tryStartRevalidation() {
+		return revalidating_.compareAndSet(false, true);
+	}
+
+	/**
+	 * Called if revalidation failed, so the next caller can try again.
+	 */
+	public void revalidationFailed() {
+		revalidating_.set(false);
+	}
+
+}
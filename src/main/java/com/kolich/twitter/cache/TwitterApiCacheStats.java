@@ -0,0 +1,92 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.cache;
+
+/**
+ * An immutable snapshot of a cache's hit and miss counts.
+ */
+public final class TwitterApiCacheStats {
+
+	private final long hits_;
+	private final long staleHits_;
+	private final long misses_;
+	private final long evictions_;
+
+	public TwitterApiCacheStats(final long hits, final long staleHits,
+		final long misses, final long evictions) {
+		hits_ = hits;
+		staleHits_ = staleHits;
+		misses_ = misses;
+		evictions_ = evictions;
+	}
+
+	/**
+	 * Requests answered from a fresh entry.
+	 */
+	public long getHits() {
+		return hits_;
+	}
+
+	/**
+	 * Requests answered from a stale entry while it was revalidated.
+	 */
+	public long getStaleHits() {
+		return staleHits_;
+	}
+
+	public long getMisses() {
+		return misses_;
+	}
+
+	/**
+	 * Entries thrown out to make room, expired ones aren't counted.
+	 */
+	public long getEvictions() {
+		return evictions_;
+	}
+
+	public long getRequests() {
+		return hits_ + staleHits_ + misses_;
+	}
+
+	/**
+	 * The fraction of requests that never had to wait on the API.
+	 */
+	public double getHitRate() {
+		final long requests = getRequests();
+		return (requests == 0L) ? 1.0d :
+			(double)(hits_ + staleHits_) / requests;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("(hits=%d, staleHits=%d, misses=%d, " +
+			"evictions=%d, hitRate=%.3f)", hits_, staleHits_, misses_,
+			evictions_, getHitRate());
+	}
+
+}
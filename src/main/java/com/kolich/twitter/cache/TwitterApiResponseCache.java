@@ -0,0 +1,54 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.cache;
+
+/**
+ * A cache of successful, already decoded, API responses sitting in front
+ * of the read methods of the client.  Implementations must be safe for
+ * concurrent use, and decide for themselves how long each entry stays
+ * fresh and for how long after that it may still be served stale while
+ * it's revalidated in the background.
+ *
+ * Endpoints are logical names, like "users/show", and keys are already
+ * normalized by the caller (lower cased screen names, etc.)
+ */
+public interface TwitterApiResponseCache {
+
+	/**
+	 * Returns the cached entry, fresh or stale, or null if there isn't
+	 * one that can still be served.
+	 */
+	public TwitterApiCacheEntry get(final String endpoint, final String key);
+
+	public void put(final String endpoint, final String key,
+		final Object value);
+
+	public void invalidate(final String endpoint, final String key);
+
+	public TwitterApiCacheStats getStats();
+
+}
@@ -34,6 +34,11 @@ import java.util.TimeZone;
 
 import com.kolich.twitter.exceptions.TwitterApiException;
 
+/**
+ * Formats and parses Twitter API dates.  The common case is handled by the
+ * lock-free {@link TwitterDateParser}; anything it doesn't recognize falls
+ * back to a (lenient) per-thread {@link SimpleDateFormat}.
+ */
 public final class TwitterDateFormat {
 
 	// Thu May 13 14:24:37 +0000 2010
@@ -45,29 +50,46 @@ public final class TwitterDateFormat {
 	private static final String TWITTER_SEARCH_API_FORMAT =
 		"EEE, d MMM yyyy HH:mm:ss Z";
 	
-	private static final DateFormat twitterDateFormat__;
-	private static final DateFormat twitterSearchApiDateFormat__;
-	static {
-		twitterDateFormat__ = new SimpleDateFormat(TWITTER_API_DATE_FORMAT);
-		twitterDateFormat__.setTimeZone(TimeZone.getTimeZone("GMT"));
-		twitterSearchApiDateFormat__ = new SimpleDateFormat(TWITTER_SEARCH_API_FORMAT);
-		twitterSearchApiDateFormat__.setTimeZone(TimeZone.getTimeZone("GMT"));
-	}
+	// SimpleDateFormat is not thread safe, so each thread that ever needs
+	// the slow path gets its own instance instead of contending on a lock.
+	private static final ThreadLocal<DateFormat> twitterDateFormat__ =
+		new ThreadLocal<DateFormat>() {
+		@Override
+		protected DateFormat initialValue() {
+			final DateFormat df = new SimpleDateFormat(TWITTER_API_DATE_FORMAT);
+			df.setTimeZone(TimeZone.getTimeZone("GMT"));
+			return df;
+		}
+	};
+	private static final ThreadLocal<DateFormat> twitterSearchApiDateFormat__ =
+		new ThreadLocal<DateFormat>() {
+		@Override
+		protected DateFormat initialValue() {
+			final DateFormat df = new SimpleDateFormat(TWITTER_SEARCH_API_FORMAT);
+			df.setTimeZone(TimeZone.getTimeZone("GMT"));
+			return df;
+		}
+	};
 	
 	// Cannot be instantiated.
 	private TwitterDateFormat() { }
 	
-	public static synchronized final String format(Date d) {
-		return twitterDateFormat__.format(d);
+	public static final String format(Date d) {
+		return TwitterDateParser.format(d.getTime());
 	}
 	
-	public static synchronized final Date parse(String date) {
+	public static final Date parse(String date) {
+		final long millis = TwitterDateParser.parse(date);
+		if(millis != TwitterDateParser.INVALID) {
+			return new Date(millis);
+		}
+		// Not in one of the strict layouts, let SimpleDateFormat have a go.
 		Date result = null;
 		try {
-			result = twitterDateFormat__.parse(date);
+			result = twitterDateFormat__.get().parse(date);
 		} catch (ParseException e) {
 			try {
-				result = twitterSearchApiDateFormat__.parse(date);
+				result = twitterSearchApiDateFormat__.get().parse(date);
 			} catch (ParseException f) {
 				throw new TwitterApiException("Failed to parse: " + date, f);
 			}
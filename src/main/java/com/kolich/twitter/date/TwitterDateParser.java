@@ -0,0 +1,275 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.date;
+
+/**
+ * A hand-written, stateless parser and formatter for the two fixed date
+ * layouts the Twitter API hands back.  Unlike {@link java.text.SimpleDateFormat}
+ * it takes no locks, allocates nothing when parsing and never uses
+ * exceptions for control flow: input that doesn't match either layout
+ * simply returns {@link #INVALID}.
+ *
+ * Thu May 13 14:24:37 +0000 2010  (EEE MMM d HH:mm:ss Z yyyy)
+ * Mon, 21 Jun 2010 18:56:18 +0000 (EEE, d MMM yyyy HH:mm:ss Z)
+ */
+public final class TwitterDateParser {
+
+	/**
+	 * Returned by {@link #parse(CharSequence)} when the input is not in
+	 * one of the supported layouts.
+	 */
+	public static final long INVALID = Long.MIN_VALUE;
+
+	private static final long MILLIS_PER_SECOND = 1000L;
+	private static final long MILLIS_PER_DAY = 86400000L;
+	private static final int INVALID_OFFSET = Integer.MIN_VALUE;
+
+	private static final String[] DAYS_OF_WEEK = {
+		"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"
+	};
+
+	private static final String[] MONTHS = {
+		"Jan", "Feb", "Mar", "Apr", "May", "Jun",
+		"Jul", "Aug", "Sep", "Oct", "Nov", "Dec"
+	};
+
+	// Cannot be instantiated.
+	private TwitterDateParser() { }
+
+	/**
+	 * Parses a Twitter formatted date into milliseconds since the epoch.
+	 * The two layouts are told apart by looking for the comma that
+	 * follows the day of the week in the search API layout.
+	 * @return the parsed epoch millis, or {@link #INVALID}
+	 */
+	public static final long parse(final CharSequence s) {
+		if(s == null || s.length() < 4) {
+			return INVALID;
+		}
+		return (s.charAt(3) == ',') ?
+			parseSearchApiFormat(s) :
+			parseApiFormat(s);
+	}
+
+	/**
+	 * Formats the given epoch millis in the Twitter API layout,
+	 * always in GMT.
+	 */
+	public static final String format(final long millis) {
+		return formatTo(new StringBuilder(30), millis).toString();
+	}
+
+	public static final StringBuilder formatTo(final StringBuilder sb,
+		final long millis) {
+		final long days = floorDiv(millis, MILLIS_PER_DAY);
+		final int millisOfDay = (int)(millis - (days * MILLIS_PER_DAY));
+		final int secondOfDay = millisOfDay / 1000;
+		// Epoch day zero (Jan 1, 1970) was a Thursday.
+		final int dayOfWeek = (int)floorMod(days + 3L, 7L);
+		// Civil from days, see http://howardhinnant.github.io/date_algorithms.html
+		final long z = days + 719468L;
+		final long era = ((z >= 0L) ? z : z - 146096L) / 146097L;
+		final int doe = (int)(z - era * 146097L);
+		final int yoe = (doe - doe/1460 + doe/36524 - doe/146096) / 365;
+		final int doy = doe - (365*yoe + yoe/4 - yoe/100);
+		final int mp = (5*doy + 2) / 153;
+		final int day = doy - (153*mp + 2)/5 + 1;
+		final int month = (mp < 10) ? mp + 3 : mp - 9;
+		final long year = yoe + era * 400L + ((month <= 2) ? 1 : 0);
+		sb.append(DAYS_OF_WEEK[dayOfWeek]).append(' ')
+			.append(MONTHS[month - 1]).append(' ')
+			.append(day).append(' ');
+		appendTwoDigits(sb, secondOfDay / 3600).append(':');
+		appendTwoDigits(sb, (secondOfDay / 60) % 60).append(':');
+		appendTwoDigits(sb, secondOfDay % 60).append(" +0000 ");
+		for(long y = 1000L; y > 1L && year < y; y /= 10L) {
+			sb.append('0');
+		}
+		return sb.append(year);
+	}
+
+	// Thu May 13 14:24:37 +0000 2010
+	private static final long parseApiFormat(final CharSequence s) {
+		final int len = s.length();
+		// The only variable width field is the day of the month.
+		final int dayWidth = len - 28;
+		if(dayWidth < 1 || dayWidth > 2) {
+			return INVALID;
+		}
+		final int p = 8 + dayWidth;
+		if(!isLetters(s, 0) || s.charAt(3) != ' ' || s.charAt(7) != ' ' ||
+			s.charAt(p) != ' ' || s.charAt(p + 9) != ' ' ||
+			s.charAt(p + 15) != ' ') {
+			return INVALID;
+		}
+		return toEpochMillis(digits(s, p + 16, 4), month(s, 4),
+			digits(s, 8, dayWidth), secondOfDay(s, p + 1),
+			offset(s, p + 10));
+	}
+
+	// Mon, 21 Jun 2010 18:56:18 +0000
+	private static final long parseSearchApiFormat(final CharSequence s) {
+		final int len = s.length();
+		final int dayWidth = len - 29;
+		if(dayWidth < 1 || dayWidth > 2) {
+			return INVALID;
+		}
+		final int p = 5 + dayWidth;
+		if(!isLetters(s, 0) || s.charAt(4) != ' ' || s.charAt(p) != ' ' ||
+			s.charAt(p + 4) != ' ' || s.charAt(p + 9) != ' ' ||
+			s.charAt(p + 18) != ' ') {
+			return INVALID;
+		}
+		return toEpochMillis(digits(s, p + 5, 4), month(s, p + 1),
+			digits(s, 5, dayWidth), secondOfDay(s, p + 10),
+			offset(s, p + 19));
+	}
+
+	private static final long toEpochMillis(int year, final int month,
+		final int day, final int secondOfDay, final int offsetMillis) {
+		if(year < 0 || month < 1 || day < 1 || day > 31 ||
+			secondOfDay < 0 || offsetMillis == INVALID_OFFSET) {
+			return INVALID;
+		}
+		// Days from civil, see http://howardhinnant.github.io/date_algorithms.html
+		year -= (month <= 2) ? 1 : 0;
+		final int era = ((year >= 0) ? year : year - 399) / 400;
+		final int yoe = year - era * 400;
+		final int doy = (153 * (month + ((month > 2) ? -3 : 9)) + 2)/5 + day - 1;
+		final int doe = yoe * 365 + yoe/4 - yoe/100 + doy;
+		final long days = era * 146097L + doe - 719468L;
+		return (days * MILLIS_PER_DAY) + (secondOfDay * MILLIS_PER_SECOND) -
+			offsetMillis;
+	}
+
+	/**
+	 * Returns the month (1-12) named by the three characters at pos,
+	 * case insensitive, or -1 if they don't name a month.
+	 */
+	private static final int month(final CharSequence s, final int pos) {
+		if(!isLetters(s, pos)) {
+			return -1;
+		}
+		// Pack the lower cased letters into a single int and switch on it.
+		final int m = ((s.charAt(pos) | 0x20) << 16) |
+			((s.charAt(pos + 1) | 0x20) << 8) | (s.charAt(pos + 2) | 0x20);
+		switch(m) {
+			case ('j'<<16)|('a'<<8)|'n': return 1;
+			case ('f'<<16)|('e'<<8)|'b': return 2;
+			case ('m'<<16)|('a'<<8)|'r': return 3;
+			case ('a'<<16)|('p'<<8)|'r': return 4;
+			case ('m'<<16)|('a'<<8)|'y': return 5;
+			case ('j'<<16)|('u'<<8)|'n': return 6;
+			case ('j'<<16)|('u'<<8)|'l': return 7;
+			case ('a'<<16)|('u'<<8)|'g': return 8;
+			case ('s'<<16)|('e'<<8)|'p': return 9;
+			case ('o'<<16)|('c'<<8)|'t': return 10;
+			case ('n'<<16)|('o'<<8)|'v': return 11;
+			case ('d'<<16)|('e'<<8)|'c': return 12;
+			default: return -1;
+		}
+	}
+
+	/**
+	 * Parses HH:mm:ss at pos into a second of the day, or -1.
+	 */
+	private static final int secondOfDay(final CharSequence s, final int pos) {
+		if(s.charAt(pos + 2) != ':' || s.charAt(pos + 5) != ':') {
+			return -1;
+		}
+		final int hours = digits(s, pos, 2),
+			minutes = digits(s, pos + 3, 2),
+			seconds = digits(s, pos + 6, 2);
+		if(hours < 0 || hours > 23 || minutes < 0 || minutes > 59 ||
+			seconds < 0 || seconds > 60) {
+			return -1;
+		}
+		return (hours * 3600) + (minutes * 60) + seconds;
+	}
+
+	/**
+	 * Parses a +HHMM/-HHMM zone offset at pos into millis, or
+	 * {@link #INVALID_OFFSET}.
+	 */
+	private static final int offset(final CharSequence s, final int pos) {
+		final char sign = s.charAt(pos);
+		if(sign != '+' && sign != '-') {
+			return INVALID_OFFSET;
+		}
+		final int hours = digits(s, pos + 1, 2),
+			minutes = digits(s, pos + 3, 2);
+		if(hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+			return INVALID_OFFSET;
+		}
+		final int offset = ((hours * 60) + minutes) * 60000;
+		return (sign == '-') ? -offset : offset;
+	}
+
+	/**
+	 * Parses count ASCII digits at pos, or returns -1 if any of them
+	 * isn't a digit.
+	 */
+	private static final int digits(final CharSequence s, final int pos,
+		final int count) {
+		int value = 0;
+		for(int i = pos, end = pos + count; i < end; i++) {
+			final int d = s.charAt(i) - '0';
+			if(d < 0 || d > 9) {
+				return -1;
+			}
+			value = (value * 10) + d;
+		}
+		return value;
+	}
+
+	private static final boolean isLetters(final CharSequence s,
+		final int pos) {
+		for(int i = pos, end = pos + 3; i < end; i++) {
+			final char c = (char)(s.charAt(i) | 0x20);
+			if(c < 'a' || c > 'z') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static final StringBuilder appendTwoDigits(final StringBuilder sb,
+		final int value) {
+		return sb.append((char)('0' + (value / 10)))
+			.append((char)('0' + (value % 10)));
+	}
+
+	private static final long floorDiv(final long x, final long y) {
+		final long q = x / y;
+		return ((x % y) != 0L && ((x ^ y) < 0L)) ? q - 1L : q;
+	}
+
+	private static final long floorMod(final long x, final long y) {
+		return x - (floorDiv(x, y) * y);
+	}
+
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.entities;
+
+import java.io.IOException;
+import java.util.Date;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.kolich.twitter.date.TwitterDateParser;
+
+/**
+ * Streaming adapters for {@link CompactTweet} and {@link CompactUser}
+ * that read only the handful of fields they keep straight into
+ * primitives, skipping everything else without ever building it.  No
+ * intermediate {@link String} ids or {@link Date}s are created for
+ * anything in one of the Twitter date layouts.
+ *
+ * They write the same field names the regular entities use, with dates
+ * in the Twitter layout, so JSON produced by one can be read by the
+ * other.
+ */
+final class CompactEntityTypeAdapterFactory implements TypeAdapterFactory {
+
+	private static final String ID = "id";
+	private static final String ID_STR = "id_str";
+	private static final String CREATED_AT = "created_at";
+	private static final String TEXT = "text";
+	private static final String SCREEN_NAME = "screen_name";
+	private static final String NAME = "name";
+	private static final String PROFILE_IMAGE_URL = "profile_image_url";
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> TypeAdapter<T> create(final Gson gson,
+		final TypeToken<T> type) {
+		final Class<? super T> raw = type.getRawType();
+		if(raw == CompactTweet.class) {
+			return (TypeAdapter<T>)new CompactTweetTypeAdapter(
+				gson.getAdapter(Date.class));
+		} else if(raw == CompactUser.class) {
+			return (TypeAdapter<T>)new CompactUserTypeAdapter(
+				gson.getAdapter(Date.class));
+		}
+		return null;
+	}
+
+	private static final class CompactTweetTypeAdapter
+		extends TypeAdapter<CompactTweet> {
+		private final TypeAdapter<Date> dates_;
+		private CompactTweetTypeAdapter(final TypeAdapter<Date> dates) {
+			dates_ = dates;
+		}
+		@Override
+		public CompactTweet read(final JsonReader in) throws IOException {
+			if(in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			long id = 0L, createdAt = 0L;
+			String text = null;
+			in.beginObject();
+			while(in.hasNext()) {
+				final String name = in.nextName();
+				if(ID_STR.equals(name) || ID.equals(name)) {
+					id = readId(in, id);
+				} else if(CREATED_AT.equals(name)) {
+					createdAt = readDate(in, dates_);
+				} else if(TEXT.equals(name)) {
+					text = readString(in);
+				} else {
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			return new CompactTweet(id, createdAt, text);
+		}
+		@Override
+		public void write(final JsonWriter out, final CompactTweet tweet)
+			throws IOException {
+			if(tweet == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			writeId(out, tweet.getId());
+			writeDate(out, tweet.getCreatedAt());
+			out.name(TEXT).value(tweet.getText());
+			out.endObject();
+		}
+	}
+
+	private static final class CompactUserTypeAdapter
+		extends TypeAdapter<CompactUser> {
+		private final TypeAdapter<Date> dates_;
+		private CompactUserTypeAdapter(final TypeAdapter<Date> dates) {
+			dates_ = dates;
+		}
+		@Override
+		public CompactUser read(final JsonReader in) throws IOException {
+			if(in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			long id = 0L, createdAt = 0L;
+			String screenName = null, name = null, profileImageUrl = null;
+			in.beginObject();
+			while(in.hasNext()) {
+				final String field = in.nextName();
+				if(ID_STR.equals(field) || ID.equals(field)) {
+					id = readId(in, id);
+				} else if(SCREEN_NAME.equals(field)) {
+					screenName = readString(in);
+				} else if(NAME.equals(field)) {
+					name = readString(in);
+				} else if(CREATED_AT.equals(field)) {
+					createdAt = readDate(in, dates_);
+				} else if(PROFILE_IMAGE_URL.equals(field)) {
+					profileImageUrl = readString(in);
+				} else {
+					in.skipValue();
+				}
+			}
+			in.endObject();
+			// The constructor interns the screen name.
+			return new CompactUser(id, screenName, name, createdAt,
+				profileImageUrl);
+		}
+		@Override
+		public void write(final JsonWriter out, final CompactUser user)
+			throws IOException {
+			if(user == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			writeId(out, user.getId());
+			out.name(SCREEN_NAME).value(user.getScreenName());
+			out.name(NAME).value(user.getName());
+			writeDate(out, user.getCreatedAt());
+			out.name(PROFILE_IMAGE_URL).value(user.getProfileImageUrl());
+			out.endObject();
+		}
+	}
+
+	/**
+	 * Reads either the numeric "id" or the string "id_str", they're the
+	 * same value.  Numbers are read exactly, never through a double.
+	 */
+	private static final long readId(final JsonReader in,
+		final long current) throws IOException {
+		final JsonToken token = in.peek();
+		if(token == JsonToken.NULL) {
+			in.nextNull();
+			return current;
+		}
+		return (token == JsonToken.NUMBER) ? in.nextLong() :
+			Long.parseLong(in.nextString());
+	}
+
+	private static final String readString(final JsonReader in)
+		throws IOException {
+		if(in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		return in.nextString();
+	}
+
+	private static final long readDate(final JsonReader in,
+		final TypeAdapter<Date> dates) throws IOException {
+		final String value = readString(in);
+		if(value == null) {
+			return 0L;
+		}
+		final long millis = TwitterDateParser.parse(value);
+		if(millis != TwitterDateParser.INVALID) {
+			return millis;
+		}
+		// Anything else (ISO-8601, as the regular entities serialize to)
+		// goes through the usual, slower, date adapter.
+		final Date date = dates.fromJsonTree(new JsonPrimitive(value));
+		return (date != null) ? date.getTime() : 0L;
+	}
+
+	private static final void writeId(final JsonWriter out, final long id)
+		throws IOException {
+		if(id != 0L) {
+			out.name(ID_STR).value(Long.toString(id));
+		}
+	}
+
+	private static final void writeDate(final JsonWriter out,
+		final long millis) throws IOException {
+		if(millis != 0L) {
+			out.name(CREATED_AT).value(TwitterDateParser.format(millis));
+		}
+	}
+
+}
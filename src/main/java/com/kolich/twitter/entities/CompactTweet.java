@@ -0,0 +1,120 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.entities;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Date;
+
+/**
+ * A {@link Tweet} for holding lots of them in memory.  The id is kept as
+ * a long and the creation time as epoch millis, so a compact tweet is a
+ * single small object plus its text, where a {@link Tweet} drags along
+ * a {@link String} id, its backing array and a {@link Date}.  Comparing
+ * two of them allocates nothing.
+ *
+ * Decoded straight off of the wire by the adapters registered with
+ * {@link TwitterEntityCodec#getGson()}, and convertible to and from the
+ * regular {@link Tweet} with {@link #toTweet()} and
+ * {@link #valueOf(Tweet)}.  An id or timestamp of zero means the tweet
+ * didn't have one.
+ */
+public final class CompactTweet extends TwitterEntity
+	implements Comparable<CompactTweet> {
+
+	private final long id_;
+	private final long createdAt_;
+	private final String text_;
+
+	public CompactTweet(final long id, final long createdAt,
+		final String text) {
+		id_ = id;
+		createdAt_ = createdAt;
+		text_ = text;
+	}
+
+	public long getId() {
+		return id_;
+	}
+
+	/**
+	 * When this tweet was created, in milliseconds since the epoch.
+	 */
+	public long getCreatedAt() {
+		return createdAt_;
+	}
+
+	public String getText() {
+		return text_;
+	}
+
+	/**
+	 * Converts this tweet back into a regular {@link Tweet}.
+	 */
+	public Tweet toTweet() {
+		return new Tweet((id_ != 0L) ? Long.toString(id_) : null,
+			(createdAt_ != 0L) ? new Date(createdAt_) : null, text_);
+	}
+
+	/**
+	 * Converts a regular {@link Tweet}, whose id must be numeric (as all
+	 * Twitter ids are) if it has one.
+	 */
+	public static final CompactTweet valueOf(final Tweet tweet) {
+		checkNotNull(tweet, "Tweet cannot be null.");
+		final String id = tweet.getId();
+		return new CompactTweet((id != null) ? Long.parseLong(id) : 0L,
+			tweet.getCreatedAtMillis(), tweet.getText());
+	}
+
+	// Uses only the id field, like Tweet.
+	@Override
+	public int hashCode() {
+		return (int)(id_ ^ (id_ >>> 32));
+	}
+
+	// Uses only the id field, like Tweet.
+	@Override
+	public boolean equals(final Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(!(obj instanceof CompactTweet)) {
+			return false;
+		}
+		return id_ == ((CompactTweet)obj).id_;
+	}
+
+	/**
+	 * Newest first, like {@link Tweet}.
+	 */
+	@Override
+	public int compareTo(final CompactTweet t) {
+		return Long.compare(t.createdAt_, createdAt_);
+	}
+
+}
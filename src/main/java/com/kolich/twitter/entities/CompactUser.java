@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.entities;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Date;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * A {@link User} for holding lots of them in memory.  The id is kept as
+ * a long, the creation time as epoch millis, and screen names are
+ * interned so the same account showing up over and over (as authors,
+ * followers, mentions) shares a single {@link String}.
+ *
+ * Decoded straight off of the wire by the adapters registered with
+ * {@link TwitterEntityCodec#getGson()}, and convertible to and from the
+ * regular {@link User} with {@link #toUser()} and {@link #valueOf(User)}.
+ * An id or timestamp of zero means the user didn't have one.
+ */
+public final class CompactUser extends TwitterEntity
+	implements Comparable<CompactUser> {
+
+	/**
+	 * Weak, so screen names nobody holds on to anymore can still be
+	 * garbage collected.
+	 */
+	private static final Interner<String> screenNames__ =
+		Interners.newWeakInterner();
+
+	private final long id_;
+	private final String screenName_;
+	private final String name_;
+	private final long createdAt_;
+	private final String profileImageUrl_;
+
+	public CompactUser(final long id, final String screenName,
+		final String name, final long createdAt,
+		final String profileImageUrl) {
+		id_ = id;
+		screenName_ = internScreenName(screenName);
+		name_ = name;
+		createdAt_ = createdAt;
+		profileImageUrl_ = profileImageUrl;
+	}
+
+	public long getId() {
+		return id_;
+	}
+
+	public String getScreenName() {
+		return screenName_;
+	}
+
+	public String getName() {
+		return name_;
+	}
+
+	/**
+	 * When this account was created, in milliseconds since the epoch.
+	 */
+	public long getCreatedAt() {
+		return createdAt_;
+	}
+
+	public String getProfileImageUrl() {
+		return profileImageUrl_;
+	}
+
+	/**
+	 * Converts this user back into a regular {@link User}.
+	 */
+	public User toUser() {
+		return new User((id_ != 0L) ? Long.toString(id_) : null, screenName_,
+			name_, (createdAt_ != 0L) ? new Date(createdAt_) : null,
+			profileImageUrl_);
+	}
+
+	/**
+	 * Converts a regular {@link User}, whose id must be numeric (as all
+	 * Twitter ids are) if it has one.
+	 */
+	public static final CompactUser valueOf(final User user) {
+		checkNotNull(user, "User cannot be null.");
+		final String id = user.getId();
+		return new CompactUser((id != null) ? Long.parseLong(id) : 0L,
+			user.getScreenName(), user.getName(), user.getCreatedAtMillis(),
+			user.getProfileImageUrl_());
+	}
+
+	/**
+	 * Returns the canonical instance of the given screen name, shared by
+	 * every compact user decoded with it.
+	 */
+	public static final String internScreenName(final String screenName) {
+		return (screenName != null) ? screenNames__.intern(screenName) : null;
+	}
+
+	// Only uses the screen name, case insensitive, like User.
+	@Override
+	public int hashCode() {
+		if(screenName_ == null) {
+			return 0;
+		}
+		// Same as lower casing first, without the garbage.
+		int result = 0;
+		for(int i = 0, l = screenName_.length(); i < l; i++) {
+			result = 31 * result +
+				Character.toLowerCase(screenName_.charAt(i));
+		}
+		return result;
+	}
+
+	// Only uses the screen name, case insensitive, like User.
+	@Override
+	public boolean equals(final Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(!(obj instanceof CompactUser)) {
+			return false;
+		}
+		final CompactUser other = (CompactUser)obj;
+		return (screenName_ == null) ? other.screenName_ == null :
+			screenName_.equalsIgnoreCase(other.screenName_);
+	}
+
+	@Override
+	public int compareTo(final CompactUser u) {
+		return screenName_.compareToIgnoreCase(u.screenName_);
+	}
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.entities;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The array-backed storage behind {@link TweetList}, {@link UserList}
+ * and {@link TweetSearchResults}.  Each of them owns an {@link ArrayList}
+ * it appends to in place and only ever hands out unmodifiable views of,
+ * so reading one never copies and accumulating pages copies each entity
+ * exactly once.
+ */
+final class EntityLists {
+
+	// Cannot be instantiated.
+	private EntityLists() { }
+
+	/**
+	 * Adopts the given list as-is if it's already an {@link ArrayList},
+	 * otherwise copies it into one.
+	 */
+	static final <T> List<T> adopt(final List<T> list) {
+		if(list == null) {
+			return new ArrayList<T>();
+		}
+		return (list instanceof ArrayList) ? list : new ArrayList<T>(list);
+	}
+
+	/**
+	 * An unmodifiable view of the list, never null.
+	 */
+	static final <T> List<T> view(final List<T> list) {
+		return (list == null) ? Collections.<T>emptyList() :
+			Collections.unmodifiableList(list);
+	}
+
+	static final int size(final List<?> list) {
+		return (list == null) ? 0 : list.size();
+	}
+
+	/**
+	 * Appends src to dst, growing dst once, by as much as it needs to.
+	 * @return dst, or the list that replaced it if it wasn't an
+	 * {@link ArrayList} (Gson may have left it null)
+	 */
+	static final <T> List<T> append(final List<T> dst,
+		final Collection<? extends T> src) {
+		final List<T> list = adopt(dst);
+		if(src != null && !src.isEmpty()) {
+			((ArrayList<T>)list).ensureCapacity(list.size() + src.size());
+			list.addAll(src);
+		}
+		return list;
+	}
+
+	/**
+	 * Concatenates the lists into a single new one, sized up front.
+	 */
+	static final <T> List<T> concat(final List<List<T>> lists) {
+		int size = 0;
+		for(final List<T> list : lists) {
+			size += size(list);
+		}
+		final List<T> result = new ArrayList<T>(size);
+		for(final List<T> list : lists) {
+			if(list != null) {
+				result.addAll(list);
+			}
+		}
+		return result;
+	}
+
+}
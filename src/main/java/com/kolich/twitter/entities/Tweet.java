@@ -59,6 +59,14 @@ public class Tweet extends TwitterEntity implements Comparable<Tweet> {
 		return new Date(createdAt_.getTime());
 	}
 	
+	/**
+	 * Same as {@link #getCreatedAt()}, in epoch millis, without the
+	 * defensive copy; or 0 if this tweet doesn't have a creation time.
+	 */
+	public long getCreatedAtMillis() {
+		return (createdAt_ != null) ? createdAt_.getTime() : 0L;
+	}
+	
 	public String getText() {
 		return text_;
 	}
@@ -100,7 +108,9 @@ public class Tweet extends TwitterEntity implements Comparable<Tweet> {
 
 	@Override
 	public int compareTo(Tweet t) {
-		return t.getCreatedAt().compareTo(getCreatedAt());
+		// Newest first; compares the millis directly since sorting
+		// would otherwise copy two Dates per comparison.
+		return Long.compare(t.createdAt_.getTime(), createdAt_.getTime());
 	}
 
 }
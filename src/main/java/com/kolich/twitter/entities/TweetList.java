@@ -26,7 +26,7 @@
 
 package com.kolich.twitter.entities;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.google.gson.annotations.SerializedName;
@@ -34,18 +34,57 @@ import com.google.gson.annotations.SerializedName;
 public class TweetList extends TwitterEntity {
 	
 	@SerializedName("tweets")
-	private final List<Tweet> tweets_;
-		
+	private List<Tweet> tweets_;
+	
+	/**
+	 * Takes ownership of the given list, without copying it if it's
+	 * already an {@link ArrayList}.
+	 */
 	public TweetList(List<Tweet> tweets) {
-		tweets_ = tweets;
+		tweets_ = EntityLists.adopt(tweets);
 	}
 	
 	public TweetList() {
-		this(new LinkedList<Tweet>());
+		this(new ArrayList<Tweet>());
 	}
 	
+	/**
+	 * An unmodifiable view of the tweets in this list, not a copy; it
+	 * reflects anything appended afterwards.
+	 */
 	public List<Tweet> getTweets() {
-		return new LinkedList<Tweet>(tweets_);
+		return EntityLists.view(tweets_);
+	}
+	
+	public int size() {
+		return EntityLists.size(tweets_);
+	}
+	
+	/**
+	 * Appends the tweets to the end of this list, in place, copying each
+	 * one once.
+	 * @return this list
+	 */
+	public TweetList append(final List<Tweet> tweets) {
+		tweets_ = EntityLists.append(tweets_, tweets);
+		return this;
+	}
+	
+	public TweetList append(final TweetList page) {
+		return append(page.tweets_);
+	}
+	
+	/**
+	 * Merges any number of pages into a single new list, allocated once
+	 * at its final size.
+	 */
+	public static final TweetList merge(final List<TweetList> pages) {
+		final List<List<Tweet>> lists = new ArrayList<List<Tweet>>(
+			pages.size());
+		for(final TweetList page : pages) {
+			lists.add(page.tweets_);
+		}
+		return new TweetList(EntityLists.concat(lists));
 	}
 
 	// Straight from Eclipse
@@ -26,7 +26,7 @@
 
 package com.kolich.twitter.entities;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.google.gson.annotations.SerializedName;
@@ -34,18 +34,44 @@ import com.google.gson.annotations.SerializedName;
 public class TweetSearchResults extends TwitterEntity {
 	
 	@SerializedName("statuses")
-	private final List<Tweet> statuses_;
-		
+	private List<Tweet> statuses_;
+	
+	/**
+	 * Takes ownership of the given list, without copying it if it's
+	 * already an {@link ArrayList}.
+	 */
 	public TweetSearchResults(List<Tweet> tweets) {
-		statuses_ = tweets;
+		statuses_ = EntityLists.adopt(tweets);
 	}
 	
 	public TweetSearchResults() {
-		this(new LinkedList<Tweet>());
+		this(new ArrayList<Tweet>());
 	}
 	
+	/**
+	 * An unmodifiable view of the results, not a copy; it reflects
+	 * anything appended afterwards.
+	 */
 	public List<Tweet> getResults() {
-		return new LinkedList<Tweet>(statuses_);
+		return EntityLists.view(statuses_);
+	}
+	
+	public int size() {
+		return EntityLists.size(statuses_);
+	}
+	
+	/**
+	 * Appends the tweets to the end of these results, in place, copying
+	 * each one once.
+	 * @return these results
+	 */
+	public TweetSearchResults append(final List<Tweet> tweets) {
+		statuses_ = EntityLists.append(statuses_, tweets);
+		return this;
+	}
+	
+	public TweetSearchResults append(final TweetSearchResults page) {
+		return append(page.statuses_);
 	}
 
 	// Straight from Eclipse
@@ -31,6 +31,7 @@ import com.google.gson.reflect.TypeToken;
 import com.kolich.common.date.ISO8601DateFormat;
 import com.kolich.common.entities.KolichCommonEntity;
 import com.kolich.twitter.date.TwitterDateFormat;
+import com.kolich.twitter.date.TwitterDateParser;
 
 import java.lang.reflect.Type;
 import java.text.DateFormat;
@@ -43,7 +44,8 @@ public abstract class TwitterEntity extends KolichCommonEntity {
 	public static final GsonBuilder getNewTwitterGsonBuilder() {
 		return getDefaultGsonBuilder().
 			registerTypeAdapter(new TypeToken<Date>(){}.getType(),
-				new TwitterEntityDateTypeAdapter());
+				new TwitterEntityDateTypeAdapter()).
+			registerTypeAdapterFactory(new CompactEntityTypeAdapterFactory());
 	}
 	
 	public static final Gson getNewTwitterGsonInstance() {
@@ -52,29 +54,42 @@ public abstract class TwitterEntity extends KolichCommonEntity {
 
 	@Override
 	public String toString() {
-		return getNewTwitterGsonInstance().toJson(this);
+		return TwitterEntityCodec.toJson(this);
 	}
 	
 	private static class TwitterEntityDateTypeAdapter 
 		implements JsonSerializer<Date>, JsonDeserializer<Date> {
 		
-		private final DateFormat twitterFormat_;
-		private final DateFormat iso8601Format_;
+		// ISO-8601 is what we serialize to, and the fallback when parsing
+		// a date that isn't in one of the Twitter layouts.  One per thread
+		// instead of synchronizing on a single shared instance.
+		private static final ThreadLocal<DateFormat> iso8601Format__ =
+			new ThreadLocal<DateFormat>() {
+			@Override
+			protected DateFormat initialValue() {
+				final DateFormat df = ISO8601DateFormat.getNewInstance();
+				df.setTimeZone(TimeZone.getTimeZone("GMT"));
+				return df;
+			}
+		};
+		
+		// Only used for Twitter-ish dates the strict parser rejects.
+		private static final ThreadLocal<DateFormat> twitterFormat__ =
+			new ThreadLocal<DateFormat>() {
+			@Override
+			protected DateFormat initialValue() {
+				final DateFormat df = TwitterDateFormat.getNewInstance();
+				df.setTimeZone(TimeZone.getTimeZone("GMT"));
+				return df;
+			}
+		};
 	
-	    private TwitterEntityDateTypeAdapter() {
-	    	twitterFormat_ = TwitterDateFormat.getNewInstance();
-            twitterFormat_.setTimeZone(TimeZone.getTimeZone("GMT"));
-	    	iso8601Format_ = ISO8601DateFormat.getNewInstance();
-            iso8601Format_.setTimeZone(TimeZone.getTimeZone("GMT"));
-	    }
+	    private TwitterEntityDateTypeAdapter() { }
 	
 	    @Override
 		public JsonElement serialize(Date src, Type typeOfSrc,
 			JsonSerializationContext context) {
-	    	synchronized (iso8601Format_) {
-	    		String dateFormatAsString = iso8601Format_.format(src);
-	    		return new JsonPrimitive(dateFormatAsString);
-	    	}
+	    	return new JsonPrimitive(iso8601Format__.get().format(src));
 	    }
 	
 	    @Override
@@ -83,16 +98,18 @@ public abstract class TwitterEntity extends KolichCommonEntity {
 	    	if (!(json instanceof JsonPrimitive)) {
 	    		throw new JsonParseException("The date should be a string value.");
 	    	}
+	    	final String value = json.getAsString();
+	    	// Lock-free and exception-free fast path for the Twitter layouts.
+	    	final long millis = TwitterDateParser.parse(value);
+	    	if (millis != TwitterDateParser.INVALID) {
+	    		return new Date(millis);
+	    	}
 	    	Date parsed = null;
 	    	try {
-				synchronized(twitterFormat_) {
-					parsed = twitterFormat_.parse(json.getAsString());
-				}
+	    		parsed = iso8601Format__.get().parse(value);
 	    	} catch (ParseException e) {
 	    		try {
-	    			synchronized(iso8601Format_) {
-	    				parsed = iso8601Format_.parse(json.getAsString());
-	    			}	  
+	    			parsed = twitterFormat__.get().parse(value);
 	    		} catch (ParseException f) {
 	    			throw new JsonSyntaxException(f);
 	    		}
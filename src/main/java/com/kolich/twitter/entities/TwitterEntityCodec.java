@@ -0,0 +1,121 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.entities;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+
+/**
+ * A shared, thread-safe codec for mapping Twitter API JSON to and from
+ * our entities.  Building a {@link Gson} instance is expensive (a new
+ * {@link com.google.gson.GsonBuilder}, type adapter registration and
+ * reflective warm-up on first use) and a built {@link Gson} instance is
+ * safe to share across threads, so there's no reason to pay that cost
+ * on every API call or every call to {@link TwitterEntity#toString()}.
+ */
+public final class TwitterEntityCodec {
+
+	public static final Type TWEET_TYPE =
+		TypeToken.get(Tweet.class).getType();
+	public static final Type USER_TYPE =
+		TypeToken.get(User.class).getType();
+	public static final Type USER_LIST_TYPE =
+		TypeToken.get(UserList.class).getType();
+	public static final Type TWEET_SEARCH_RESULTS_TYPE =
+		TypeToken.get(TweetSearchResults.class).getType();
+	public static final Type COMPACT_TWEET_TYPE =
+		TypeToken.get(CompactTweet.class).getType();
+	public static final Type COMPACT_USER_TYPE =
+		TypeToken.get(CompactUser.class).getType();
+
+	public static final Type LIST_OF_TWEETS_TYPE =
+		new TypeToken<List<Tweet>>(){}.getType();
+	public static final Type LIST_OF_USERS_TYPE =
+		new TypeToken<List<User>>(){}.getType();
+	public static final Type LIST_OF_COMPACT_TWEETS_TYPE =
+		new TypeToken<List<CompactTweet>>(){}.getType();
+	public static final Type LIST_OF_COMPACT_USERS_TYPE =
+		new TypeToken<List<CompactUser>>(){}.getType();
+
+	// Lazy initialization holder, the shared instance is only built on
+	// first use and the JVM guarantees safe publication to all threads.
+	private static final class LazyHolder {
+		private static final Gson instance__ =
+			TwitterEntity.getNewTwitterGsonInstance();
+	}
+
+	// Cannot be instantiated.
+	private TwitterEntityCodec() { }
+
+	/**
+	 * Returns the shared, pre-built {@link Gson} instance configured with
+	 * all of the Twitter entity type adapters.  Safe for concurrent use;
+	 * callers must not attempt to reconfigure it.
+	 */
+	public static final Gson getGson() {
+		return LazyHolder.instance__;
+	}
+
+	public static final <T> T fromJson(final String json, final Type type) {
+		return getGson().fromJson(json, type);
+	}
+
+	public static final <T> T fromJson(final String json, final Class<T> clazz) {
+		return getGson().fromJson(json, clazz);
+	}
+
+	public static final String toJson(final Object src) {
+		return getGson().toJson(src);
+	}
+
+	/**
+	 * Pulls a JSON array of entities off of the given reader one element
+	 * at a time, handing each one to the callback as soon as it has been
+	 * decoded.  Only a single element is ever held in memory.
+	 * @return the number of entities handed to the callback
+	 */
+	public static final <T extends TwitterEntity> int streamArray(
+		final JsonReader reader, final Type type,
+		final TwitterEntityCallback<T> callback) throws IOException {
+		final Gson gson = getGson();
+		int count = 0;
+		reader.beginArray();
+		while(reader.hasNext()) {
+			final T entity = gson.fromJson(reader, type);
+			callback.onEntity(entity);
+			count++;
+		}
+		reader.endArray();
+		return count;
+	}
+
+}
@@ -32,6 +32,9 @@ import com.google.gson.annotations.SerializedName;
 
 public class User extends TwitterEntity implements Comparable<User> {
 	
+	@SerializedName("id_str")
+	private final String id_;
+	
 	@SerializedName("screen_name")	
 	private final String screenName_;
 	
@@ -44,16 +47,26 @@ public class User extends TwitterEntity implements Comparable<User> {
 	@SerializedName("profile_image_url")
 	private final String profileImageUrl_;
 	
-	public User(String screenName, String name, Date createdAt,
+	public User(String id, String screenName, String name, Date createdAt,
 		String profileImageUrl) {
+		id_ = id;
 		screenName_ = screenName;
 		name_ = name;
 		createdAt_ = createdAt;
 		profileImageUrl_ = profileImageUrl;
 	}
 	
+	public User(String screenName, String name, Date createdAt,
+		String profileImageUrl) {
+		this(null, screenName, name, createdAt, profileImageUrl);
+	}
+	
 	public User() {
-		this(null, null, null, null);
+		this(null, null, null, null, null);
+	}
+	
+	public String getId() {
+		return id_;
 	}
 	
 	public String getScreenName() {
@@ -67,6 +80,14 @@ public class User extends TwitterEntity implements Comparable<User> {
 	public Date getCreatedAt() {
 		return new Date(createdAt_.getTime());
 	}
+	
+	/**
+	 * Same as {@link #getCreatedAt()}, in epoch millis, without the
+	 * defensive copy; or 0 if this user doesn't have a creation time.
+	 */
+	public long getCreatedAtMillis() {
+		return (createdAt_ != null) ? createdAt_.getTime() : 0L;
+	}
 
 	public String getProfileImageUrl_() {
 		return profileImageUrl_;
@@ -26,7 +26,7 @@
 
 package com.kolich.twitter.entities;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.google.gson.annotations.SerializedName;
@@ -34,18 +34,73 @@ import com.google.gson.annotations.SerializedName;
 public class UserList extends TwitterEntity {
 	
 	@SerializedName("users")
-	private final List<User> users_;
-		
+	private List<User> users_;
+	
+	/**
+	 * The cursor of the next page of users, "0" (or null) once there
+	 * are no more pages.
+	 */
+	@SerializedName("next_cursor_str")
+	private String nextCursor_;
+	
+	/**
+	 * Takes ownership of the given list, without copying it if it's
+	 * already an {@link ArrayList}.
+	 */
+	public UserList(List<User> users, String nextCursor) {
+		users_ = EntityLists.adopt(users);
+		nextCursor_ = nextCursor;
+	}
+	
 	public UserList(List<User> users) {
-		users_ = users;
+		this(users, null);
 	}
 	
 	public UserList() {
-		this(new LinkedList<User>());
+		this(new ArrayList<User>());
 	}
 	
+	/**
+	 * An unmodifiable view of the users in this list, not a copy; it
+	 * reflects anything appended afterwards.
+	 */
 	public List<User> getUsers() {
-		return new LinkedList<User>(users_);
+		return EntityLists.view(users_);
+	}
+	
+	public int size() {
+		return EntityLists.size(users_);
+	}
+	
+	public String getNextCursor() {
+		return nextCursor_;
+	}
+	
+	/**
+	 * Appends the next page of a cursored crawl to the end of this list,
+	 * in place, copying each user once, and takes on its next cursor.
+	 * @return this list
+	 */
+	public UserList append(final UserList page) {
+		users_ = EntityLists.append(users_, page.users_);
+		nextCursor_ = page.nextCursor_;
+		return this;
+	}
+	
+	/**
+	 * Merges the pages of a cursored crawl, in order, into a single new
+	 * list allocated once at its final size, with the last page's next
+	 * cursor.
+	 */
+	public static final UserList merge(final List<UserList> pages) {
+		final List<List<User>> lists = new ArrayList<List<User>>(
+			pages.size());
+		String nextCursor = null;
+		for(final UserList page : pages) {
+			lists.add(page.users_);
+			nextCursor = page.nextCursor_;
+		}
+		return new UserList(EntityLists.concat(lists), nextCursor);
 	}
 
 	// Straight from Eclipse
@@ -0,0 +1,247 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.feed;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import com.kolich.twitter.entities.Tweet;
+import com.kolich.twitter.entities.TwitterEntityCallback;
+
+/**
+ * Merges any number of timelines, each already newest first (as
+ * getTweets returns them, or a lazily paged
+ * {@link com.kolich.twitter.paging.TimelineIterable}), into a single
+ * newest first feed without sorting anything.  A heap holding the next
+ * tweet from each timeline picks the newest of them, so producing n
+ * tweets from k timelines costs n log k comparisons, and only as much of
+ * each timeline as actually makes it into the feed is ever read.
+ *
+ * Tweets are ordered by creation time, then by id, so the same tweet
+ * showing up in more than one timeline (or twice in one, across
+ * overlapping pages) always comes out of the heap back to back; only
+ * the first is kept.  A limit stops the merge after that many tweets.
+ *
+ * Every call to {@link #iterator()} starts a new merge, over new
+ * iterators from each timeline.
+ */
+public final class MergedTimeline implements Iterable<Tweet> {
+
+	private static final int NO_LIMIT = Integer.MAX_VALUE;
+
+	private static final Comparator<TimelineCursor> NEWEST_FIRST =
+		new Comparator<TimelineCursor>() {
+		@Override
+		public int compare(final TimelineCursor a, final TimelineCursor b) {
+			return compareNewestFirst(a.createdAt_, a.id_, b.createdAt_,
+				b.id_);
+		}
+	};
+
+	private final List<Iterable<Tweet>> timelines_;
+	private final int limit_;
+
+	public MergedTimeline(final Collection<? extends Iterable<Tweet>> timelines,
+		final int limit) {
+		checkNotNull(timelines, "Timelines cannot be null.");
+		checkArgument(limit >= 0, "Limit cannot be negative: %s", limit);
+		timelines_ = new ArrayList<Iterable<Tweet>>(timelines);
+		for(final Iterable<Tweet> timeline : timelines_) {
+			checkNotNull(timeline, "Timeline cannot be null.");
+		}
+		limit_ = limit;
+	}
+
+	public MergedTimeline(final Collection<? extends Iterable<Tweet>> timelines) {
+		this(timelines, NO_LIMIT);
+	}
+
+	@Override
+	public Iterator<Tweet> iterator() {
+		return new MergingIterator();
+	}
+
+	/**
+	 * Hands each tweet in the feed to the callback as soon as it's been
+	 * picked, without collecting them.
+	 * @return the number of tweets handed to the callback
+	 */
+	public int drainTo(final TwitterEntityCallback<Tweet> callback) {
+		checkNotNull(callback, "Callback cannot be null.");
+		int count = 0;
+		for(final Tweet tweet : this) {
+			callback.onEntity(tweet);
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * The whole feed, up to the limit, in a new list.
+	 */
+	public List<Tweet> toList() {
+		int expected = 0;
+		for(final Iterable<Tweet> timeline : timelines_) {
+			if(timeline instanceof Collection) {
+				expected += ((Collection<?>)timeline).size();
+			}
+		}
+		final List<Tweet> feed = new ArrayList<Tweet>(
+			Math.max(0, Math.min(expected, limit_)));
+		for(final Tweet tweet : this) {
+			feed.add(tweet);
+		}
+		return feed;
+	}
+
+	/**
+	 * Newest first, larger (later) id first among tweets created in the
+	 * same millisecond.
+	 */
+	private static final int compareNewestFirst(final long createdAtA,
+		final long idA, final long createdAtB, final long idB) {
+		if(createdAtA != createdAtB) {
+			return (createdAtA > createdAtB) ? -1 : 1;
+		}
+		return (idA == idB) ? 0 : ((idA > idB) ? -1 : 1);
+	}
+
+	private final class MergingIterator implements Iterator<Tweet> {
+
+		private final PriorityQueue<TimelineCursor> heap_;
+		private Tweet next_;
+		private long lastId_;
+		private int returned_;
+
+		private MergingIterator() {
+			heap_ = new PriorityQueue<TimelineCursor>(
+				Math.max(1, timelines_.size()), NEWEST_FIRST);
+			// Nothing is read from any timeline if there's no room for
+			// any of it.
+			if(limit_ > 0) {
+				for(final Iterable<Tweet> timeline : timelines_) {
+					final TimelineCursor cursor = new TimelineCursor(
+						timeline.iterator());
+					if(cursor.advance()) {
+						heap_.add(cursor);
+					}
+				}
+			}
+			lastId_ = 0L;
+			returned_ = 0;
+			next_ = pick();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next_ != null;
+		}
+
+		@Override
+		public Tweet next() {
+			if(next_ == null) {
+				throw new NoSuchElementException();
+			}
+			final Tweet tweet = next_;
+			returned_++;
+			next_ = (returned_ < limit_) ? pick() : null;
+			return tweet;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Pops the newest tweet that isn't a repeat of the last one.
+		 */
+		private Tweet pick() {
+			TimelineCursor cursor;
+			while((cursor = heap_.poll()) != null) {
+				final Tweet tweet = cursor.head_;
+				final long id = cursor.id_;
+				if(cursor.advance()) {
+					heap_.add(cursor);
+				}
+				if(id == 0L || id != lastId_) {
+					lastId_ = id;
+					return tweet;
+				}
+			}
+			return null;
+		}
+
+	}
+
+	/**
+	 * The next unmerged tweet from one timeline, with its sort keys
+	 * worked out once instead of on every comparison.
+	 */
+	private static final class TimelineCursor {
+
+		private final Iterator<Tweet> iterator_;
+		private Tweet head_;
+		private long createdAt_;
+		private long id_;
+
+		private TimelineCursor(final Iterator<Tweet> iterator) {
+			iterator_ = iterator;
+			createdAt_ = Long.MAX_VALUE;
+			id_ = Long.MAX_VALUE;
+		}
+
+		private boolean advance() {
+			if(!iterator_.hasNext()) {
+				head_ = null;
+				return false;
+			}
+			final Tweet tweet = iterator_.next();
+			final long createdAt = tweet.getCreatedAtMillis();
+			final String id = tweet.getId();
+			final long parsed = (id != null) ? Long.parseLong(id) : 0L;
+			if(compareNewestFirst(createdAt, parsed, createdAt_, id_) < 0) {
+				throw new IllegalStateException("Timeline is not newest " +
+					"first, tweet " + id + " is newer than the one before it.");
+			}
+			head_ = tweet;
+			createdAt_ = createdAt;
+			id_ = parsed;
+			return true;
+		}
+
+	}
+
+}
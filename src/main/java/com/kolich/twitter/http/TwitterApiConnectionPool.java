@@ -0,0 +1,405 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.kolich.twitter.exceptions.TwitterApiException;
+
+/**
+ * A pooled, keep-alive {@link org.apache.http.client.HttpClient} tuned for
+ * talking to the Twitter API, and the statistics to see how well its pool
+ * is doing.
+ *
+ * Nearly every request goes to one host, so the per-route cap is what
+ * actually bounds concurrency.  Connections are kept alive between
+ * requests, closed by a background thread once they've sat idle too long,
+ * and every TLS connection is made from one shared {@link SSLContext}
+ * whose session cache lets a new connection resume an earlier session
+ * instead of paying for a full handshake.  {@link #warmUp(HttpHost, int)}
+ * opens connections ahead of time so the first requests don't have to.
+ */
+public final class TwitterApiConnectionPool implements Closeable {
+
+	private static final Logger logger__ =
+		LoggerFactory.getLogger(TwitterApiConnectionPool.class);
+
+	public static final HttpHost API_HOST =
+		new HttpHost("api.twitter.com", 443, "https");
+
+	private static final String EVICTOR_THREAD_NAME_FORMAT =
+		"twitter-connection-evictor-%d";
+
+	private final PoolingHttpClientConnectionManager manager_;
+	private final CloseableHttpClient httpClient_;
+	private final ScheduledExecutorService evictor_;
+
+	private final int connectTimeoutMillis_;
+	private final long keepAliveMillis_;
+
+	private TwitterApiConnectionPool(final Builder builder) {
+		connectTimeoutMillis_ = builder.connectTimeoutMillis_;
+		keepAliveMillis_ = builder.keepAliveMillis_;
+		final SSLContext sslContext = getSslContext(builder);
+		manager_ = new PoolingHttpClientConnectionManager(
+			RegistryBuilder.<ConnectionSocketFactory>create()
+				.register("http", PlainConnectionSocketFactory.getSocketFactory())
+				.register("https", new SSLConnectionSocketFactory(sslContext,
+					SSLConnectionSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER))
+				.build());
+		manager_.setMaxTotal(builder.maxTotal_);
+		manager_.setDefaultMaxPerRoute(builder.maxPerRoute_);
+		manager_.setDefaultSocketConfig(SocketConfig.custom()
+			.setSoTimeout(builder.socketTimeoutMillis_)
+			.setSoKeepAlive(true)
+			.setTcpNoDelay(true)
+			.build());
+		httpClient_ = HttpClients.custom()
+			.setConnectionManager(manager_)
+			.setKeepAliveStrategy(new CappedKeepAliveStrategy(keepAliveMillis_))
+			.setDefaultRequestConfig(RequestConfig.custom()
+				.setConnectTimeout(builder.connectTimeoutMillis_)
+				.setSocketTimeout(builder.socketTimeoutMillis_)
+				.setConnectionRequestTimeout(builder.leaseTimeoutMillis_)
+				.setStaleConnectionCheckEnabled(builder.staleCheck_)
+				.build())
+			.setUserAgent(builder.userAgent_)
+			.build();
+		evictor_ = Executors.newSingleThreadScheduledExecutor(
+			new ThreadFactoryBuilder()
+				.setNameFormat(EVICTOR_THREAD_NAME_FORMAT)
+				.setDaemon(true)
+				.build());
+		final long idleMillis = builder.idleTimeoutMillis_;
+		final long period = Math.max(1000L, idleMillis / 2L);
+		evictor_.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				manager_.closeExpiredConnections();
+				manager_.closeIdleConnections(idleMillis, MILLISECONDS);
+			}
+		}, period, period, MILLISECONDS);
+	}
+
+	private static final SSLContext getSslContext(final Builder builder) {
+		try {
+			// A context of our own, not the JVM's default, so the session
+			// cache settings don't leak into anything else.
+			final SSLContext context = SSLContext.getInstance("TLS");
+			context.init(null, null, null);
+			final SSLSessionContext sessions =
+				context.getClientSessionContext();
+			sessions.setSessionCacheSize(builder.tlsSessionCacheSize_);
+			sessions.setSessionTimeout((int)TimeUnit.MILLISECONDS.toSeconds(
+				builder.tlsSessionTimeoutMillis_));
+			return context;
+		} catch (Exception e) {
+			throw new TwitterApiException("Failed to initialize TLS " +
+				"context.", e);
+		}
+	}
+
+	/**
+	 * The pooled client, to hand to a
+	 * {@link com.kolich.twitter.TwitterApiClient}.  Shared by everything
+	 * using this pool; don't close it directly, close the pool.
+	 */
+	public CloseableHttpClient getHttpClient() {
+		return httpClient_;
+	}
+
+	/**
+	 * Leased, pending (waiting on a lease), available (idle, kept alive)
+	 * and maximum connections across the whole pool.
+	 */
+	public PoolStats getStats() {
+		return manager_.getTotalStats();
+	}
+
+	/**
+	 * Pool statistics for one host, normally {@link #API_HOST}.
+	 */
+	public PoolStats getStats(final HttpHost host) {
+		return manager_.getStats(getRoute(host));
+	}
+
+	public void setMaxPerRoute(final HttpHost host, final int max) {
+		manager_.setMaxPerRoute(getRoute(host), max);
+	}
+
+	/**
+	 * The route the client itself would pick for the host: a direct one,
+	 * secure for https, with the scheme's default port filled in.  Routes
+	 * are pool keys, so anything less (a bare new HttpRoute(host), say,
+	 * which is never secure) names a route nothing is ever pooled under.
+	 */
+	private static final HttpRoute getRoute(final HttpHost host) {
+		checkNotNull(host, "Host cannot be null.");
+		final boolean secure = "https".equalsIgnoreCase(host.getSchemeName());
+		final HttpHost target = (host.getPort() >= 0) ? host :
+			new HttpHost(host.getHostName(), secure ? 443 : 80,
+				host.getSchemeName());
+		return new HttpRoute(target, null, secure);
+	}
+
+	/**
+	 * Opens up to the given number of connections to the host, paying
+	 * for the connect and TLS handshake now, and returns them to the pool
+	 * ready for reuse.  Blocks until they're all open.
+	 * @return how many connections were opened
+	 */
+	public int warmUp(final HttpHost host, final int connections) {
+		final HttpRoute route = getRoute(host);
+		final List<HttpClientConnection> opened =
+			new ArrayList<HttpClientConnection>(connections);
+		try {
+			// Lease them all before giving any back, otherwise the pool
+			// would just hand the same connection out again.
+			for(int i = 0; i < connections; i++) {
+				final HttpClientConnection conn = manager_.requestConnection(
+					route, null).get(connectTimeoutMillis_, MILLISECONDS);
+				opened.add(conn);
+				if(!conn.isOpen()) {
+					final HttpContext context = HttpClientContext.create();
+					manager_.connect(conn, route, connectTimeoutMillis_,
+						context);
+					manager_.routeComplete(conn, route, context);
+					// Binds the connection's streams, which otherwise only
+					// happens when a request is sent; a stale check on a
+					// connection that's never been used would fail.
+					conn.flush();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (Exception e) {
+			logger__.warn("Failed to warm up connections to: " + host, e);
+		} finally {
+			for(final HttpClientConnection conn : opened) {
+				manager_.releaseConnection(conn, null, keepAliveMillis_,
+					MILLISECONDS);
+			}
+		}
+		return opened.size();
+	}
+
+	public int warmUp(final int connections) {
+		return warmUp(API_HOST, connections);
+	}
+
+	@Override
+	public void close() {
+		evictor_.shutdownNow();
+		try {
+			httpClient_.close();
+		} catch (IOException e) {
+			logger__.debug("Failed to close pooled HttpClient.", e);
+		}
+		manager_.shutdown();
+	}
+
+	/**
+	 * Twitter doesn't send a Keep-Alive header, which would otherwise
+	 * leave pooled connections alive forever as far as the pool knows.
+	 */
+	private static final class CappedKeepAliveStrategy
+		implements ConnectionKeepAliveStrategy {
+
+		private final long maxMillis_;
+
+		private CappedKeepAliveStrategy(final long maxMillis) {
+			maxMillis_ = maxMillis;
+		}
+
+		@Override
+		public long getKeepAliveDuration(final HttpResponse response,
+			final HttpContext context) {
+			final long advertised = DefaultConnectionKeepAliveStrategy
+				.INSTANCE.getKeepAliveDuration(response, context);
+			return (advertised > 0L) ? Math.min(advertised, maxMillis_) :
+				maxMillis_;
+		}
+
+	}
+
+	public static final Builder builder() {
+		return new Builder();
+	}
+
+	public static final class Builder {
+
+		private int maxTotal_ = 64;
+		private int maxPerRoute_ = 32;
+		private int connectTimeoutMillis_ = 5000;
+		private int socketTimeoutMillis_ = 30000;
+		private int leaseTimeoutMillis_ = 10000;
+		private long keepAliveMillis_ = 60000L;
+		private long idleTimeoutMillis_ = 30000L;
+		private boolean staleCheck_ = true;
+		private int tlsSessionCacheSize_ = 256;
+		private long tlsSessionTimeoutMillis_ = 3600000L;
+		private String userAgent_ = null;
+
+		private Builder() { }
+
+		public Builder setMaxTotal(final int maxTotal) {
+			checkArgument(maxTotal > 0, "Max total must be greater than " +
+				"zero: %s", maxTotal);
+			maxTotal_ = maxTotal;
+			return this;
+		}
+
+		/**
+		 * Effectively the connection cap against api.twitter.com.
+		 */
+		public Builder setMaxPerRoute(final int maxPerRoute) {
+			checkArgument(maxPerRoute > 0, "Max per route must be greater " +
+				"than zero: %s", maxPerRoute);
+			maxPerRoute_ = maxPerRoute;
+			return this;
+		}
+
+		public Builder setConnectTimeout(final long timeout,
+			final TimeUnit unit) {
+			connectTimeoutMillis_ = toIntMillis(timeout, unit);
+			return this;
+		}
+
+		public Builder setSocketTimeout(final long timeout,
+			final TimeUnit unit) {
+			socketTimeoutMillis_ = toIntMillis(timeout, unit);
+			return this;
+		}
+
+		/**
+		 * How long a request waits for a connection when the pool is
+		 * all leased out.
+		 */
+		public Builder setLeaseTimeout(final long timeout,
+			final TimeUnit unit) {
+			leaseTimeoutMillis_ = toIntMillis(timeout, unit);
+			return this;
+		}
+
+		/**
+		 * The longest a connection is kept for reuse after a response.
+		 */
+		public Builder setKeepAlive(final long keepAlive,
+			final TimeUnit unit) {
+			checkArgument(keepAlive > 0L, "Keep alive must be greater than " +
+				"zero: %s", keepAlive);
+			keepAliveMillis_ = unit.toMillis(keepAlive);
+			return this;
+		}
+
+		/**
+		 * Connections idle longer than this are closed in the background.
+		 */
+		public Builder setIdleTimeout(final long idleTimeout,
+			final TimeUnit unit) {
+			checkArgument(idleTimeout > 0L, "Idle timeout must be greater " +
+				"than zero: %s", idleTimeout);
+			idleTimeoutMillis_ = unit.toMillis(idleTimeout);
+			return this;
+		}
+
+		/**
+		 * Checking a pooled connection before each request costs a
+		 * little latency; with idle eviction on and a keep-alive shorter
+		 * than the server's, it can be safely turned off.
+		 */
+		public Builder setStaleConnectionCheck(final boolean staleCheck) {
+			staleCheck_ = staleCheck;
+			return this;
+		}
+
+		public Builder setTlsSessionCache(final int size,
+			final long timeout, final TimeUnit unit) {
+			checkArgument(size >= 0, "TLS session cache size cannot be " +
+				"negative: %s", size);
+			tlsSessionCacheSize_ = size;
+			tlsSessionTimeoutMillis_ = unit.toMillis(timeout);
+			return this;
+		}
+
+		public Builder setUserAgent(final String userAgent) {
+			userAgent_ = userAgent;
+			return this;
+		}
+
+		public TwitterApiConnectionPool build() {
+			checkArgument(maxPerRoute_ <= maxTotal_, "Max per route " +
+				"cannot exceed max total: %s > %s", maxPerRoute_, maxTotal_);
+			return new TwitterApiConnectionPool(this);
+		}
+
+		private static final int toIntMillis(final long timeout,
+			final TimeUnit unit) {
+			final long millis = unit.toMillis(timeout);
+			checkArgument(millis >= 0L && millis <= Integer.MAX_VALUE,
+				"Timeout out of range: %s", millis);
+			return (int)millis;
+		}
+
+	}
+
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.kolich.twitter.ratelimit.RateLimitStatus;
+
+/**
+ * Keeps per endpoint request counts, status codes, bytes read, rate
+ * limit headroom and sign, network and parse latency histograms, all in
+ * atomic counters: recording never locks or allocates once an endpoint
+ * has been seen.
+ */
+public final class DefaultTwitterApiMetrics implements TwitterApiMetrics {
+
+	private final ConcurrentMap<String,TwitterApiEndpointMetrics> endpoints_;
+
+	public DefaultTwitterApiMetrics() {
+		endpoints_ =
+			new ConcurrentHashMap<String,TwitterApiEndpointMetrics>();
+	}
+
+	@Override
+	public void recordRequest(final String endpoint, final long signNanos) {
+		getOrCreate(endpoint).recordRequest(signNanos);
+	}
+
+	@Override
+	public void recordResponse(final String endpoint, final int statusCode,
+		final long networkNanos, final RateLimitStatus rateLimit) {
+		getOrCreate(endpoint).recordResponse(statusCode, networkNanos,
+			rateLimit);
+	}
+
+	@Override
+	public void recordParse(final String endpoint, final long parseNanos,
+		final long bytesRead) {
+		getOrCreate(endpoint).recordParse(parseNanos, bytesRead);
+	}
+
+	/**
+	 * Returns the metrics for the given endpoint, or null if no request
+	 * has been made to it.
+	 */
+	public TwitterApiEndpointMetrics getEndpoint(final String endpoint) {
+		return endpoints_.get(endpoint);
+	}
+
+	public List<TwitterApiEndpointMetrics> getEndpoints() {
+		return Collections.unmodifiableList(
+			new ArrayList<TwitterApiEndpointMetrics>(endpoints_.values()));
+	}
+
+	public void reset() {
+		endpoints_.clear();
+	}
+
+	private final TwitterApiEndpointMetrics getOrCreate(
+		final String endpoint) {
+		TwitterApiEndpointMetrics metrics = endpoints_.get(endpoint);
+		if(metrics == null) {
+			final TwitterApiEndpointMetrics newMetrics =
+				new TwitterApiEndpointMetrics(endpoint);
+			metrics = endpoints_.putIfAbsent(endpoint, newMetrics);
+			if(metrics == null) {
+				metrics = newMetrics;
+			}
+		}
+		return metrics;
+	}
+
+}
@@ -0,0 +1,140 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size, lock-free histogram of latencies in nanoseconds.  Values
+ * are bucketed log-linearly, each power of two split into
+ * {@link #SUB_BUCKETS} equal buckets, so any percentile it reports is
+ * within about 12% of the true value while the whole thing stays a
+ * single small array of counters that's never resized or locked.
+ */
+public final class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// Values below SUB_BUCKETS get exact buckets of their own, then
+	// SUB_BUCKETS per power of two up to 2^63.
+	private static final int BUCKETS =
+		SUB_BUCKETS + ((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+
+	private final AtomicLongArray counts_;
+	private final AtomicLong count_;
+	private final AtomicLong sum_;
+	private final AtomicLong max_;
+
+	public LatencyHistogram() {
+		counts_ = new AtomicLongArray(BUCKETS);
+		count_ = new AtomicLong();
+		sum_ = new AtomicLong();
+		max_ = new AtomicLong();
+	}
+
+	public void record(final long nanos) {
+		final long value = Math.max(0L, nanos);
+		counts_.incrementAndGet(bucketOf(value));
+		count_.incrementAndGet();
+		sum_.addAndGet(value);
+		long max;
+		while(value > (max = max_.get()) && !max_.compareAndSet(max, value)) {
+			// Lost a race with another thread, try again.
+		}
+	}
+
+	public long getCount() {
+		return count_.get();
+	}
+
+	public long getMax() {
+		return max_.get();
+	}
+
+	public double getMean() {
+		final long count = count_.get();
+		return (count == 0L) ? 0.0d : (double)sum_.get() / count;
+	}
+
+	/**
+	 * The smallest value at or above the given fraction (0.0 to 1.0) of
+	 * recorded values, give or take the width of its bucket, or 0 if
+	 * nothing has been recorded.
+	 */
+	public long getPercentile(final double fraction) {
+		final long count = count_.get();
+		if(count == 0L) {
+			return 0L;
+		}
+		final long rank = Math.max(1L, (long)Math.ceil(fraction * count));
+		long seen = 0L;
+		for(int i = 0; i < BUCKETS; i++) {
+			seen += counts_.get(i);
+			if(seen >= rank) {
+				// Never report more than what was actually seen.
+				return Math.min(upperBoundOf(i), max_.get());
+			}
+		}
+		return max_.get();
+	}
+
+	private static final int bucketOf(final long value) {
+		if(value < SUB_BUCKETS) {
+			return (int)value;
+		}
+		// The position of the highest bit picks the power of two, the
+		// next SUB_BUCKET_BITS bits below it pick the sub-bucket.
+		final int exponent = 63 - Long.numberOfLeadingZeros(value);
+		final int sub = (int)(value >>> (exponent - SUB_BUCKET_BITS)) &
+			(SUB_BUCKETS - 1);
+		return SUB_BUCKETS + ((exponent - SUB_BUCKET_BITS) * SUB_BUCKETS) +
+			sub;
+	}
+
+	private static final long upperBoundOf(final int bucket) {
+		if(bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		final int exponent = ((bucket - SUB_BUCKETS) / SUB_BUCKETS) +
+			SUB_BUCKET_BITS;
+		final long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		final long width = 1L << (exponent - SUB_BUCKET_BITS);
+		final long lower = (1L << exponent) + (sub * width);
+		return (exponent == 63 && sub == SUB_BUCKETS - 1) ?
+			Long.MAX_VALUE : lower + width - 1L;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("(count=%s, mean=%.0f, p50=%s, p99=%s, max=%s)",
+			getCount(), getMean(), getPercentile(0.5d),
+			getPercentile(0.99d), getMax());
+	}
+
+}
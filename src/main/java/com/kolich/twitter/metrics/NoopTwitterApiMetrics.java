@@ -0,0 +1,52 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.metrics;
+
+import com.kolich.twitter.ratelimit.RateLimitStatus;
+
+/**
+ * Records nothing.  What every client uses unless given something else.
+ */
+public final class NoopTwitterApiMetrics implements TwitterApiMetrics {
+
+	public static final NoopTwitterApiMetrics INSTANCE =
+		new NoopTwitterApiMetrics();
+
+	private NoopTwitterApiMetrics() { }
+
+	@Override
+	public void recordRequest(final String endpoint, final long signNanos) { }
+
+	@Override
+	public void recordResponse(final String endpoint, final int statusCode,
+		final long networkNanos, final RateLimitStatus rateLimit) { }
+
+	@Override
+	public void recordParse(final String endpoint, final long parseNanos,
+		final long bytesRead) { }
+
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.kolich.twitter.ratelimit.RateLimitStatus;
+
+/**
+ * Everything recorded about a single endpoint.  Updated concurrently and
+ * read without locking, so reads of different figures aren't a
+ * consistent snapshot of one another.
+ */
+public final class TwitterApiEndpointMetrics {
+
+	private final String endpoint_;
+
+	private final AtomicLong requests_;
+	private final ConcurrentMap<Integer,AtomicLong> statusCodes_;
+	private final AtomicLong bytesRead_;
+
+	private final LatencyHistogram sign_;
+	private final LatencyHistogram network_;
+	private final LatencyHistogram parse_;
+
+	private final AtomicInteger rateLimitRemaining_;
+	private final AtomicInteger rateLimitLimit_;
+
+	TwitterApiEndpointMetrics(final String endpoint) {
+		endpoint_ = endpoint;
+		requests_ = new AtomicLong();
+		statusCodes_ = new ConcurrentHashMap<Integer,AtomicLong>();
+		bytesRead_ = new AtomicLong();
+		sign_ = new LatencyHistogram();
+		network_ = new LatencyHistogram();
+		parse_ = new LatencyHistogram();
+		rateLimitRemaining_ = new AtomicInteger(-1);
+		rateLimitLimit_ = new AtomicInteger(-1);
+	}
+
+	void recordRequest(final long signNanos) {
+		requests_.incrementAndGet();
+		sign_.record(signNanos);
+	}
+
+	void recordResponse(final int statusCode, final long networkNanos,
+		final RateLimitStatus rateLimit) {
+		final Integer key = statusCode;
+		AtomicLong count = statusCodes_.get(key);
+		if(count == null) {
+			final AtomicLong newCount = new AtomicLong();
+			count = statusCodes_.putIfAbsent(key, newCount);
+			if(count == null) {
+				count = newCount;
+			}
+		}
+		count.incrementAndGet();
+		network_.record(networkNanos);
+		if(rateLimit != null) {
+			rateLimitRemaining_.set(rateLimit.getRemaining());
+			rateLimitLimit_.set(rateLimit.getLimit());
+		}
+	}
+
+	void recordParse(final long parseNanos, final long bytesRead) {
+		parse_.record(parseNanos);
+		if(bytesRead > 0L) {
+			bytesRead_.addAndGet(bytesRead);
+		}
+	}
+
+	public String getEndpoint() {
+		return endpoint_;
+	}
+
+	/**
+	 * Requests sent, whether or not a response ever came back.
+	 */
+	public long getRequests() {
+		return requests_.get();
+	}
+
+	/**
+	 * Responses received, by HTTP status code.
+	 */
+	public Map<Integer,Long> getStatusCodes() {
+		final Map<Integer,Long> codes = new TreeMap<Integer,Long>();
+		for(final Map.Entry<Integer,AtomicLong> e : statusCodes_.entrySet()) {
+			codes.put(e.getKey(), e.getValue().get());
+		}
+		return codes;
+	}
+
+	/**
+	 * Bytes of successful response bodies read.
+	 */
+	public long getBytesRead() {
+		return bytesRead_.get();
+	}
+
+	public LatencyHistogram getSignLatency() {
+		return sign_;
+	}
+
+	public LatencyHistogram getNetworkLatency() {
+		return network_;
+	}
+
+	public LatencyHistogram getParseLatency() {
+		return parse_;
+	}
+
+	/**
+	 * Requests left in the current rate limit window as of the last
+	 * response, across whichever tokens were used, or -1 if unknown.
+	 */
+	public int getRateLimitRemaining() {
+		return rateLimitRemaining_.get();
+	}
+
+	public int getRateLimitLimit() {
+		return rateLimitLimit_.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s (requests=%s, statusCodes=%s, " +
+			"bytesRead=%s, sign=%s, network=%s, parse=%s, " +
+			"rateLimit=%s/%s)", endpoint_, getRequests(), getStatusCodes(),
+			getBytesRead(), sign_, network_, parse_, getRateLimitRemaining(),
+			getRateLimitLimit());
+	}
+
+}
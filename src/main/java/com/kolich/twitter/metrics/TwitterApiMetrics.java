@@ -0,0 +1,64 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.metrics;
+
+import com.kolich.twitter.ratelimit.RateLimitStatus;
+
+/**
+ * Told about every request a {@link com.kolich.twitter.TwitterApiClient}
+ * makes, phase by phase, so we can see where the time goes: OAuth
+ * signing, the network (request sent through response headers
+ * received), or decoding the response.  Endpoints are identified by the
+ * request URI without any query parameters.
+ *
+ * Called on the request's own thread, inline, so implementations must be
+ * thread-safe and cheap.
+ */
+public interface TwitterApiMetrics {
+
+	/**
+	 * A request has been signed and is about to be sent.
+	 */
+	public void recordRequest(final String endpoint, final long signNanos);
+
+	/**
+	 * A response came back; its body hasn't been read yet.  A request
+	 * that never gets this far failed before any response arrived.
+	 * @param rateLimit the endpoint's rate limit window after this
+	 * response, null if the endpoint isn't rate limited
+	 */
+	public void recordResponse(final String endpoint, final int statusCode,
+		final long networkNanos, final RateLimitStatus rateLimit);
+
+	/**
+	 * A successful response body was read and decoded.
+	 * @param bytesRead the size of the body as read off of the wire
+	 */
+	public void recordParse(final String endpoint, final long parseNanos,
+		final long bytesRead);
+
+}
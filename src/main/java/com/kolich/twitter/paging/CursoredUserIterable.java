@@ -0,0 +1,67 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.paging;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import com.kolich.twitter.entities.User;
+import com.kolich.twitter.entities.UserList;
+
+/**
+ * Walks every page of a cursored user list (friends/list,
+ * followers/list) by following next_cursor until the API hands back
+ * the "0" end cursor.
+ */
+public abstract class CursoredUserIterable
+	extends PagedIterable<String,UserList,User> {
+
+	public static final String BEGIN_CURSOR = "-1";
+	public static final String END_CURSOR = "0";
+
+	public CursoredUserIterable(final ExecutorService executor,
+		final int prefetchDepth) {
+		super(BEGIN_CURSOR, executor, prefetchDepth);
+	}
+
+	public CursoredUserIterable() {
+		super(BEGIN_CURSOR);
+	}
+
+	@Override
+	protected final List<User> getItems(final UserList page) {
+		return page.getUsers();
+	}
+
+	@Override
+	protected final String getNextKey(final String cursor,
+		final UserList page) {
+		final String next = page.getNextCursor();
+		return (next == null || END_CURSOR.equals(next)) ? null : next;
+	}
+
+}
@@ -0,0 +1,271 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.paging;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.kolich.common.functional.either.Either;
+import com.kolich.http.common.response.HttpFailure;
+import com.kolich.twitter.exceptions.TwitterApiException;
+
+/**
+ * A lazy {@link Iterable} over every item on every page of a paged API
+ * resource.  Nothing is fetched until the first call to hasNext().
+ *
+ * With a prefetch depth of zero, pages are fetched on the calling thread
+ * as they're needed.  Otherwise a producer running on the given executor
+ * walks the pages ahead of the consumer, keeping up to prefetchDepth
+ * pages buffered, overlapping network latency with processing.
+ *
+ * If fetching a page fails, iteration throws a {@link TwitterApiException}.
+ *
+ * @param <K> the type of key that identifies a page (cursor, max_id, etc.)
+ * @param <P> the type of page returned by the API
+ * @param <T> the type of item on each page
+ */
+public abstract class PagedIterable<K,P,T> implements Iterable<T> {
+
+	/**
+	 * How long the producer waits for room in the prefetch queue before
+	 * checking whether the consumer has gone away.
+	 */
+	private static final long PRODUCER_ACQUIRE_TIMEOUT_MS = 100L;
+
+	private final K firstKey_;
+	private final ExecutorService executor_;
+	private final int prefetchDepth_;
+
+	public PagedIterable(final K firstKey, final ExecutorService executor,
+		final int prefetchDepth) {
+		checkNotNull(firstKey, "First page key cannot be null.");
+		checkArgument(prefetchDepth >= 0, "Prefetch depth cannot be " +
+			"negative: %s", prefetchDepth);
+		checkArgument(prefetchDepth == 0 || executor != null, "An " +
+			"executor is required to prefetch pages.");
+		firstKey_ = firstKey;
+		executor_ = executor;
+		prefetchDepth_ = prefetchDepth;
+	}
+
+	/**
+	 * Iterates synchronously, on the calling thread, with no prefetching.
+	 */
+	public PagedIterable(final K firstKey) {
+		this(firstKey, null, 0);
+	}
+
+	/**
+	 * Fetches the page identified by the given key.  Called from the
+	 * prefetching thread when prefetching.
+	 */
+	protected abstract Either<HttpFailure,P> fetchPage(final K key);
+
+	protected abstract List<T> getItems(final P page);
+
+	/**
+	 * Returns the key of the page that follows the given page, or null
+	 * if it was the last one.
+	 */
+	protected abstract K getNextKey(final K key, final P page);
+
+	@Override
+	public PagedIterator<T> iterator() {
+		return new PrefetchingIterator();
+	}
+
+	private static final class Page<T> {
+		private final List<T> items_;
+		private final boolean last_;
+		private final Exception failure_;
+		private final boolean failed_;
+		private Page(final List<T> items, final boolean last) {
+			items_ = items;
+			last_ = last;
+			failure_ = null;
+			failed_ = false;
+		}
+		private Page(final Exception failure) {
+			items_ = Collections.emptyList();
+			last_ = true;
+			failure_ = failure;
+			failed_ = true;
+		}
+	}
+
+	private final class PrefetchingIterator implements PagedIterator<T> {
+
+		// Only used when prefetching, null otherwise.  The producer takes
+		// a permit before fetching a page and the consumer gives it back
+		// once the page is taken, so fetched but unconsumed pages never
+		// number more than prefetchDepth.
+		private BlockingQueue<Page<T>> queue_ = null;
+		private Semaphore permits_ = null;
+		private Future<?> producer_ = null;
+
+		// Only used when fetching synchronously.
+		private K nextKey_ = firstKey_;
+
+		private Iterator<T> current_ = Collections.<T>emptyList().iterator();
+		private boolean done_ = false;
+		private volatile boolean closed_ = false;
+
+		@Override
+		public boolean hasNext() {
+			while(!current_.hasNext()) {
+				if(done_) {
+					return false;
+				}
+				final Page<T> page = nextPage();
+				if(page.failed_) {
+					done_ = true;
+					close();
+					throw new TwitterApiException("Failed to fetch next " +
+						"page.", page.failure_);
+				}
+				done_ = page.last_;
+				current_ = page.items_.iterator();
+			}
+			return true;
+		}
+
+		@Override
+		public T next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return current_.next();
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public synchronized void close() {
+			done_ = true;
+			closed_ = true;
+			current_ = Collections.<T>emptyList().iterator();
+			if(producer_ != null) {
+				producer_.cancel(true);
+				// Wake up a consumer blocked in take() on another thread.
+				// If the offer fails the queue isn't empty, so there's no
+				// one to wake.
+				queue_.clear();
+				queue_.offer(new Page<T>(Collections.<T>emptyList(), true));
+			}
+		}
+
+		private Page<T> nextPage() {
+			if(prefetchDepth_ == 0) {
+				return fetch(nextKey_);
+			}
+			synchronized(this) {
+				if(closed_) {
+					throw new TwitterApiException("Iterator was closed.");
+				}
+				if(producer_ == null) {
+					// Lazily kick off the producer on first use.
+					queue_ = new ArrayBlockingQueue<Page<T>>(prefetchDepth_);
+					permits_ = new Semaphore(prefetchDepth_);
+					producer_ = executor_.submit(new Producer());
+				}
+			}
+			try {
+				final Page<T> page = queue_.take();
+				permits_.release();
+				if(closed_) {
+					// Closed from another thread while we were waiting.
+					return new Page<T>(Collections.<T>emptyList(), true);
+				}
+				return page;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+				throw new TwitterApiException("Interrupted while waiting " +
+					"for next page.", e);
+			}
+		}
+
+		private Page<T> fetch(final K key) {
+			try {
+				final Either<HttpFailure,P> response = fetchPage(key);
+				if(!response.success()) {
+					return new Page<T>(response.left().getCause());
+				}
+				final P page = response.right();
+				final K next = getNextKey(key, page);
+				nextKey_ = next;
+				return new Page<T>(getItems(page), next == null);
+			} catch (Exception e) {
+				return new Page<T>(e);
+			}
+		}
+
+		private final class Producer implements Runnable {
+			@Override
+			public void run() {
+				try {
+					Page<T> page;
+					do {
+						// Waits once prefetchDepth pages are buffered.  Don't
+						// rely on interruption alone to notice the consumer
+						// closing us, the HTTP stack may swallow it.
+						while(!permits_.tryAcquire(PRODUCER_ACQUIRE_TIMEOUT_MS,
+							TimeUnit.MILLISECONDS)) {
+							if(closed_) {
+								return;
+							}
+						}
+						page = fetch(nextKey_);
+						// Holding a permit, there's always room unless we
+						// were closed in the meantime.
+						if(closed_ || !queue_.offer(page)) {
+							return;
+						}
+					} while(!page.last_ && !closed_);
+				} catch (InterruptedException e) {
+					// Closed by the consumer, just stop.
+				}
+			}
+		}
+
+	}
+
+}
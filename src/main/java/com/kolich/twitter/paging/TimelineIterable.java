@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.paging;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import com.kolich.twitter.entities.Tweet;
+
+/**
+ * Walks a timeline backwards, newest to oldest, by max_id.  Each page is
+ * requested with the id of the oldest tweet on the previous page as its
+ * max_id, and the walk ends when the API hands back an empty page.  Note
+ * that short (but non-empty) pages are normal, retweets are stripped out
+ * after the count is applied.
+ *
+ * When the underlying requests are bounded by a since_id, this doubles as
+ * an incremental sync: it yields every tweet newer than since_id, newest
+ * first, so the first tweet seen is the next since_id watermark.
+ */
+public abstract class TimelineIterable
+	extends PagedIterable<Long,List<Tweet>,Tweet> {
+
+	/**
+	 * A max_id of zero means "start at the newest tweet".
+	 */
+	public static final long BEGIN_MAX_ID = 0L;
+
+	public TimelineIterable(final ExecutorService executor,
+		final int prefetchDepth) {
+		super(BEGIN_MAX_ID, executor, prefetchDepth);
+	}
+
+	public TimelineIterable() {
+		super(BEGIN_MAX_ID);
+	}
+
+	@Override
+	protected final List<Tweet> getItems(final List<Tweet> page) {
+		return page;
+	}
+
+	@Override
+	protected final Long getNextKey(final Long maxId,
+		final List<Tweet> page) {
+		if(page.isEmpty()) {
+			return null;
+		}
+		// The oldest tweet is the last one on the page.
+		return Long.parseLong(page.get(page.size() - 1).getId());
+	}
+
+}
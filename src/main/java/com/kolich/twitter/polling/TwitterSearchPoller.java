@@ -0,0 +1,309 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.polling;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.kolich.common.functional.either.Either;
+import com.kolich.http.common.response.HttpFailure;
+import com.kolich.twitter.TwitterApiClient;
+import com.kolich.twitter.entities.Tweet;
+import com.kolich.twitter.entities.TweetSearchResults;
+
+/**
+ * Polls any number of search queries, remembering the highest tweet id
+ * seen for each so every poll only asks for (and only emits) tweets that
+ * are new since the last one.
+ *
+ * Each query is polled on its own adaptive schedule: every poll that
+ * turns up something new halves the query's interval, every empty one
+ * doubles it, within the given bounds, so busy queries are polled often
+ * and quiet ones hardly at all.  Polls run concurrently on a bounded pool
+ * of threads, and a failed poll backs the query off like an empty one.
+ *
+ * A single search returns at most 100 tweets, so when a query has seen
+ * more than that since its last poll, the poll pages backwards with
+ * max_id until it gets back an empty page, so it has everything newer
+ * than the last tweet it emitted, and only then moves on.  A poll that fails part way emits nothing and
+ * leaves the query where it was, to be tried again in full next time.
+ * The very first poll of a query added without a since id only emits
+ * the latest page.
+ */
+public final class TwitterSearchPoller {
+
+	private static final Logger logger__ =
+		LoggerFactory.getLogger(TwitterSearchPoller.class);
+
+	private static final String POLLER_THREAD_NAME_FORMAT =
+		"twitter-search-poller-%d";
+
+	/**
+	 * The most the search API will return in a single request.
+	 */
+	private static final int SEARCH_COUNT = 100;
+
+	private final TwitterApiClient client_;
+	private final TwitterSearchListener listener_;
+	private final ScheduledExecutorService executor_;
+	private final long minIntervalMillis_;
+	private final long maxIntervalMillis_;
+
+	private final ConcurrentMap<String,PolledQuery> queries_;
+
+	private final AtomicLong polls_;
+	private final AtomicLong emptyPolls_;
+
+	/**
+	 * @param threads the most polls that can be running at once
+	 * @param minInterval the interval hot queries work their way down to
+	 * @param maxInterval the interval idle queries work their way up to
+	 */
+	public TwitterSearchPoller(final TwitterApiClient client,
+		final TwitterSearchListener listener, final int threads,
+		final long minInterval, final long maxInterval,
+		final TimeUnit unit) {
+		checkNotNull(client, "Twitter API client cannot be null.");
+		checkNotNull(listener, "Listener cannot be null.");
+		checkArgument(threads > 0, "Threads must be greater than zero: %s",
+			threads);
+		checkArgument(minInterval > 0L && minInterval <= maxInterval,
+			"Intervals must be positive, and the minimum no greater than " +
+			"the maximum: %s, %s", minInterval, maxInterval);
+		client_ = client;
+		listener_ = listener;
+		minIntervalMillis_ = unit.toMillis(minInterval);
+		maxIntervalMillis_ = unit.toMillis(maxInterval);
+		queries_ = new ConcurrentHashMap<String,PolledQuery>();
+		polls_ = new AtomicLong();
+		emptyPolls_ = new AtomicLong();
+		final ScheduledThreadPoolExecutor executor =
+			new ScheduledThreadPoolExecutor(threads,
+				new ThreadFactoryBuilder()
+					.setNameFormat(POLLER_THREAD_NAME_FORMAT)
+					.setDaemon(true)
+					.build());
+		// Don't hold on to removed queries until they would have run.
+		executor.setRemoveOnCancelPolicy(true);
+		executor_ = executor;
+	}
+
+	/**
+	 * Starts polling the query right away, emitting the most recent
+	 * tweets on the first poll.
+	 */
+	public void addQuery(final String query) {
+		addQuery(query, 0L);
+	}
+
+	/**
+	 * Starts polling the query right away, only emitting tweets newer
+	 * than sinceId; for picking up where a previous poller left off.
+	 * Does nothing if the query is already being polled.
+	 */
+	public void addQuery(final String query, final long sinceId) {
+		checkNotNull(query, "Query cannot be null.");
+		final PolledQuery polled = new PolledQuery(query, sinceId);
+		if(queries_.putIfAbsent(query, polled) == null) {
+			polled.schedule(0L);
+		}
+	}
+
+	public void removeQuery(final String query) {
+		final PolledQuery polled = queries_.remove(query);
+		if(polled != null) {
+			polled.cancel();
+		}
+	}
+
+	/**
+	 * The highest tweet id seen so far for the query, or -1 if it isn't
+	 * being polled.  Save these to resume where this poller left off.
+	 */
+	public long getSinceId(final String query) {
+		final PolledQuery polled = queries_.get(query);
+		return (polled != null) ? polled.sinceId_ : -1L;
+	}
+
+	/**
+	 * The query's current polling interval in milliseconds, or -1 if it
+	 * isn't being polled.
+	 */
+	public long getInterval(final String query) {
+		final PolledQuery polled = queries_.get(query);
+		return (polled != null) ? polled.intervalMillis_ : -1L;
+	}
+
+	public List<String> getQueries() {
+		return new ArrayList<String>(queries_.keySet());
+	}
+
+	public long getPolls() {
+		return polls_.get();
+	}
+
+	/**
+	 * Polls that didn't turn up anything new.
+	 */
+	public long getEmptyPolls() {
+		return emptyPolls_.get();
+	}
+
+	/**
+	 * Stops polling, polls already running finish.
+	 */
+	public void shutdown() {
+		executor_.shutdownNow();
+		queries_.clear();
+	}
+
+	private final class PolledQuery implements Runnable {
+
+		private final String query_;
+
+		// Only ever written by the thread running the poll, and polls
+		// for the same query never overlap.
+		private volatile long sinceId_;
+		private volatile long intervalMillis_;
+
+		private volatile boolean cancelled_;
+		private volatile ScheduledFuture<?> next_;
+
+		private PolledQuery(final String query, final long sinceId) {
+			query_ = query;
+			sinceId_ = sinceId;
+			intervalMillis_ = minIntervalMillis_;
+		}
+
+		private void schedule(final long delayMillis) {
+			if(cancelled_) {
+				return;
+			}
+			try {
+				next_ = executor_.schedule(this, delayMillis, MILLISECONDS);
+			} catch (RejectedExecutionException e) {
+				// Shut down.
+			}
+		}
+
+		private void cancel() {
+			cancelled_ = true;
+			final ScheduledFuture<?> next = next_;
+			if(next != null) {
+				next.cancel(false);
+			}
+		}
+
+		@Override
+		public void run() {
+			if(cancelled_) {
+				return;
+			}
+			boolean found = false;
+			try {
+				found = poll();
+			} catch (Exception e) {
+				logger__.warn("Failed to poll search query: " + query_, e);
+			} finally {
+				intervalMillis_ = found ?
+					Math.max(minIntervalMillis_, intervalMillis_ / 2L) :
+					Math.min(maxIntervalMillis_, intervalMillis_ * 2L);
+				schedule(intervalMillis_);
+			}
+		}
+
+		/**
+		 * Returns true if anything new was found.
+		 */
+		private boolean poll() {
+			polls_.incrementAndGet();
+			final long sinceId = sinceId_;
+			final List<Tweet> tweets = new ArrayList<Tweet>();
+			long highest = sinceId, maxId = 0L;
+			while(!cancelled_) {
+				final Either<HttpFailure,TweetSearchResults> result =
+					client_.searchTweets(query_, SEARCH_COUNT, maxId, sinceId,
+						null);
+				if(!result.success()) {
+					// Leave the watermark alone, the next poll will ask for
+					// all of it again.
+					listener_.onFailure(query_, result.left());
+					return false;
+				}
+				final List<Tweet> results = result.right().getResults();
+				long lowest = Long.MAX_VALUE;
+				for(final Tweet tweet : results) {
+					final long id = Long.parseLong(tweet.getId());
+					// The API should have done this already, but make
+					// sure nothing is ever emitted twice.
+					if(id > sinceId && (maxId <= 0L || id <= maxId)) {
+						tweets.add(tweet);
+						highest = Math.max(highest, id);
+						lowest = Math.min(lowest, id);
+					}
+				}
+				// Search hands back short pages even when there's more, so
+				// only an empty page is the last one, as with timelines.
+				// With nothing to page back to, only the latest page is
+				// wanted.
+				if(lowest == Long.MAX_VALUE || sinceId <= 0L) {
+					break;
+				}
+				// Pages come back newest first, so the next (older) page
+				// keeps the feed in order.
+				maxId = lowest - 1L;
+			}
+			if(tweets.isEmpty()) {
+				emptyPolls_.incrementAndGet();
+				return false;
+			}
+			sinceId_ = highest;
+			if(!cancelled_) {
+				listener_.onTweets(query_, tweets);
+			}
+			return true;
+		}
+
+	}
+
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.ratelimit;
+
+/**
+ * An immutable snapshot of a single rate limit window, as last reported
+ * by the API for an endpoint and token.
+ */
+public final class RateLimitStatus {
+
+	private final int limit_;
+	private final int remaining_;
+	private final long resetAt_;
+
+	public RateLimitStatus(final int limit, final int remaining,
+		final long resetAt) {
+		limit_ = limit;
+		remaining_ = remaining;
+		resetAt_ = resetAt;
+	}
+
+	/**
+	 * The number of requests allowed in the window, or -1 if unknown.
+	 */
+	public int getLimit() {
+		return limit_;
+	}
+
+	/**
+	 * The number of requests left in the window, or -1 if unknown.
+	 */
+	public int getRemaining() {
+		return remaining_;
+	}
+
+	/**
+	 * When the window resets, in milliseconds since the epoch, or 0 if
+	 * unknown.
+	 */
+	public long getResetAt() {
+		return resetAt_;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("(limit=%s, remaining=%s, resetAt=%s)",
+			limit_, remaining_, resetAt_);
+	}
+
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.ratelimit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+
+import com.kolich.twitter.exceptions.TwitterApiRateLimitException;
+
+/**
+ * Tracks the Twitter API rate limit windows, per endpoint and per OAuth
+ * token, from the x-rate-limit-* headers on every response, and holds
+ * back outgoing requests once a window is exhausted instead of letting
+ * them go out only to come back with a 429.
+ *
+ * Each request reserves one unit of its window before it's sent, so
+ * concurrent callers can't all fire on the last remaining unit.  When a
+ * window is exhausted, callers wait for it to reset for up to maxWait
+ * and are then rejected with a {@link TwitterApiRateLimitException}.
+ * A maxWait of zero fails fast without waiting at all.
+ */
+public final class TwitterApiRateLimiter {
+
+	public static final String RATE_LIMIT_LIMIT_HEADER = "x-rate-limit-limit";
+	public static final String RATE_LIMIT_REMAINING_HEADER = "x-rate-limit-remaining";
+	public static final String RATE_LIMIT_RESET_HEADER = "x-rate-limit-reset";
+
+	private static final int SC_TOO_MANY_REQUESTS = 429;
+
+	/**
+	 * If the API says we're out of requests but doesn't say when the
+	 * window resets, assume a full 15-minute window.
+	 */
+	private static final long DEFAULT_WINDOW_MS = TimeUnit.MINUTES.toMillis(15L);
+
+	private final ConcurrentMap<String,Window> windows_;
+	private final long maxWaitMs_;
+
+	public TwitterApiRateLimiter(final long maxWait, final TimeUnit unit) {
+		checkArgument(maxWait >= 0L, "Max wait cannot be negative: %s",
+			maxWait);
+		checkNotNull(unit, "Time unit cannot be null.");
+		windows_ = new ConcurrentHashMap<String,Window>();
+		maxWaitMs_ = unit.toMillis(maxWait);
+	}
+
+	/**
+	 * Never waits, requests against an exhausted window are rejected
+	 * locally without ever being sent.
+	 */
+	public TwitterApiRateLimiter() {
+		this(0L, TimeUnit.MILLISECONDS);
+	}
+
+	private static final class Window {
+		private int limit_ = -1;
+		private int remaining_ = -1;
+		private long resetAt_ = 0L;
+		private synchronized RateLimitStatus toStatus() {
+			return new RateLimitStatus(limit_, remaining_, resetAt_);
+		}
+	}
+
+	/**
+	 * Reserves one request against the window for the given endpoint and
+	 * token, waiting for it to reset if it's exhausted.
+	 * @throws TwitterApiRateLimitException if the window won't reset
+	 * within maxWait
+	 */
+	public void acquire(final String endpoint, final String token)
+		throws InterruptedException {
+		final Window w = getWindow(endpoint, token);
+		final long deadline = System.currentTimeMillis() + maxWaitMs_;
+		synchronized(w) {
+			while(true) {
+				final long now = System.currentTimeMillis();
+				if(w.resetAt_ != 0L && now >= w.resetAt_) {
+					// The window has reset, start over from the last known
+					// limit until the next response tells us otherwise.
+					w.remaining_ = w.limit_;
+					w.resetAt_ = 0L;
+				}
+				if(w.remaining_ != 0) {
+					// Negative means we don't know, let it through.
+					if(w.remaining_ > 0) {
+						w.remaining_--;
+					}
+					return;
+				}
+				if(w.resetAt_ > deadline) {
+					throw new TwitterApiRateLimitException("Rate limit " +
+						"exhausted for " + endpoint + ", resets at " +
+						w.resetAt_, w.resetAt_);
+				}
+				w.wait(Math.max(1L, w.resetAt_ - now));
+			}
+		}
+	}
+
+	/**
+	 * Updates the window for the given endpoint and token from the rate
+	 * limit headers on the response.
+	 */
+	public void update(final String endpoint, final String token,
+		final HttpResponse response) {
+		final int limit = (int)getLongHeader(response, RATE_LIMIT_LIMIT_HEADER);
+		final int remaining = (int)getLongHeader(response,
+			RATE_LIMIT_REMAINING_HEADER);
+		// Epoch seconds.
+		final long reset = getLongHeader(response, RATE_LIMIT_RESET_HEADER);
+		final boolean limited = (response.getStatusLine().getStatusCode() ==
+			SC_TOO_MANY_REQUESTS);
+		if(remaining < 0 && !limited) {
+			// Not a rate limited resource, nothing to track.
+			return;
+		}
+		final Window w = getWindow(endpoint, token);
+		synchronized(w) {
+			final long resetAt = (reset > 0L) ? reset * 1000L :
+				System.currentTimeMillis() + DEFAULT_WINDOW_MS;
+			if(limit >= 0) {
+				w.limit_ = limit;
+			}
+			if(limited) {
+				w.remaining_ = 0;
+			} else if(resetAt == w.resetAt_ && w.remaining_ >= 0) {
+				// Same window, other requests may have reserved units
+				// since this response was generated so keep the lower.
+				w.remaining_ = Math.min(w.remaining_, remaining);
+			} else {
+				w.remaining_ = remaining;
+			}
+			w.resetAt_ = resetAt;
+			if(w.remaining_ != 0) {
+				w.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Returns the last known state of the window for the given endpoint
+	 * and token, or null if we've never seen it.
+	 */
+	public RateLimitStatus getStatus(final String endpoint,
+		final String token) {
+		final Window w = windows_.get(getKey(endpoint, token));
+		return (w == null) ? null : w.toStatus();
+	}
+
+	private final Window getWindow(final String endpoint,
+		final String token) {
+		final String key = getKey(endpoint, token);
+		Window w = windows_.get(key);
+		if(w == null) {
+			final Window newWindow = new Window();
+			w = windows_.putIfAbsent(key, newWindow);
+			if(w == null) {
+				w = newWindow;
+			}
+		}
+		return w;
+	}
+
+	private static final String getKey(final String endpoint,
+		final String token) {
+		return endpoint + " " + token;
+	}
+
+	private static final long getLongHeader(final HttpResponse response,
+		final String name) {
+		final Header header = response.getFirstHeader(name);
+		if(header == null) {
+			return -1L;
+		}
+		try {
+			return Long.parseLong(header.getValue().trim());
+		} catch (NumberFormatException e) {
+			return -1L;
+		}
+	}
+
+}
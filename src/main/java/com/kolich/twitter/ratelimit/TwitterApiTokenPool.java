@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.ratelimit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import oauth.signpost.OAuthConsumer;
+
+import com.kolich.twitter.signpost.TwitterApiCommonsHttpOAuthConsumer;
+import com.kolich.twitter.signpost.TwitterApiOAuthSigner;
+
+/**
+ * A pool of authorized user tokens that spreads requests across all of
+ * them, multiplying the effective rate limit by the number of tokens.
+ *
+ * For each request, picks the token with the most remaining quota for the
+ * target endpoint, as last reported to the shared {@link TwitterApiRateLimiter}.
+ * Tokens whose window is exhausted are skipped until it resets.  There is
+ * no global lock: each scan starts at a rotating offset so concurrent
+ * callers that see the same quotas spread across tokens instead of
+ * piling onto one, and the limiter's per-window reservations keep the
+ * quotas the next caller sees up to date.
+ */
+public final class TwitterApiTokenPool {
+
+	private final TwitterApiRateLimiter rateLimiter_;
+	private final TwitterApiCommonsHttpOAuthConsumer[] consumers_;
+	/**
+	 * A pre-built signer for each of the pooled consumers, by index.
+	 */
+	private final TwitterApiOAuthSigner[] signers_;
+	private final AtomicInteger next_;
+
+	public TwitterApiTokenPool(final TwitterApiRateLimiter rateLimiter,
+		final List<TwitterApiCommonsHttpOAuthConsumer> consumers) {
+		checkNotNull(rateLimiter, "Rate limiter cannot be null.");
+		checkNotNull(consumers, "Consumers cannot be null.");
+		checkArgument(!consumers.isEmpty(), "Token pool cannot be empty.");
+		for(final TwitterApiCommonsHttpOAuthConsumer c : consumers) {
+			checkNotNull(c.getToken(), "Every pooled consumer must have " +
+				"a token: %s", c);
+		}
+		rateLimiter_ = rateLimiter;
+		consumers_ = consumers.toArray(
+			new TwitterApiCommonsHttpOAuthConsumer[consumers.size()]);
+		signers_ = new TwitterApiOAuthSigner[consumers_.length];
+		for(int i = 0; i < consumers_.length; i++) {
+			final TwitterApiCommonsHttpOAuthConsumer c = consumers_[i];
+			signers_[i] = new TwitterApiOAuthSigner(c.getConsumerKey(),
+				c.getConsumerSecret(), c.getToken(), c.getTokenSecret());
+		}
+		next_ = new AtomicInteger();
+	}
+
+	public TwitterApiRateLimiter getRateLimiter() {
+		return rateLimiter_;
+	}
+
+	public int size() {
+		return consumers_.length;
+	}
+
+	/**
+	 * Returns the consumer with the most remaining quota for the given
+	 * endpoint.  If every token is exhausted, returns the one whose
+	 * window resets soonest.
+	 */
+	public TwitterApiCommonsHttpOAuthConsumer select(final String endpoint) {
+		final int n = consumers_.length;
+		final int start = (next_.getAndIncrement() & Integer.MAX_VALUE) % n;
+		final long now = System.currentTimeMillis();
+		TwitterApiCommonsHttpOAuthConsumer best = null, soonest = null;
+		long bestRemaining = 0L, soonestReset = Long.MAX_VALUE;
+		for(int i = 0; i < n; i++) {
+			final TwitterApiCommonsHttpOAuthConsumer c =
+				consumers_[(start + i) % n];
+			final RateLimitStatus status = rateLimiter_.getStatus(endpoint,
+				c.getToken());
+			final long remaining = getRemaining(status, now);
+			if(remaining == 0L) {
+				// Out of rotation until its window resets.
+				if(status.getResetAt() < soonestReset) {
+					soonest = c;
+					soonestReset = status.getResetAt();
+				}
+			} else if(remaining > bestRemaining) {
+				best = c;
+				bestRemaining = remaining;
+			}
+		}
+		return (best != null) ? best : soonest;
+	}
+
+	/**
+	 * Returns the pre-built, thread-safe signer for the given pooled
+	 * consumer, or null if the consumer isn't part of this pool.  The
+	 * signer is built from the consumer's credentials when the pool is
+	 * created; changing a pooled consumer's token afterwards isn't
+	 * supported.
+	 */
+	public TwitterApiOAuthSigner getSigner(final OAuthConsumer consumer) {
+		for(int i = 0; i < consumers_.length; i++) {
+			if(consumers_[i] == consumer) {
+				return signers_[i];
+			}
+		}
+		return null;
+	}
+
+	private static final long getRemaining(final RateLimitStatus status,
+		final long now) {
+		if(status == null || status.getRemaining() < 0) {
+			// Never used, or not a rate limited resource.
+			return Long.MAX_VALUE;
+		} else if(status.getResetAt() != 0L && status.getResetAt() <= now) {
+			// The window has reset since we last heard about it.
+			return (status.getLimit() < 0) ? Long.MAX_VALUE :
+				Math.max(1L, status.getLimit());
+		}
+		return status.getRemaining();
+	}
+
+}
@@ -0,0 +1,452 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.signpost;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.kolich.common.DefaultCharacterEncoding.UTF_8;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.util.EntityUtils;
+
+import com.kolich.twitter.exceptions.TwitterApiException;
+
+/**
+ * A thread-safe OAuth 1.0a HMAC-SHA1 request signer for a single set of
+ * credentials.  Everything that doesn't change from request to request,
+ * the percent-encoded consumer key and token and the HMAC key, is computed
+ * once up front, so unlike a Signpost consumer there's nothing to allocate
+ * or lock per request beyond the signature itself.
+ *
+ * Each thread gets its own initialized {@link Mac} and its own buffers for
+ * building the signature base string, so concurrent callers never contend
+ * on anything.
+ */
+public final class TwitterApiOAuthSigner {
+
+	private static final String AUTHORIZATION_HEADER = "Authorization";
+	private static final String FORM_URL_ENCODED_CONTENT_TYPE =
+		"application/x-www-form-urlencoded";
+
+	private static final String HMAC_SHA1_ALGORITHM = "HmacSHA1";
+	private static final String OAUTH_SIGNATURE_METHOD = "HMAC-SHA1";
+	private static final String OAUTH_VERSION = "1.0";
+
+	private static final String OAUTH_CONSUMER_KEY_PARAM = "oauth_consumer_key";
+	private static final String OAUTH_NONCE_PARAM = "oauth_nonce";
+	private static final String OAUTH_SIGNATURE_PARAM = "oauth_signature";
+	private static final String OAUTH_SIGNATURE_METHOD_PARAM = "oauth_signature_method";
+	private static final String OAUTH_TIMESTAMP_PARAM = "oauth_timestamp";
+	private static final String OAUTH_TOKEN_PARAM = "oauth_token";
+	private static final String OAUTH_VERSION_PARAM = "oauth_version";
+
+	private static final Charset UTF_8_CHARSET = Charset.forName(UTF_8);
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * Buffers larger than this (a long status update, say) aren't kept
+	 * around after the request that needed them.
+	 */
+	private static final int MAX_RETAINED_BUFFER_SIZE = 16 * 1024;
+
+	/**
+	 * Per-thread scratch space for building the signature base string.
+	 */
+	private static final class Buffers {
+		private StringBuilder params_ = new StringBuilder(512);
+		private StringBuilder base_ = new StringBuilder(1024);
+		private byte[] bytes_ = new byte[1024];
+		private final List<String[]> pairs_ = new ArrayList<String[]>();
+		private void reset() {
+			if(params_.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+				params_ = new StringBuilder(512);
+			}
+			if(base_.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+				base_ = new StringBuilder(1024);
+			}
+			if(bytes_.length > MAX_RETAINED_BUFFER_SIZE) {
+				bytes_ = new byte[1024];
+			}
+			params_.setLength(0);
+			base_.setLength(0);
+			pairs_.clear();
+		}
+	}
+
+	private static final ThreadLocal<Buffers> buffers__ =
+		new ThreadLocal<Buffers>() {
+		@Override
+		protected Buffers initialValue() {
+			return new Buffers();
+		}
+	};
+
+	private static final Comparator<String[]> PARAMETER_ORDER =
+		new Comparator<String[]>() {
+		@Override
+		public int compare(final String[] a, final String[] b) {
+			final int c = a[0].compareTo(b[0]);
+			return (c != 0) ? c : a[1].compareTo(b[1]);
+		}
+	};
+
+	private final String consumerKey_;
+	private final String token_;
+
+	private final String encodedConsumerKey_;
+	private final String encodedToken_;
+	private final SecretKeySpec keySpec_;
+
+	/**
+	 * Mac instances aren't thread-safe, and getting and initializing one
+	 * costs about as much as computing the signature itself.
+	 */
+	private final ThreadLocal<Mac> mac_;
+
+	/**
+	 * @param token the user's access token, may be null when signing
+	 * requests that are part of the OAuth dance itself
+	 */
+	public TwitterApiOAuthSigner(final String consumerKey,
+		final String consumerSecret, final String token,
+		final String tokenSecret) {
+		checkNotNull(consumerKey, "OAuth consumer key cannot be null.");
+		checkNotNull(consumerSecret, "OAuth consumer key secret cannot be null.");
+		consumerKey_ = consumerKey;
+		token_ = (token == null || token.isEmpty()) ? null : token;
+		encodedConsumerKey_ = percentEncode(consumerKey);
+		encodedToken_ = (token_ == null) ? null : percentEncode(token_);
+		keySpec_ = new SecretKeySpec((percentEncode(consumerSecret) + "&" +
+			percentEncode((tokenSecret == null) ? "" : tokenSecret))
+				.getBytes(UTF_8_CHARSET), HMAC_SHA1_ALGORITHM);
+		mac_ = new ThreadLocal<Mac>() {
+			@Override
+			protected Mac initialValue() {
+				try {
+					final Mac mac = Mac.getInstance(HMAC_SHA1_ALGORITHM);
+					mac.init(keySpec_);
+					return mac;
+				} catch (Exception e) {
+					throw new TwitterApiException("Failed to initialize " +
+						HMAC_SHA1_ALGORITHM + " Mac.", e);
+				}
+			}
+		};
+	}
+
+	public String getConsumerKey() {
+		return consumerKey_;
+	}
+
+	/**
+	 * May be null.
+	 */
+	public String getToken() {
+		return token_;
+	}
+
+	/**
+	 * Signs the request, adding an OAuth Authorization header.  The
+	 * request URI (and form body, if any) must be final.
+	 */
+	public void sign(final HttpRequestBase request) throws Exception {
+		sign(request, null, generateNonce(),
+			System.currentTimeMillis() / 1000L);
+	}
+
+	/**
+	 * Signs the request using the given, decoded, query parameters
+	 * instead of parsing them back out of the request URI.  Meant for
+	 * callers that built the URI with a
+	 * {@link org.apache.http.client.utils.URIBuilder} and still have
+	 * its {@link org.apache.http.client.utils.URIBuilder#getQueryParams()}
+	 * on hand.
+	 */
+	public void sign(final HttpRequestBase request,
+		final List<NameValuePair> queryParams) throws Exception {
+		sign(request, queryParams, generateNonce(),
+			System.currentTimeMillis() / 1000L);
+	}
+
+	/**
+	 * Signs the request with the given nonce and timestamp, returning
+	 * the signature.
+	 */
+	public String sign(final HttpRequestBase request, final String nonce,
+		final long timestamp) throws Exception {
+		return sign(request, null, nonce, timestamp);
+	}
+
+	/**
+	 * Signs the request with the given nonce and timestamp, returning
+	 * the signature.  If queryParams is null, the query parameters are
+	 * taken from the request URI.
+	 */
+	public String sign(final HttpRequestBase request,
+		final List<NameValuePair> queryParams, final String nonce,
+		final long timestamp) throws Exception {
+		final Buffers buffers = buffers__.get();
+		buffers.reset();
+		final String encodedNonce = percentEncode(nonce);
+		final String encodedTimestamp = Long.toString(timestamp);
+		// Every query and form body parameter, plus the OAuth parameters,
+		// percent-encoded and sorted.
+		final List<String[]> params = buffers.pairs_;
+		if(queryParams != null) {
+			addEncoded(params, queryParams);
+		} else {
+			addEncoded(params, request.getURI().getRawQuery());
+		}
+		addEncoded(params, getFormBody(request));
+		params.add(new String[]{OAUTH_CONSUMER_KEY_PARAM, encodedConsumerKey_});
+		params.add(new String[]{OAUTH_NONCE_PARAM, encodedNonce});
+		params.add(new String[]{OAUTH_SIGNATURE_METHOD_PARAM, OAUTH_SIGNATURE_METHOD});
+		params.add(new String[]{OAUTH_TIMESTAMP_PARAM, encodedTimestamp});
+		if(encodedToken_ != null) {
+			params.add(new String[]{OAUTH_TOKEN_PARAM, encodedToken_});
+		}
+		params.add(new String[]{OAUTH_VERSION_PARAM, OAUTH_VERSION});
+		Collections.sort(params, PARAMETER_ORDER);
+		final StringBuilder normalized = buffers.params_;
+		for(int i = 0, l = params.size(); i < l; i++) {
+			if(i > 0) {
+				normalized.append('&');
+			}
+			final String[] p = params.get(i);
+			normalized.append(p[0]).append('=').append(p[1]);
+		}
+		// METHOD&url&params
+		final StringBuilder base = buffers.base_
+			.append(request.getMethod()).append('&');
+		appendNormalizedUrl(request.getURI(), base);
+		base.append('&');
+		percentEncode(normalized, base);
+		// Everything in the base string has been percent-encoded, so it's
+		// plain ASCII and can be copied into the byte buffer as-is.
+		final int length = base.length();
+		if(buffers.bytes_.length < length) {
+			buffers.bytes_ = new byte[Math.max(length,
+				buffers.bytes_.length * 2)];
+		}
+		final byte[] bytes = buffers.bytes_;
+		for(int i = 0; i < length; i++) {
+			bytes[i] = (byte)base.charAt(i);
+		}
+		final Mac mac = mac_.get();
+		mac.update(bytes, 0, length);
+		final String signature = Base64.encodeBase64String(mac.doFinal());
+		final StringBuilder header = new StringBuilder(256).append("OAuth ");
+		appendHeaderParam(header, OAUTH_CONSUMER_KEY_PARAM, encodedConsumerKey_).append(", ");
+		appendHeaderParam(header, OAUTH_NONCE_PARAM, encodedNonce).append(", ");
+		appendHeaderParam(header, OAUTH_SIGNATURE_PARAM, percentEncode(signature)).append(", ");
+		appendHeaderParam(header, OAUTH_SIGNATURE_METHOD_PARAM, OAUTH_SIGNATURE_METHOD).append(", ");
+		appendHeaderParam(header, OAUTH_TIMESTAMP_PARAM, encodedTimestamp).append(", ");
+		if(encodedToken_ != null) {
+			appendHeaderParam(header, OAUTH_TOKEN_PARAM, encodedToken_).append(", ");
+		}
+		appendHeaderParam(header, OAUTH_VERSION_PARAM, OAUTH_VERSION);
+		request.setHeader(AUTHORIZATION_HEADER, header.toString());
+		return signature;
+	}
+
+	/**
+	 * The raw, still encoded, form body of the request, or null if it
+	 * doesn't have one.
+	 */
+	private static final String getFormBody(final HttpRequestBase request)
+		throws Exception {
+		if(request instanceof HttpEntityEnclosingRequest) {
+			final HttpEntity entity =
+				((HttpEntityEnclosingRequest)request).getEntity();
+			if(entity != null && entity.getContentType() != null &&
+				entity.getContentType().getValue().startsWith(
+					FORM_URL_ENCODED_CONTENT_TYPE)) {
+				return EntityUtils.toString(entity, UTF_8);
+			}
+		}
+		return null;
+	}
+
+	private static final void addEncoded(final List<String[]> params,
+		final List<NameValuePair> pairs) {
+		for(int i = 0, l = pairs.size(); i < l; i++) {
+			final NameValuePair pair = pairs.get(i);
+			params.add(new String[]{percentEncode(pair.getName()),
+				percentEncode((pair.getValue() == null) ? "" : pair.getValue())});
+		}
+	}
+
+	/**
+	 * Splits a raw application/x-www-form-urlencoded string into its
+	 * name/value pairs and re-encodes each one the way OAuth wants them.
+	 * Deliberately not {@link org.apache.http.client.utils.URLEncodedUtils},
+	 * which is several times slower than the rest of signing combined.
+	 */
+	private static final void addEncoded(final List<String[]> params,
+		final String form) throws UnsupportedEncodingException {
+		if(form == null || form.isEmpty()) {
+			return;
+		}
+		int start = 0;
+		while(start <= form.length()) {
+			int end = form.indexOf('&', start);
+			if(end < 0) {
+				end = form.length();
+			}
+			if(end > start) {
+				final int eq = form.indexOf('=', start);
+				final String name, value;
+				if(eq < 0 || eq > end) {
+					name = form.substring(start, end);
+					value = "";
+				} else {
+					name = form.substring(start, eq);
+					value = form.substring(eq + 1, end);
+				}
+				params.add(new String[]{percentEncode(decode(name)),
+					percentEncode(decode(value))});
+			}
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Form decodes s, '+' is a space and %XX sequences are UTF-8 bytes.
+	 */
+	private static final String decode(final String s)
+		throws UnsupportedEncodingException {
+		if(s.indexOf('%') < 0 && s.indexOf('+') < 0) {
+			return s;
+		}
+		final byte[] bytes = new byte[s.length()];
+		int n = 0;
+		for(int i = 0, l = s.length(); i < l; i++) {
+			final char c = s.charAt(i);
+			if(c == '+') {
+				bytes[n++] = ' ';
+			} else if(c == '%' && i + 2 < l &&
+				Character.digit(s.charAt(i + 1), 16) >= 0 &&
+				Character.digit(s.charAt(i + 2), 16) >= 0) {
+				bytes[n++] = (byte)((Character.digit(s.charAt(i + 1), 16) << 4) |
+					Character.digit(s.charAt(i + 2), 16));
+				i += 2;
+			} else if(c < 0x80) {
+				bytes[n++] = (byte)c;
+			} else {
+				// Shouldn't be in an encoded string, but let the JDK
+				// deal with it if it is.
+				return URLDecoder.decode(s, UTF_8);
+			}
+		}
+		return new String(bytes, 0, n, UTF_8_CHARSET);
+	}
+
+	private static final StringBuilder appendHeaderParam(
+		final StringBuilder sb, final String name, final String encodedValue) {
+		return sb.append(name).append("=\"").append(encodedValue).append('"');
+	}
+
+	/**
+	 * scheme://host[:port]/path, lower cased, without the default port,
+	 * query or fragment.
+	 */
+	private static final void appendNormalizedUrl(final URI uri,
+		final StringBuilder sb) {
+		final String scheme = uri.getScheme().toLowerCase(Locale.ENGLISH);
+		percentEncode(scheme, sb).append("%3A%2F%2F");
+		percentEncode(uri.getHost().toLowerCase(Locale.ENGLISH), sb);
+		final int port = uri.getPort();
+		if(port != -1 && !(("http".equals(scheme) && port == 80) ||
+			("https".equals(scheme) && port == 443))) {
+			sb.append("%3A").append(port);
+		}
+		final String path = uri.getRawPath();
+		percentEncode((path == null || path.isEmpty()) ? "/" : path, sb);
+	}
+
+	private static final String generateNonce() {
+		return Long.toString(ThreadLocalRandom.current().nextLong() &
+			Long.MAX_VALUE);
+	}
+
+	public static final String percentEncode(final String s) {
+		return percentEncode(s, new StringBuilder(s.length() + 16))
+			.toString();
+	}
+
+	/**
+	 * RFC 3986 percent-encoding, as OAuth requires: only the unreserved
+	 * characters are left alone, everything else is UTF-8 %XX encoded.
+	 */
+	public static final StringBuilder percentEncode(final CharSequence s,
+		final StringBuilder sb) {
+		for(int i = 0, l = s.length(); i < l; i++) {
+			final char c = s.charAt(i);
+			if((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') ||
+				(c >= '0' && c <= '9') || c == '-' || c == '.' ||
+				c == '_' || c == '~') {
+				sb.append(c);
+			} else if(c < 0x80) {
+				appendEscaped(sb, c);
+			} else {
+				// Slow path for anything outside of ASCII.
+				final int cp = Character.codePointAt(s, i);
+				final int n = Character.charCount(cp);
+				for(final byte b : s.subSequence(i, i + n).toString()
+					.getBytes(UTF_8_CHARSET)) {
+					appendEscaped(sb, b & 0xFF);
+				}
+				i += n - 1;
+			}
+		}
+		return sb;
+	}
+
+	private static final void appendEscaped(final StringBuilder sb,
+		final int b) {
+		sb.append('%').append(HEX[b >> 4]).append(HEX[b & 0x0F]);
+	}
+
+}
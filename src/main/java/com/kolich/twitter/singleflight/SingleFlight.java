@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.singleflight;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Collapses concurrent calls with the same key into a single call.  The
+ * first caller for a key runs it, everyone else that shows up with the
+ * same key while it's still running waits for, and gets, the very same
+ * result.  Nothing is remembered once the call completes; this is not
+ * a cache.
+ *
+ * Since the result is shared, it should be immutable, or copied by the
+ * caller before being handed out.
+ */
+public final class SingleFlight {
+
+	private final ConcurrentMap<String,SettableFuture<Object>> inFlight_;
+	private final AtomicLong calls_;
+	private final AtomicLong coalesced_;
+
+	public SingleFlight() {
+		inFlight_ = new ConcurrentHashMap<String,SettableFuture<Object>>();
+		calls_ = new AtomicLong();
+		coalesced_ = new AtomicLong();
+	}
+
+	@SuppressWarnings("unchecked")
+	public <V> V execute(final String key, final Supplier<V> call) {
+		checkNotNull(key, "Key cannot be null.");
+		final SettableFuture<Object> future = SettableFuture.create();
+		final SettableFuture<Object> existing =
+			inFlight_.putIfAbsent(key, future);
+		if(existing != null) {
+			// Someone else is already on it.
+			coalesced_.incrementAndGet();
+			try {
+				return (V)Uninterruptibles.getUninterruptibly(existing);
+			} catch (ExecutionException e) {
+				throw Throwables.propagate(e.getCause());
+			}
+		}
+		calls_.incrementAndGet();
+		try {
+			final V result = call.get();
+			future.set(result);
+			return result;
+		} catch (RuntimeException e) {
+			future.setException(e);
+			throw e;
+		} catch (Error e) {
+			future.setException(e);
+			throw e;
+		} finally {
+			inFlight_.remove(key, future);
+		}
+	}
+
+	/**
+	 * The number of calls actually made.
+	 */
+	public long getCalls() {
+		return calls_.get();
+	}
+
+	/**
+	 * The number of callers that piggybacked on someone else's call.
+	 */
+	public long getCoalesced() {
+		return coalesced_.get();
+	}
+
+	/**
+	 * The number of calls running right now.
+	 */
+	public int getInFlight() {
+		return inFlight_.size();
+	}
+
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.store;
+
+/**
+ * An open addressing, linear probing map from non-zero longs to
+ * non-negative ints, with no boxing and two flat arrays for storage.
+ * Zero is the empty key marker.  Nothing is ever removed.
+ */
+final class LongIntHashMap {
+
+	static final int NOT_FOUND = -1;
+
+	private long[] keys_;
+	private int[] values_;
+	private int mask_;
+	private int size_;
+
+	LongIntHashMap(final int expected) {
+		allocate(tableSizeFor(expected));
+	}
+
+	int get(final long key) {
+		for(int i = mix(key) & mask_; ; i = (i + 1) & mask_) {
+			final long k = keys_[i];
+			if(k == key) {
+				return values_[i];
+			} else if(k == 0L) {
+				return NOT_FOUND;
+			}
+		}
+	}
+
+	/**
+	 * Maps key to value, unless it's already mapped.
+	 * @return the existing value, or {@link #NOT_FOUND} if there wasn't one
+	 */
+	int putIfAbsent(final long key, final int value) {
+		int i = mix(key) & mask_;
+		for(long k; (k = keys_[i]) != 0L; i = (i + 1) & mask_) {
+			if(k == key) {
+				return values_[i];
+			}
+		}
+		keys_[i] = key;
+		values_[i] = value;
+		// Keep the table at most half full, probes stay short.
+		if(++size_ > (mask_ + 1) >>> 1) {
+			rehash();
+		}
+		return NOT_FOUND;
+	}
+
+	int size() {
+		return size_;
+	}
+
+	private void rehash() {
+		final long[] keys = keys_;
+		final int[] values = values_;
+		allocate(keys.length << 1);
+		for(int j = 0; j < keys.length; j++) {
+			final long key = keys[j];
+			if(key != 0L) {
+				int i = mix(key) & mask_;
+				while(keys_[i] != 0L) {
+					i = (i + 1) & mask_;
+				}
+				keys_[i] = key;
+				values_[i] = values[j];
+			}
+		}
+	}
+
+	private void allocate(final int capacity) {
+		keys_ = new long[capacity];
+		values_ = new int[capacity];
+		mask_ = capacity - 1;
+	}
+
+	private static final int tableSizeFor(final int expected) {
+		int capacity = 16;
+		while(capacity < expected * 2 && capacity < (1 << 30)) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+
+	/**
+	 * Snowflake ids share their low bits (sequence, worker) with lots of
+	 * other ids, so spread all 64 bits around before masking.
+	 */
+	private static final int mix(final long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		h ^= (h >>> 32);
+		return (int)(h ^ (h >>> 16));
+	}
+
+}
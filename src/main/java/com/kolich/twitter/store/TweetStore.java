@@ -0,0 +1,445 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.store;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Charsets;
+import com.kolich.twitter.entities.CompactTweet;
+import com.kolich.twitter.entities.Tweet;
+import com.kolich.twitter.entities.TwitterEntityCallback;
+
+/**
+ * A columnar, append-only store for large numbers of tweets.  Ids and
+ * timestamps live in primitive arrays, one slot per row, and text is
+ * encoded as UTF-8 into large direct buffers off of the heap, so a
+ * million tweets are a handful of arrays and buffers rather than
+ * millions of objects for the garbage collector to trace.
+ *
+ * Tweets are looked up by id in constant time through an open addressing
+ * hash of primitive longs, and scanned by creation time through an index
+ * that's sorted lazily, merging in whatever was appended since the last
+ * scan.  Neither materializes a {@link Tweet}; both hand out a
+ * {@link TweetView} over the row instead.
+ *
+ * Fill it straight from the streaming client methods with
+ * {@link #getTweetCallback()} or {@link #getCompactTweetCallback()}.
+ * Tweets already in the store, by id, are ignored.
+ *
+ * Not thread-safe.  Confine a store to one thread, or guard it
+ * externally, as you would a {@link java.util.ArrayList}.
+ */
+public final class TweetStore {
+
+	private static final int DEFAULT_INITIAL_CAPACITY = 1024;
+	private static final int DEFAULT_ARENA_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	private final int chunkSize_;
+	private final CharsetEncoder encoder_;
+
+	private long[] ids_;
+	private long[] createdAt_;
+	/**
+	 * Where each row's text starts: the arena chunk in the high 32 bits,
+	 * the offset within it in the low 32.
+	 */
+	private long[] textAddresses_;
+	private int[] textLengths_;
+	private int size_;
+
+	private final List<ByteBuffer> arena_;
+	private ByteBuffer chunk_;
+	private long textBytes_;
+
+	private final LongIntHashMap rowsById_;
+
+	/**
+	 * Rows in creation time order, oldest first, ties in insertion order.
+	 * Only the first indexed_ rows are in it.
+	 */
+	private int[] byTime_;
+	private int indexed_;
+
+	public TweetStore(final int initialCapacity, final int arenaChunkSize) {
+		checkArgument(initialCapacity > 0, "Initial capacity must be " +
+			"greater than zero: %s", initialCapacity);
+		checkArgument(arenaChunkSize > 0, "Arena chunk size must be " +
+			"greater than zero: %s", arenaChunkSize);
+		chunkSize_ = arenaChunkSize;
+		encoder_ = Charsets.UTF_8.newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		ids_ = new long[initialCapacity];
+		createdAt_ = new long[initialCapacity];
+		textAddresses_ = new long[initialCapacity];
+		textLengths_ = new int[initialCapacity];
+		byTime_ = new int[initialCapacity];
+		arena_ = new ArrayList<ByteBuffer>();
+		rowsById_ = new LongIntHashMap(initialCapacity);
+	}
+
+	public TweetStore(final int initialCapacity) {
+		this(initialCapacity, DEFAULT_ARENA_CHUNK_SIZE);
+	}
+
+	public TweetStore() {
+		this(DEFAULT_INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Appends a tweet, unless one with the same id is already here.
+	 * @return the new row, or -1 if the id was already in the store
+	 */
+	public int add(final long id, final long createdAt,
+		final CharSequence text) {
+		checkArgument(id != 0L, "Tweet id cannot be zero.");
+		final int row = size_;
+		if(rowsById_.putIfAbsent(id, row) != LongIntHashMap.NOT_FOUND) {
+			return -1;
+		}
+		if(row == ids_.length) {
+			grow();
+		}
+		ids_[row] = id;
+		createdAt_[row] = createdAt;
+		appendText(row, (text != null) ? text : "");
+		size_++;
+		return row;
+	}
+
+	public int add(final CompactTweet tweet) {
+		checkNotNull(tweet, "Tweet cannot be null.");
+		return add(tweet.getId(), tweet.getCreatedAt(), tweet.getText());
+	}
+
+	public int add(final Tweet tweet) {
+		checkNotNull(tweet, "Tweet cannot be null.");
+		checkNotNull(tweet.getId(), "Tweet id cannot be null.");
+		return add(Long.parseLong(tweet.getId()), tweet.getCreatedAtMillis(),
+			tweet.getText());
+	}
+
+	/**
+	 * @return how many of the tweets were new to the store
+	 */
+	public int addAll(final Iterable<Tweet> tweets) {
+		checkNotNull(tweets, "Tweets cannot be null.");
+		int added = 0;
+		for(final Tweet tweet : tweets) {
+			if(add(tweet) >= 0) {
+				added++;
+			}
+		}
+		return added;
+	}
+
+	/**
+	 * A callback that adds every tweet it's handed to this store, for
+	 * the streaming getTweets and searchTweets client methods.
+	 */
+	public TwitterEntityCallback<Tweet> getTweetCallback() {
+		return new TwitterEntityCallback<Tweet>() {
+			@Override
+			public void onEntity(final Tweet tweet) {
+				add(tweet);
+			}
+		};
+	}
+
+	/**
+	 * A callback that adds every compact tweet it's handed to this store,
+	 * for {@link com.kolich.twitter.TwitterApiClient#getCompactTweets}.
+	 */
+	public TwitterEntityCallback<CompactTweet> getCompactTweetCallback() {
+		return new TwitterEntityCallback<CompactTweet>() {
+			@Override
+			public void onEntity(final CompactTweet tweet) {
+				add(tweet);
+			}
+		};
+	}
+
+	public int size() {
+		return size_;
+	}
+
+	/**
+	 * The total size of all text in the store, in UTF-8 bytes.
+	 */
+	public long getTextBytes() {
+		return textBytes_;
+	}
+
+	/**
+	 * The row holding the tweet with the given id, or -1 if there isn't
+	 * one.
+	 */
+	public int getRow(final long id) {
+		return rowsById_.get(id);
+	}
+
+	public boolean contains(final long id) {
+		return getRow(id) >= 0;
+	}
+
+	/**
+	 * A new view, not yet pointing at any row.  Views are cheap, but
+	 * reusing one across many rows is cheaper still.
+	 */
+	public TweetView newView() {
+		return new TweetView(this);
+	}
+
+	/**
+	 * Points the view at the tweet with the given id.
+	 * @return false, leaving the view alone, if there is no such tweet
+	 */
+	public boolean get(final long id, final TweetView view) {
+		checkNotNull(view, "View cannot be null.");
+		final int row = getRow(id);
+		if(row < 0) {
+			return false;
+		}
+		view.moveTo(row);
+		return true;
+	}
+
+	public long getId(final int row) {
+		checkRow(row);
+		return ids_[row];
+	}
+
+	public long getCreatedAt(final int row) {
+		checkRow(row);
+		return createdAt_[row];
+	}
+
+	public int getTextLength(final int row) {
+		checkRow(row);
+		return textLengths_[row];
+	}
+
+	public String getText(final int row) {
+		final ByteBuffer text = getTextBuffer(row);
+		final byte[] bytes = new byte[text.remaining()];
+		text.get(bytes);
+		return new String(bytes, Charsets.UTF_8);
+	}
+
+	/**
+	 * The text of the given row as UTF-8, a read-only slice of the arena.
+	 */
+	public ByteBuffer getTextBuffer(final int row) {
+		checkRow(row);
+		final long address = textAddresses_[row];
+		final int offset = (int)address;
+		final ByteBuffer text = arena_.get((int)(address >>> 32))
+			.asReadOnlyBuffer();
+		text.limit(offset + textLengths_[row]).position(offset);
+		return text.slice();
+	}
+
+	/**
+	 * Visits every tweet created in [from, to), newest first, without
+	 * materializing any of them.
+	 * @return the number of tweets visited
+	 */
+	public int scan(final long from, final long to,
+		final TweetStoreVisitor visitor) {
+		checkNotNull(visitor, "Visitor cannot be null.");
+		index();
+		final int lo = lowerBound(from), hi = lowerBound(to);
+		final TweetView view = newView();
+		int visited = 0;
+		for(int i = hi - 1; i >= lo; i--) {
+			visited++;
+			if(!visitor.visit(view.moveTo(byTime_[i]))) {
+				break;
+			}
+		}
+		return visited;
+	}
+
+	/**
+	 * How many tweets were created in [from, to), in logarithmic time.
+	 */
+	public int count(final long from, final long to) {
+		index();
+		return Math.max(0, lowerBound(to) - lowerBound(from));
+	}
+
+	void checkRow(final int row) {
+		checkElementIndex(row, size_, "Row");
+	}
+
+	private void appendText(final int row, final CharSequence text) {
+		if(chunk_ == null) {
+			newChunk(chunkSize_);
+		}
+		int start = chunk_.position();
+		if(!encode(text)) {
+			// Didn't fit, start a new chunk big enough to be sure it will.
+			chunk_.position(start);
+			newChunk(Math.max(chunkSize_,
+				(int)Math.ceil(encoder_.maxBytesPerChar() * text.length())));
+			start = 0;
+			encode(text);
+		}
+		final int length = chunk_.position() - start;
+		textAddresses_[row] = ((long)(arena_.size() - 1) << 32) | start;
+		textLengths_[row] = length;
+		textBytes_ += length;
+	}
+
+	/**
+	 * @return false if the text didn't fit in what's left of the chunk
+	 */
+	private boolean encode(final CharSequence text) {
+		encoder_.reset();
+		CoderResult result = encoder_.encode(CharBuffer.wrap(text), chunk_,
+			true);
+		if(!result.isOverflow()) {
+			result = encoder_.flush(chunk_);
+		}
+		return !result.isOverflow();
+	}
+
+	private void newChunk(final int size) {
+		chunk_ = ByteBuffer.allocateDirect(size);
+		arena_.add(chunk_);
+	}
+
+	private void grow() {
+		final int capacity = ids_.length + (ids_.length >>> 1) + 1;
+		ids_ = Arrays.copyOf(ids_, capacity);
+		createdAt_ = Arrays.copyOf(createdAt_, capacity);
+		textAddresses_ = Arrays.copyOf(textAddresses_, capacity);
+		textLengths_ = Arrays.copyOf(textLengths_, capacity);
+	}
+
+	/**
+	 * Brings the time index up to date.  The rows appended since it was
+	 * last brought up to date are sorted on their own, which is free for
+	 * the usual case of a page of tweets that's already newest or oldest
+	 * first, then merged in from the back, in place.
+	 */
+	private void index() {
+		if(indexed_ == size_) {
+			return;
+		}
+		final int fresh = size_ - indexed_;
+		final int[] rows = new int[fresh];
+		for(int i = 0; i < fresh; i++) {
+			rows[i] = indexed_ + i;
+		}
+		sortByTime(rows);
+		if(byTime_.length < size_) {
+			byTime_ = Arrays.copyOf(byTime_, ids_.length);
+		}
+		int i = indexed_ - 1, j = fresh - 1, k = size_ - 1;
+		while(j >= 0) {
+			// Ties go to the fresh (later) row, it sorts last.
+			if(i >= 0 && createdAt_[byTime_[i]] > createdAt_[rows[j]]) {
+				byTime_[k--] = byTime_[i--];
+			} else {
+				byTime_[k--] = rows[j--];
+			}
+		}
+		indexed_ = size_;
+	}
+
+	private void sortByTime(final int[] rows) {
+		boolean ascending = true, descending = true;
+		for(int i = 1; i < rows.length && (ascending || descending); i++) {
+			final long prev = createdAt_[rows[i - 1]],
+				next = createdAt_[rows[i]];
+			ascending &= prev <= next;
+			descending &= prev > next;
+		}
+		if(ascending) {
+			return;
+		} else if(descending) {
+			for(int i = 0, j = rows.length - 1; i < j; i++, j--) {
+				final int t = rows[i];
+				rows[i] = rows[j];
+				rows[j] = t;
+			}
+			return;
+		}
+		mergeSort(rows, rows.clone(), 0, rows.length);
+	}
+
+	/**
+	 * A stable merge sort of rows[from, to) by creation time, using src
+	 * (a copy of rows) as scratch space.
+	 */
+	private void mergeSort(final int[] dst, final int[] src, final int from,
+		final int to) {
+		if(to - from < 2) {
+			return;
+		}
+		final int mid = (from + to) >>> 1;
+		mergeSort(src, dst, from, mid);
+		mergeSort(src, dst, mid, to);
+		for(int i = from, p = from, q = mid; i < to; i++) {
+			if(q >= to || (p < mid &&
+				createdAt_[src[p]] <= createdAt_[src[q]])) {
+				dst[i] = src[p++];
+			} else {
+				dst[i] = src[q++];
+			}
+		}
+	}
+
+	/**
+	 * The first position in the time index created at or after millis.
+	 */
+	private int lowerBound(final long millis) {
+		int lo = 0, hi = indexed_;
+		while(lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if(createdAt_[byTime_[mid]] < millis) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+}
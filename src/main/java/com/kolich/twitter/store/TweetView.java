@@ -0,0 +1,109 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.store;
+
+import java.nio.ByteBuffer;
+
+import com.kolich.twitter.entities.CompactTweet;
+import com.kolich.twitter.entities.Tweet;
+
+/**
+ * A flyweight over a single row of a {@link TweetStore}.  Reading the id
+ * or timestamp is an array lookup; the text is only decoded if someone
+ * asks for it as a {@link String}.  One view can be pointed at any
+ * number of rows, one after the other, with {@link #moveTo(int)}.
+ */
+public final class TweetView {
+
+	private final TweetStore store_;
+	private int row_;
+
+	TweetView(final TweetStore store) {
+		store_ = store;
+		row_ = -1;
+	}
+
+	/**
+	 * Points this view at the given row.
+	 * @return this view
+	 */
+	public TweetView moveTo(final int row) {
+		store_.checkRow(row);
+		row_ = row;
+		return this;
+	}
+
+	public int getRow() {
+		return row_;
+	}
+
+	public long getId() {
+		return store_.getId(row_);
+	}
+
+	/**
+	 * When this tweet was created, in milliseconds since the epoch.
+	 */
+	public long getCreatedAt() {
+		return store_.getCreatedAt(row_);
+	}
+
+	/**
+	 * The length of the text, in UTF-8 bytes.
+	 */
+	public int getTextLength() {
+		return store_.getTextLength(row_);
+	}
+
+	/**
+	 * Decodes the text, allocating a new {@link String} every call.
+	 */
+	public String getText() {
+		return store_.getText(row_);
+	}
+
+	/**
+	 * The text as UTF-8, as a read-only slice of the store's own memory.
+	 */
+	public ByteBuffer getTextBuffer() {
+		return store_.getTextBuffer(row_);
+	}
+
+	public CompactTweet toCompactTweet() {
+		return new CompactTweet(getId(), getCreatedAt(), getText());
+	}
+
+	public Tweet toTweet() {
+		return toCompactTweet().toTweet();
+	}
+
+	@Override
+	public String toString() {
+		return (row_ < 0) ? "TweetView[]" : toCompactTweet().toString();
+	}
+
+}
@@ -0,0 +1,424 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.streaming;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.kolich.common.DefaultCharacterEncoding.UTF_8;
+import static org.apache.http.HttpStatus.SC_OK;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Joiner;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.kolich.twitter.entities.Tweet;
+import com.kolich.twitter.entities.TwitterEntityCodec;
+import com.kolich.twitter.signpost.TwitterApiOAuthSigner;
+
+/**
+ * Consumes one of the long-lived statuses streams (filter or sample) on a
+ * single persistent connection, decoding each tweet as it comes off of
+ * the wire and handing it over through a bounded queue.
+ *
+ * The queue is the backpressure: when it's full, the reader thread stops
+ * reading until there's room again, so a slow consumer never causes
+ * tweets to pile up in memory.  Keep in mind that Twitter disconnects
+ * clients that fall too far behind, in which case this will reconnect.
+ *
+ * Dropped connections are re-established with the backoff Twitter asks
+ * streaming clients to use: linear, from 250ms up to 16s, for network
+ * errors; exponential, from 5s up to 320s, for HTTP errors; and
+ * exponential from a minute when rate limited.
+ *
+ * The given {@link HttpClient} should have a socket (read) timeout of
+ * about 90 seconds, so a stalled connection is noticed; Twitter sends a
+ * keep-alive newline every 30 seconds when there's nothing else to send.
+ */
+public final class TwitterStreamConsumer implements Closeable {
+
+	private static final Logger logger__ =
+		LoggerFactory.getLogger(TwitterStreamConsumer.class);
+
+	public static final String STATUSES_FILTER_URL =
+		"https://stream.twitter.com/1.1/statuses/filter.json";
+	public static final String STATUSES_SAMPLE_URL =
+		"https://stream.twitter.com/1.1/statuses/sample.json";
+
+	private static final String API_TRACK_PARAM = "track";
+	private static final String API_FOLLOW_PARAM = "follow";
+
+	private static final String STREAM_THREAD_NAME = "twitter-stream-%d";
+	private static final AtomicLong threadCount__ = new AtomicLong();
+
+	private static final long NETWORK_BACKOFF_STEP_MS = 250L;
+	private static final long NETWORK_BACKOFF_MAX_MS = 16000L;
+	private static final long HTTP_BACKOFF_MIN_MS = 5000L;
+	private static final long HTTP_BACKOFF_MAX_MS = 320000L;
+	private static final long RATE_LIMITED_BACKOFF_MIN_MS = 60000L;
+	private static final long RATE_LIMITED_BACKOFF_MAX_MS = 960000L;
+
+	/**
+	 * Enhance Your Calm, the streaming API's "too many connections".
+	 */
+	private static final int SC_ENHANCE_YOUR_CALM = 420;
+	private static final int SC_TOO_MANY_REQUESTS = 429;
+
+	/**
+	 * How often a reader thread blocked on a full queue checks whether
+	 * it's been closed.
+	 */
+	private static final long OFFER_TIMEOUT_MS = 100L;
+
+	private final HttpClient httpClient_;
+	private final TwitterApiOAuthSigner signer_;
+	private final String url_;
+	private final List<NameValuePair> params_;
+	private final BlockingQueue<Tweet> queue_;
+	private final TypeAdapter<Tweet> tweets_;
+
+	private final AtomicLong received_;
+	private final AtomicLong dropped_;
+	private final AtomicLong connects_;
+
+	private volatile boolean closed_;
+	private volatile boolean connected_;
+	private volatile HttpRequestBase request_;
+	private Thread thread_;
+
+	/**
+	 * @param url the stream to consume, or a local stand-in for it
+	 * @param params if not null, the stream is requested with a POST
+	 * with these as its form body, otherwise with a GET
+	 * @param capacity how many decoded tweets can be waiting to be taken
+	 * before reading stops
+	 */
+	public TwitterStreamConsumer(final HttpClient httpClient,
+		final TwitterApiOAuthSigner signer, final String url,
+		final List<NameValuePair> params, final int capacity) {
+		checkNotNull(httpClient, "HttpClient cannot be null.");
+		checkNotNull(signer, "OAuth signer cannot be null.");
+		checkNotNull(url, "Stream URL cannot be null.");
+		checkArgument(capacity > 0, "Queue capacity must be greater " +
+			"than zero: %s", capacity);
+		httpClient_ = httpClient;
+		signer_ = signer;
+		url_ = url;
+		params_ = params;
+		queue_ = new ArrayBlockingQueue<Tweet>(capacity);
+		tweets_ = TwitterEntityCodec.getGson().getAdapter(Tweet.class);
+		received_ = new AtomicLong();
+		dropped_ = new AtomicLong();
+		connects_ = new AtomicLong();
+	}
+
+	/**
+	 * Tweets matching any of the given keywords.
+	 */
+	public static final TwitterStreamConsumer filter(
+		final HttpClient httpClient, final TwitterApiOAuthSigner signer,
+		final List<String> track, final int capacity) {
+		return filter(httpClient, signer, track, null, capacity);
+	}
+
+	/**
+	 * Tweets matching any of the given keywords, or from any of the given
+	 * user ids; either may be null, but not both.
+	 */
+	public static final TwitterStreamConsumer filter(
+		final HttpClient httpClient, final TwitterApiOAuthSigner signer,
+		final List<String> track, final List<String> follow,
+		final int capacity) {
+		checkArgument((track != null && !track.isEmpty()) ||
+			(follow != null && !follow.isEmpty()), "Must track at least " +
+			"one keyword or follow at least one user.");
+		final List<NameValuePair> params = new ArrayList<NameValuePair>();
+		if(track != null && !track.isEmpty()) {
+			params.add(new BasicNameValuePair(API_TRACK_PARAM,
+				Joiner.on(',').join(track)));
+		}
+		if(follow != null && !follow.isEmpty()) {
+			params.add(new BasicNameValuePair(API_FOLLOW_PARAM,
+				Joiner.on(',').join(follow)));
+		}
+		return new TwitterStreamConsumer(httpClient, signer,
+			STATUSES_FILTER_URL, params, capacity);
+	}
+
+	/**
+	 * A small random sample of all public tweets.
+	 */
+	public static final TwitterStreamConsumer sample(
+		final HttpClient httpClient, final TwitterApiOAuthSigner signer,
+		final int capacity) {
+		return new TwitterStreamConsumer(httpClient, signer,
+			STATUSES_SAMPLE_URL, null, capacity);
+	}
+
+	/**
+	 * Connects, on a new daemon thread, and keeps reconnecting until
+	 * {@link #close()}d.
+	 */
+	public synchronized TwitterStreamConsumer start() {
+		checkArgument(thread_ == null, "Stream consumer already started.");
+		checkArgument(!closed_, "Stream consumer already closed.");
+		thread_ = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				consume();
+			}
+		}, String.format(STREAM_THREAD_NAME, threadCount__.incrementAndGet()));
+		thread_.setDaemon(true);
+		thread_.start();
+		return this;
+	}
+
+	/**
+	 * Waits for, and returns, the next tweet.
+	 */
+	public Tweet take() throws InterruptedException {
+		return queue_.take();
+	}
+
+	/**
+	 * Waits up to the given timeout for the next tweet, returns null if
+	 * there wasn't one.
+	 */
+	public Tweet poll(final long timeout, final TimeUnit unit)
+		throws InterruptedException {
+		return queue_.poll(timeout, unit);
+	}
+
+	/**
+	 * Moves up to max waiting tweets to the given collection, without
+	 * waiting; returns how many were moved.
+	 */
+	public int drainTo(final List<? super Tweet> tweets, final int max) {
+		return queue_.drainTo(tweets, max);
+	}
+
+	/**
+	 * Disconnects and stops reconnecting.  Tweets already queued can
+	 * still be taken.
+	 */
+	@Override
+	public void close() {
+		closed_ = true;
+		final HttpRequestBase request = request_;
+		if(request != null) {
+			// Unblocks the reader thread if it's waiting on the socket.
+			request.abort();
+		}
+		final Thread thread;
+		synchronized(this) {
+			thread = thread_;
+		}
+		if(thread != null) {
+			thread.interrupt();
+		}
+	}
+
+	public boolean isConnected() {
+		return connected_;
+	}
+
+	/**
+	 * Tweets decoded off of the stream.
+	 */
+	public long getReceived() {
+		return received_.get();
+	}
+
+	/**
+	 * Tweets decoded but thrown away because we were closed while
+	 * waiting for room in the queue.
+	 */
+	public long getDropped() {
+		return dropped_.get();
+	}
+
+	/**
+	 * Connection attempts, including the first.
+	 */
+	public long getConnects() {
+		return connects_.get();
+	}
+
+	private void consume() {
+		// Rate limiting and other HTTP errors back off independently, as
+		// Twitter asks; a 420 shouldn't inherit the backoff of a 503.
+		long networkBackoff = 0L, httpBackoff = 0L, rateLimitedBackoff = 0L;
+		while(!closed_) {
+			long sleep;
+			try {
+				final int status = connectAndRead();
+				if(status == SC_OK) {
+					// Connected fine, then the stream ended or broke.
+					networkBackoff = httpBackoff = 0L;
+					rateLimitedBackoff = 0L;
+					sleep = NETWORK_BACKOFF_STEP_MS;
+				} else if(status == SC_ENHANCE_YOUR_CALM ||
+					status == SC_TOO_MANY_REQUESTS) {
+					sleep = rateLimitedBackoff = backoff(
+						rateLimitedBackoff, RATE_LIMITED_BACKOFF_MIN_MS,
+						RATE_LIMITED_BACKOFF_MAX_MS);
+				} else {
+					sleep = httpBackoff = backoff(httpBackoff,
+						HTTP_BACKOFF_MIN_MS, HTTP_BACKOFF_MAX_MS);
+				}
+			} catch (Exception e) {
+				if(closed_) {
+					break;
+				}
+				logger__.debug("Stream connection failed: " + url_, e);
+				sleep = networkBackoff = Math.min(networkBackoff +
+					NETWORK_BACKOFF_STEP_MS, NETWORK_BACKOFF_MAX_MS);
+			} finally {
+				connected_ = false;
+				request_ = null;
+			}
+			if(closed_) {
+				break;
+			}
+			logger__.debug("Reconnecting to " + url_ + " in " + sleep + "ms");
+			try {
+				Thread.sleep(sleep);
+			} catch (InterruptedException e) {
+				// Only ever interrupted by close().
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Doubles the last backoff, staying within min and max.
+	 */
+	private static final long backoff(final long last, final long min,
+		final long max) {
+		return (last < min) ? min : Math.min(last * 2L, max);
+	}
+
+	/**
+	 * Connects and reads until the stream ends, returning the HTTP status
+	 * code of the response.
+	 */
+	private int connectAndRead() throws Exception {
+		final HttpRequestBase request;
+		if(params_ != null) {
+			final HttpPost post = new HttpPost(url_);
+			post.setEntity(new UrlEncodedFormEntity(params_, UTF_8));
+			request = post;
+		} else {
+			request = new HttpGet(url_);
+		}
+		signer_.sign(request);
+		request_ = request;
+		if(closed_) {
+			return SC_OK;
+		}
+		connects_.incrementAndGet();
+		final HttpResponse response = httpClient_.execute(request);
+		final HttpEntity entity = response.getEntity();
+		try {
+			final int status = response.getStatusLine().getStatusCode();
+			if(status != SC_OK) {
+				logger__.warn("Stream " + url_ + " responded with " +
+					response.getStatusLine());
+				return status;
+			}
+			connected_ = true;
+			read(entity.getContent());
+			return status;
+		} finally {
+			EntityUtils.consumeQuietly(entity);
+		}
+	}
+
+	/**
+	 * Reads newline delimited JSON messages until the stream ends.  Only
+	 * tweets are queued; deletes, limit notices, warnings and the like
+	 * are skipped.
+	 *
+	 * Each message is decoded straight off of the reader in one pass; the
+	 * reflective adapter ignores fields {@link Tweet} doesn't have, so a
+	 * message that isn't a tweet simply comes back without an id or text.
+	 */
+	private void read(final InputStream is) throws Exception {
+		final JsonReader reader = new JsonReader(new InputStreamReader(is,
+			UTF_8));
+		// Lenient, so that one message after another (and the blank
+		// keep-alive lines in between) are fine.
+		reader.setLenient(true);
+		JsonToken token;
+		while(!closed_ && (token = reader.peek()) != JsonToken.END_DOCUMENT) {
+			if(token != JsonToken.BEGIN_OBJECT) {
+				reader.skipValue();
+				continue;
+			}
+			final Tweet tweet = tweets_.read(reader);
+			if(!isTweet(tweet)) {
+				continue;
+			}
+			received_.incrementAndGet();
+			while(!queue_.offer(tweet, OFFER_TIMEOUT_MS,
+				TimeUnit.MILLISECONDS)) {
+				if(closed_) {
+					dropped_.incrementAndGet();
+					return;
+				}
+			}
+		}
+	}
+
+	private static final boolean isTweet(final Tweet tweet) {
+		return tweet != null && tweet.getId() != null &&
+			tweet.getText() != null;
+	}
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.signpost;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import oauth.signpost.OAuth;
+import oauth.signpost.OAuthConsumer;
+import oauth.signpost.http.HttpParameters;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.message.BasicNameValuePair;
+import org.junit.Test;
+
+/**
+ * The native signer has to produce exactly the Authorization header
+ * Signpost does, given the same nonce and timestamp, for every kind of
+ * request the client sends.
+ */
+public final class TwitterApiOAuthSignerTest {
+
+	private static final String CONSUMER_KEY = "xvz1evFS4wEEPTGEFPHBog";
+	private static final String CONSUMER_SECRET =
+		"kAcSOqF21Fu85e7zjz7ZN2U4ZRhfV3WpwPAoE3Z7kBw";
+	private static final String TOKEN =
+		"370773112-GmHxMAgYyLbNEtIKZeRNFsMKPR9EyMZeS9weJAEb";
+	private static final String TOKEN_SECRET =
+		"LswwdoUaIvS8ltyTt5jkRh4J50vUPVVHtR2YPi5kE";
+
+	private static final String NONCE =
+		"kYjzVBB8Y0ZFabxSWbWovY3uYSQ2pTgmZeNu2VS4cg";
+	private static final long TIMESTAMP = 1318622958L;
+
+	private static final String AUTHORIZATION = "Authorization";
+	private static final String UTF_8 = "UTF-8";
+
+	@Test
+	public void getWithQuery() throws Exception {
+		assertSameSignature(new HttpGet("https://api.twitter.com/1.1/" +
+			"statuses/user_timeline.json?screen_name=markkolich&count=200" +
+			"&max_id=477777777777777776"), true);
+	}
+
+	@Test
+	public void getWithReservedCharacters() throws Exception {
+		assertSameSignature(new HttpGet(new URIBuilder(
+			"https://api.twitter.com/1.1/search/tweets.json")
+			.addParameter("q", "#java OR \"twitter api\" -from:@x ~*'()!")
+			.addParameter("count", "100")
+			.addParameter("result_type", "recent")
+			.build()), true);
+	}
+
+	@Test
+	public void getWithNonAsciiQuery() throws Exception {
+		assertSameSignature(new HttpGet(new URIBuilder(
+			"https://api.twitter.com/1.1/search/tweets.json")
+			.addParameter("q", "caf\u00e9 \u65e5\u672c\u8a9e \ud83d\ude00")
+			.build()), true);
+	}
+
+	@Test
+	public void getWithRepeatedParameters() throws Exception {
+		assertSameSignature(new HttpGet("https://api.twitter.com/1.1/" +
+			"statuses/lookup.json?id=20&id=10&id=3&include_entities=true" +
+			"&id=100"), true);
+	}
+
+	@Test
+	public void postWithFormBody() throws Exception {
+		assertSameSignature(newPost("https://api.twitter.com/1.1/" +
+			"statuses/update.json", "status", "Hello, world! 100% " +
+			"\"quoted\" & (parenthesized) ~*'=+/?"), true);
+	}
+
+	@Test
+	public void postWithNonAsciiFormBody() throws Exception {
+		assertSameSignature(newPost("https://api.twitter.com/1.1/" +
+			"statuses/update.json", "status", "na\u00efve caf\u00e9 " +
+			"\u2615 \ud83d\ude00"), true);
+	}
+
+	@Test
+	public void postWithQueryAndFormBody() throws Exception {
+		assertSameSignature(newPost("https://api.twitter.com/1.1/" +
+			"statuses/update.json?include_entities=true&trim_user=1",
+			"status", "both", "in_reply_to_status_id", "210462857140252672"),
+			true);
+	}
+
+	@Test
+	public void postWithoutToken() throws Exception {
+		assertSameSignature(newPost("https://api.twitter.com/oauth/" +
+			"access_token", "x_auth_username", "markkolich",
+			"x_auth_password", "p@ss w\u00f6rd&=", "x_auth_mode",
+			"client_auth"), false);
+	}
+
+	@Test
+	public void getWithoutToken() throws Exception {
+		assertSameSignature(new HttpGet("https://api.twitter.com/" +
+			"oauth/request_token"), false);
+	}
+
+	private static final HttpPost newPost(final String uri,
+		final String... params) throws Exception {
+		final HttpPost post = new HttpPost(uri);
+		final NameValuePair[] pairs = new NameValuePair[params.length / 2];
+		for(int i = 0; i < pairs.length; i++) {
+			pairs[i] = new BasicNameValuePair(params[2 * i],
+				params[2 * i + 1]);
+		}
+		post.setEntity(new UrlEncodedFormEntity(Arrays.asList(pairs),
+			UTF_8));
+		return post;
+	}
+
+	/**
+	 * Signs one copy of the request with Signpost and another with the
+	 * native signer (both parsing the query out of the URI, and taking
+	 * it as built by a {@link URIBuilder}) and compares the headers.
+	 */
+	private static final void assertSameSignature(
+		final HttpRequestBase request, final boolean withToken)
+		throws Exception {
+		final OAuthConsumer consumer = new TwitterApiCommonsHttpOAuthConsumer(
+			CONSUMER_KEY, CONSUMER_SECRET);
+		if(withToken) {
+			consumer.setTokenWithSecret(TOKEN, TOKEN_SECRET);
+		}
+		// Signpost only generates a nonce and timestamp when they're
+		// not already there.
+		final HttpParameters fixed = new HttpParameters();
+		fixed.put(OAuth.OAUTH_NONCE, NONCE);
+		fixed.put(OAuth.OAUTH_TIMESTAMP, Long.toString(TIMESTAMP));
+		consumer.setAdditionalParameters(fixed);
+		final HttpRequestBase expected = copy(request);
+		consumer.sign(expected);
+		final TwitterApiOAuthSigner signer = new TwitterApiOAuthSigner(
+			CONSUMER_KEY, CONSUMER_SECRET, withToken ? TOKEN : null,
+			withToken ? TOKEN_SECRET : null);
+		final HttpRequestBase parsed = copy(request);
+		signer.sign(parsed, NONCE, TIMESTAMP);
+		assertEquals(expected.getFirstHeader(AUTHORIZATION).getValue(),
+			parsed.getFirstHeader(AUTHORIZATION).getValue());
+		final HttpRequestBase built = copy(request);
+		signer.sign(built, new URIBuilder(request.getURI()).getQueryParams(),
+			NONCE, TIMESTAMP);
+		assertEquals(expected.getFirstHeader(AUTHORIZATION).getValue(),
+			built.getFirstHeader(AUTHORIZATION).getValue());
+	}
+
+	private static final HttpRequestBase copy(final HttpRequestBase request) {
+		if(request instanceof HttpPost) {
+			final HttpPost post = new HttpPost(request.getURI());
+			post.setEntity(((HttpPost)request).getEntity());
+			return post;
+		}
+		return new HttpGet(request.getURI());
+	}
+
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.testkit;
+
+import static com.kolich.twitter.signpost.TwitterApiOAuthSigner.percentEncode;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+
+/**
+ * Checks OAuth 1.0a HMAC-SHA1 signatures from scratch, straight from the
+ * spec, sharing nothing with the client's signer but percent encoding,
+ * so a bug in the signer can't hide itself by agreeing with itself.
+ */
+final class FakeOAuthVerifier {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String HMAC_SHA1 = "HmacSHA1";
+
+	private static final String OAUTH_PREFIX = "OAuth ";
+	private static final String OAUTH_SIGNATURE = "oauth_signature";
+	private static final String REALM = "realm";
+
+	private static final Pattern AUTHORIZATION_PARAM =
+		Pattern.compile("([\\w-]+)=\"([^\"]*)\"");
+
+	private static final Comparator<NameValuePair> PARAMETER_ORDER =
+		new Comparator<NameValuePair>() {
+		@Override
+		public int compare(final NameValuePair a, final NameValuePair b) {
+			final int c = a.getName().compareTo(b.getName());
+			return (c != 0) ? c : a.getValue().compareTo(b.getValue());
+		}
+	};
+
+	// Cannot be instantiated.
+	private FakeOAuthVerifier() { }
+
+	/**
+	 * Parses the parameters out of an OAuth Authorization header,
+	 * decoded, or returns null if it isn't one.
+	 */
+	static final List<NameValuePair> parseAuthorization(final String header) {
+		if(header == null || !header.startsWith(OAUTH_PREFIX)) {
+			return null;
+		}
+		final List<NameValuePair> params = new ArrayList<NameValuePair>();
+		final Matcher m = AUTHORIZATION_PARAM.matcher(header);
+		while(m.find()) {
+			params.add(new BasicNameValuePair(m.group(1),
+				decode(m.group(2))));
+		}
+		return params;
+	}
+
+	static final String getParam(final List<NameValuePair> params,
+		final String name) {
+		for(final NameValuePair p : params) {
+			if(p.getName().equals(name)) {
+				return p.getValue();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param url the request URL, scheme, host and path only
+	 * @param requestParams decoded query and form body parameters
+	 * @param oauthParams decoded Authorization header parameters
+	 * @param tokenSecret empty if the request wasn't signed with a token
+	 */
+	static final boolean verify(final String method, final String url,
+		final List<NameValuePair> requestParams,
+		final List<NameValuePair> oauthParams, final String consumerSecret,
+		final String tokenSecret) throws Exception {
+		final String signature = getParam(oauthParams, OAUTH_SIGNATURE);
+		if(signature == null) {
+			return false;
+		}
+		final List<NameValuePair> params = new ArrayList<NameValuePair>();
+		for(final NameValuePair p : requestParams) {
+			params.add(new BasicNameValuePair(percentEncode(p.getName()),
+				percentEncode(p.getValue())));
+		}
+		for(final NameValuePair p : oauthParams) {
+			if(!OAUTH_SIGNATURE.equals(p.getName()) &&
+				!REALM.equals(p.getName())) {
+				params.add(new BasicNameValuePair(percentEncode(p.getName()),
+					percentEncode(p.getValue())));
+			}
+		}
+		Collections.sort(params, PARAMETER_ORDER);
+		final StringBuilder normalized = new StringBuilder();
+		for(final NameValuePair p : params) {
+			if(normalized.length() > 0) {
+				normalized.append('&');
+			}
+			normalized.append(p.getName()).append('=').append(p.getValue());
+		}
+		final String base = method.toUpperCase() + "&" + percentEncode(url) +
+			"&" + percentEncode(normalized.toString());
+		final Mac mac = Mac.getInstance(HMAC_SHA1);
+		mac.init(new SecretKeySpec((percentEncode(consumerSecret) + "&" +
+			percentEncode(tokenSecret)).getBytes(UTF_8), HMAC_SHA1));
+		final byte[] expected = mac.doFinal(base.getBytes(UTF_8));
+		// Constant time, as a real server would.
+		return MessageDigest.isEqual(expected, Base64.decodeBase64(signature));
+	}
+
+	private static final String decode(final String s) {
+		try {
+			// Plus signs are literal in the header, unlike in a form body.
+			return URLDecoder.decode(s.replace("+", "%2B"), "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,271 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.testkit;
+
+import java.io.IOException;
+import java.util.Locale;
+
+import com.google.gson.stream.JsonWriter;
+import com.kolich.twitter.date.TwitterDateParser;
+
+/**
+ * Makes up users and tweets, deterministically, from nothing but a seed:
+ * the same seed always describes the same users, with the same friends,
+ * followers and timelines, so runs can be compared with one another.
+ *
+ * Every timeline and every search query is a stream of tweets posted at
+ * a fixed, per stream, period, with ids laid out the way Twitter's are
+ * (milliseconds since the Twitter epoch in the high bits), so tweets
+ * keep arriving as time passes and max_id and since_id paging work just
+ * like they do against the real API.
+ */
+public final class FakeTwitterData {
+
+	/**
+	 * Twitter's own epoch, Thu Nov 04 01:42:54 +0000 2010.
+	 */
+	private static final long TWEPOCH = 1288834974657L;
+	private static final int TIMESTAMP_SHIFT = 22;
+	private static final long SEQUENCE_MASK = (1L << TIMESTAMP_SHIFT) - 1L;
+
+	/**
+	 * How far back a user's timeline goes, as with the real API.
+	 */
+	public static final int TIMELINE_HISTORY = 3200;
+	private static final int SEARCH_HISTORY = 1500;
+
+	private static final long MINUTE_MS = 60000L;
+	private static final long DAY_MS = 24L * 60L * MINUTE_MS;
+
+	/**
+	 * Users are picked from a namespace this big.
+	 */
+	private static final long USERS = 10000000L;
+	private static final int MAX_FOLLOWS = 2000;
+
+	private final long seed_;
+
+	public FakeTwitterData(final long seed) {
+		seed_ = seed;
+	}
+
+	public long getUserId(final String screenName) {
+		return 1L + floorMod(mix(seed_ ^ hash(screenName.toLowerCase(
+			Locale.US))), USERS);
+	}
+
+	public int getFriendsCount(final String screenName) {
+		return (int)floorMod(mix(getUserId(screenName) * 31L + 1L),
+			MAX_FOLLOWS);
+	}
+
+	public int getFollowersCount(final String screenName) {
+		return (int)floorMod(mix(getUserId(screenName) * 31L + 2L),
+			MAX_FOLLOWS);
+	}
+
+	/**
+	 * The screen name of the index'th of a user's friends (following) or
+	 * followers.
+	 */
+	public String getFollow(final String screenName, final boolean friends,
+		final int index) {
+		final long id = getUserId(screenName);
+		return "user" + floorMod(mix(id * 131L + (friends ? 0L : 1L) +
+			(index * 7919L)), USERS);
+	}
+
+	/**
+	 * How often the user tweets, somewhere between every minute and
+	 * every day.
+	 */
+	public long getTimelinePeriod(final String screenName) {
+		return MINUTE_MS + floorMod(mix(getUserId(screenName) * 31L + 3L),
+			DAY_MS - MINUTE_MS);
+	}
+
+	/**
+	 * How often a tweet matching the query is posted, somewhere between
+	 * every 100ms for the hottest queries and every ten minutes.
+	 */
+	public long getSearchPeriod(final String query) {
+		return 100L + floorMod(mix(seed_ ^ hash(query) * 31L),
+			(10L * MINUTE_MS) - 100L);
+	}
+
+	public TweetStream getTimeline(final String screenName) {
+		return new TweetStream(screenName, screenName,
+			getTimelinePeriod(screenName), TIMELINE_HISTORY);
+	}
+
+	public TweetStream getSearch(final String query) {
+		return new TweetStream(query, null, getSearchPeriod(query),
+			SEARCH_HISTORY);
+	}
+
+	public void writeUser(final JsonWriter writer, final String screenName)
+		throws IOException {
+		final long id = getUserId(screenName);
+		writer.beginObject();
+		writer.name("id").value(id);
+		writer.name("id_str").value(Long.toString(id));
+		writer.name("screen_name").value(screenName);
+		writer.name("name").value("Fake " + screenName);
+		writer.name("created_at").value(TwitterDateParser.format(
+			TWEPOCH + floorMod(mix(id * 31L + 4L), 3L * 365L * DAY_MS)));
+		writer.name("profile_image_url").value(
+			"http://pbs.twimg.com/profile_images/" + id + "/avatar_normal.png");
+		writer.name("friends_count").value(getFriendsCount(screenName));
+		writer.name("followers_count").value(getFollowersCount(screenName));
+		writer.name("statuses_count").value(TIMELINE_HISTORY);
+		writer.endObject();
+	}
+
+	public void writeTweet(final JsonWriter writer, final long id,
+		final String text, final String author) throws IOException {
+		writer.beginObject();
+		writer.name("id").value(id);
+		writer.name("id_str").value(Long.toString(id));
+		writer.name("created_at").value(TwitterDateParser.format(
+			getTimestamp(id)));
+		writer.name("text").value(text);
+		writer.name("user");
+		writeUser(writer, author);
+		writer.endObject();
+	}
+
+	/**
+	 * Makes up the id a tweet posted right now would get.
+	 */
+	public long newTweetId(final String author) {
+		return toId(System.currentTimeMillis(), getUserId(author));
+	}
+
+	public static final long getTimestamp(final long id) {
+		return (id >>> TIMESTAMP_SHIFT) + TWEPOCH;
+	}
+
+	private static final long toId(final long millis, final long sequence) {
+		return ((millis - TWEPOCH) << TIMESTAMP_SHIFT) |
+			(sequence & SEQUENCE_MASK);
+	}
+
+	/**
+	 * One tweet every period milliseconds, the most recent history of
+	 * which can be paged through newest first.
+	 */
+	public final class TweetStream {
+
+		private final String key_;
+		private final String author_;
+		private final long period_;
+		private final long offset_;
+		private final long sequence_;
+		private final int history_;
+
+		private TweetStream(final String key, final String author,
+			final long period, final int history) {
+			key_ = key;
+			author_ = author;
+			period_ = period;
+			final long h = mix(seed_ ^ hash(key));
+			offset_ = floorMod(h, period);
+			sequence_ = h >>> 20;
+			history_ = history;
+		}
+
+		/**
+		 * Writes up to count of the newest tweets with ids no greater
+		 * than maxId, and greater than sinceId, newest first.  Either
+		 * can be zero (or less) to mean no bound.
+		 * @return how many tweets were written
+		 */
+		public int write(final JsonWriter writer, final long maxId,
+			final long sinceId, final int count) throws IOException {
+			final long newest = index(System.currentTimeMillis());
+			long top = newest;
+			if(maxId > 0L) {
+				long i = index(getTimestamp(maxId));
+				if(id(i) > maxId) {
+					i--;
+				}
+				top = Math.min(top, i);
+			}
+			final long bottom = Math.max(0L, newest - history_ + 1L);
+			int written = 0;
+			for(long i = top; i >= bottom && written < count; i--) {
+				final long id = id(i);
+				if(id <= sinceId) {
+					break;
+				}
+				final String author = (author_ != null) ? author_ :
+					"user" + floorMod(mix(id), USERS);
+				writeTweet(writer, id, (author_ != null) ?
+					"Tweet number " + i + " from @" + author_ :
+					"Tweet number " + i + " about " + key_, author);
+				written++;
+			}
+			return written;
+		}
+
+		private long index(final long millis) {
+			return Math.max(-1L, floorDiv(millis - offset_, period_));
+		}
+
+		private long id(final long index) {
+			return toId((index * period_) + offset_, sequence_);
+		}
+
+	}
+
+	/**
+	 * A fast, well distributed, 64-bit mix (the SplitMix64 finalizer).
+	 */
+	private static final long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	private static final long hash(final String s) {
+		long h = 1125899906842597L;
+		for(int i = 0, l = s.length(); i < l; i++) {
+			h = (31L * h) + s.charAt(i);
+		}
+		return mix(h);
+	}
+
+	private static final long floorMod(final long x, final long y) {
+		return x - (floorDiv(x, y) * y);
+	}
+
+	private static final long floorDiv(final long x, final long y) {
+		final long q = x / y;
+		return ((x % y) != 0L && ((x ^ y) < 0L)) ? q - 1L : q;
+	}
+
+}
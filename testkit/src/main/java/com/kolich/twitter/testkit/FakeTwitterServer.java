@@ -0,0 +1,930 @@
+/**
+ * Copyright (c) 2014 Mark S. Kolich
+ * http://mark.koli.ch
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package com.kolich.twitter.testkit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.kolich.twitter.ratelimit.TwitterApiRateLimiter.RATE_LIMIT_LIMIT_HEADER;
+import static com.kolich.twitter.ratelimit.TwitterApiRateLimiter.RATE_LIMIT_REMAINING_HEADER;
+import static com.kolich.twitter.ratelimit.TwitterApiRateLimiter.RATE_LIMIT_RESET_HEADER;
+import static com.kolich.twitter.testkit.FakeOAuthVerifier.getParam;
+import static com.kolich.twitter.testkit.FakeOAuthVerifier.parseAuthorization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.HttpRoutePlanner;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.stream.JsonWriter;
+import com.kolich.twitter.TwitterApiClient;
+import com.kolich.twitter.TwitterApiClientBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A stand-in for api.twitter.com that runs in-process, on a local port,
+ * serving made up users and tweets from {@link FakeTwitterData} so the
+ * client can be load and regression tested without real credentials or
+ * a network.  Serves:
+ *
+ *   users/show, friends/list and followers/list (cursored),
+ *   statuses/user_timeline and search/tweets (max_id and since_id),
+ *   statuses/update, and oauth/request_token, oauth/access_token (both
+ *   the OAuth and xAuth flavors) and oauth/authenticate
+ *
+ * Responses carry rate limit headers, per endpoint and token, like the
+ * real thing, and can be delayed, rate limited (or randomly answered with
+ * a 429) and signature checked, per the {@link Builder}.
+ *
+ * {@link #newHttpClient()} hands back a client that sends every request,
+ * whatever its host, here instead; give it to a {@link TwitterApiClient},
+ * or use {@link #newTwitterApiClient()}, and the client runs unmodified.
+ */
+public final class FakeTwitterServer implements Closeable {
+
+	private static final Logger logger__ =
+		LoggerFactory.getLogger(FakeTwitterServer.class);
+
+	public static final String USERS_SHOW_PATH = "/1.1/users/show.json";
+	public static final String FRIENDS_LIST_PATH = "/1.1/friends/list.json";
+	public static final String FOLLOWERS_LIST_PATH =
+		"/1.1/followers/list.json";
+	public static final String USER_TIMELINE_PATH =
+		"/1.1/statuses/user_timeline.json";
+	public static final String SEARCH_TWEETS_PATH = "/1.1/search/tweets.json";
+	public static final String STATUSES_UPDATE_PATH =
+		"/1.1/statuses/update.json";
+	public static final String OAUTH_REQUEST_TOKEN_PATH =
+		"/oauth/request_token";
+	public static final String OAUTH_ACCESS_TOKEN_PATH = "/oauth/access_token";
+	public static final String OAUTH_AUTHENTICATE_PATH =
+		"/oauth/authenticate";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final String CONTENT_TYPE_HEADER = "Content-Type";
+	private static final String AUTHORIZATION_HEADER = "Authorization";
+	private static final String HOST_HEADER = "Host";
+	private static final String JSON_CONTENT_TYPE =
+		"application/json;charset=utf-8";
+	private static final String HTML_CONTENT_TYPE = "text/html;charset=utf-8";
+	private static final String FORM_CONTENT_TYPE =
+		"application/x-www-form-urlencoded";
+
+	private static final int SC_OK = 200;
+	private static final int SC_BAD_REQUEST = 400;
+	private static final int SC_UNAUTHORIZED = 401;
+	private static final int SC_FORBIDDEN = 403;
+	private static final int SC_NOT_FOUND = 404;
+	private static final int SC_METHOD_NOT_ALLOWED = 405;
+	private static final int SC_TOO_MANY_REQUESTS = 429;
+	private static final int SC_INTERNAL_SERVER_ERROR = 500;
+
+	private static final long RATE_LIMIT_WINDOW_MS = 15L * 60L * 1000L;
+
+	private static final int DEFAULT_COUNT = 20;
+	private static final int MAX_COUNT = 200;
+	private static final int DEFAULT_SEARCH_COUNT = 15;
+	private static final int MAX_SEARCH_COUNT = 100;
+
+	private static final String SERVER_THREAD_NAME_FORMAT =
+		"fake-twitter-server-%d";
+
+	private final FakeTwitterData data_;
+
+	private final HttpServer server_;
+	private final ExecutorService executor_;
+
+	private final long minLatencyMillis_;
+	private final long maxLatencyMillis_;
+	private final double tooManyRequestsRate_;
+	private final Map<String,Integer> rateLimits_;
+	private final boolean enforceRateLimits_;
+	private final boolean verifySignatures_;
+
+	private final String consumerKey_;
+	private final String consumerSecret_;
+	private final String token_;
+	private final String tokenSecret_;
+
+	private final ConcurrentMap<String,IssuedToken> accessTokens_;
+	private final ConcurrentMap<String,IssuedToken> requestTokens_;
+	private final ConcurrentMap<String,RateLimitWindow> windows_;
+
+	private final AtomicLong requests_;
+	private final ConcurrentMap<String,AtomicLong> requestsByPath_;
+	private final AtomicLong issued_;
+
+	private final List<CloseableHttpClient> clients_;
+
+	private FakeTwitterServer(final Builder builder) throws IOException {
+		data_ = new FakeTwitterData(builder.seed_);
+		minLatencyMillis_ = builder.minLatencyMillis_;
+		maxLatencyMillis_ = builder.maxLatencyMillis_;
+		tooManyRequestsRate_ = builder.tooManyRequestsRate_;
+		rateLimits_ = new HashMap<String,Integer>(builder.rateLimits_);
+		enforceRateLimits_ = builder.enforceRateLimits_;
+		verifySignatures_ = builder.verifySignatures_;
+		consumerKey_ = builder.consumerKey_;
+		consumerSecret_ = builder.consumerSecret_;
+		token_ = builder.token_;
+		tokenSecret_ = builder.tokenSecret_;
+		accessTokens_ = new ConcurrentHashMap<String,IssuedToken>();
+		accessTokens_.put(token_, new IssuedToken(tokenSecret_,
+			builder.screenName_));
+		requestTokens_ = new ConcurrentHashMap<String,IssuedToken>();
+		windows_ = new ConcurrentHashMap<String,RateLimitWindow>();
+		requests_ = new AtomicLong();
+		requestsByPath_ = new ConcurrentHashMap<String,AtomicLong>();
+		issued_ = new AtomicLong();
+		clients_ = new CopyOnWriteArrayList<CloseableHttpClient>();
+		// Small responses would otherwise wait on the client's delayed
+		// ACK, ~40ms each.  Only read once, when the server first loads.
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		server_ = HttpServer.create(new InetSocketAddress("127.0.0.1",
+			builder.port_), 0);
+		executor_ = Executors.newFixedThreadPool(builder.threads_,
+			new ThreadFactoryBuilder()
+				.setNameFormat(SERVER_THREAD_NAME_FORMAT)
+				.setDaemon(true)
+				.build());
+		server_.setExecutor(executor_);
+		server_.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				try {
+					serve(exchange);
+				} catch (Exception e) {
+					logger__.warn("Failed to serve request: " +
+						exchange.getRequestURI(), e);
+					sendError(exchange, SC_INTERNAL_SERVER_ERROR, 131,
+						"Internal error");
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server_.start();
+	}
+
+	public int getPort() {
+		return server_.getAddress().getPort();
+	}
+
+	public HttpHost getHttpHost() {
+		return new HttpHost("127.0.0.1", getPort(), "http");
+	}
+
+	public FakeTwitterData getData() {
+		return data_;
+	}
+
+	public String getConsumerKey() {
+		return consumerKey_;
+	}
+
+	public String getConsumerSecret() {
+		return consumerSecret_;
+	}
+
+	public String getToken() {
+		return token_;
+	}
+
+	public String getTokenSecret() {
+		return tokenSecret_;
+	}
+
+	/**
+	 * Requests served, of any kind.
+	 */
+	public long getRequests() {
+		return requests_.get();
+	}
+
+	public long getRequests(final String path) {
+		final AtomicLong count = requestsByPath_.get(path);
+		return (count == null) ? 0L : count.get();
+	}
+
+	/**
+	 * Routes every request, whatever host it's for, to this server over
+	 * plain HTTP.  The Host header (and so the URL the request was signed
+	 * for) is left alone.
+	 */
+	public HttpRoutePlanner getRoutePlanner() {
+		final HttpRoute route = new HttpRoute(getHttpHost());
+		return new HttpRoutePlanner() {
+			@Override
+			public HttpRoute determineRoute(final HttpHost target,
+				final HttpRequest request, final HttpContext context) {
+				return route;
+			}
+		};
+	}
+
+	/**
+	 * A pooled client routed to this server, closed along with it.
+	 */
+	public CloseableHttpClient newHttpClient() {
+		final PoolingHttpClientConnectionManager manager =
+			new PoolingHttpClientConnectionManager();
+		manager.setMaxTotal(256);
+		manager.setDefaultMaxPerRoute(256);
+		final CloseableHttpClient client = HttpClients.custom()
+			.setConnectionManager(manager)
+			.setRoutePlanner(getRoutePlanner())
+			.build();
+		clients_.add(client);
+		return client;
+	}
+
+	/**
+	 * A client, with this server's credentials, talking to this server.
+	 */
+	public TwitterApiClient newTwitterApiClient() {
+		return new TwitterApiClientBuilder()
+			.setCredentials(consumerKey_, consumerSecret_, token_,
+				tokenSecret_)
+			.setHttpClient(newHttpClient())
+			.build();
+	}
+
+	@Override
+	public void close() {
+		server_.stop(0);
+		executor_.shutdownNow();
+		for(final CloseableHttpClient client : clients_) {
+			try {
+				client.close();
+			} catch (IOException e) {
+				logger__.debug("Failed to close HttpClient.", e);
+			}
+		}
+	}
+
+	private void serve(final HttpExchange exchange) throws Exception {
+		final String path = exchange.getRequestURI().getRawPath();
+		requests_.incrementAndGet();
+		countRequest(path);
+		// Query and form body parameters, in order, decoded.
+		final List<NameValuePair> params = new ArrayList<NameValuePair>();
+		final String query = exchange.getRequestURI().getRawQuery();
+		if(query != null) {
+			params.addAll(URLEncodedUtils.parse(query, UTF_8));
+		}
+		final String contentType = exchange.getRequestHeaders().getFirst(
+			CONTENT_TYPE_HEADER);
+		final InputStream body = exchange.getRequestBody();
+		try {
+			if(contentType != null &&
+				contentType.startsWith(FORM_CONTENT_TYPE)) {
+				params.addAll(URLEncodedUtils.parse(new String(
+					ByteStreams.toByteArray(body), UTF_8), UTF_8));
+			}
+		} finally {
+			body.close();
+		}
+		delay();
+		final List<NameValuePair> oauth = parseAuthorization(
+			exchange.getRequestHeaders().getFirst(AUTHORIZATION_HEADER));
+		if(verifySignatures_ && !verify(exchange, params, oauth)) {
+			sendError(exchange, SC_UNAUTHORIZED, 32,
+				"Could not authenticate you.");
+			return;
+		}
+		final String token = (oauth == null) ? null :
+			getParam(oauth, "oauth_token");
+		if(tooManyRequestsRate_ > 0.0d &&
+			ThreadLocalRandom.current().nextDouble() < tooManyRequestsRate_) {
+			sendError(exchange, SC_TOO_MANY_REQUESTS, 88,
+				"Rate limit exceeded");
+			return;
+		}
+		final Integer limit = rateLimits_.get(path);
+		if(limit != null) {
+			final RateLimitWindow window = getWindow(path + " " +
+				((token != null) ? token : consumerKey_), limit);
+			final int remaining;
+			final long resetAt;
+			synchronized(window) {
+				remaining = window.take();
+				resetAt = window.resetAt_;
+			}
+			exchange.getResponseHeaders().set(RATE_LIMIT_LIMIT_HEADER,
+				Integer.toString(limit));
+			exchange.getResponseHeaders().set(RATE_LIMIT_REMAINING_HEADER,
+				Integer.toString(Math.max(0, remaining)));
+			exchange.getResponseHeaders().set(RATE_LIMIT_RESET_HEADER,
+				Long.toString(resetAt / 1000L));
+			if(remaining < 0 && enforceRateLimits_) {
+				sendError(exchange, SC_TOO_MANY_REQUESTS, 88,
+					"Rate limit exceeded");
+				return;
+			}
+		}
+		final String method = exchange.getRequestMethod();
+		if(USERS_SHOW_PATH.equals(path)) {
+			usersShow(exchange, params);
+		} else if(FRIENDS_LIST_PATH.equals(path)) {
+			followList(exchange, params, true);
+		} else if(FOLLOWERS_LIST_PATH.equals(path)) {
+			followList(exchange, params, false);
+		} else if(USER_TIMELINE_PATH.equals(path)) {
+			userTimeline(exchange, params);
+		} else if(SEARCH_TWEETS_PATH.equals(path)) {
+			searchTweets(exchange, params);
+		} else if(STATUSES_UPDATE_PATH.equals(path)) {
+			if(!"POST".equals(method)) {
+				sendError(exchange, SC_METHOD_NOT_ALLOWED, 86,
+					"This method requires a POST.");
+				return;
+			}
+			statusesUpdate(exchange, params, token);
+		} else if(OAUTH_REQUEST_TOKEN_PATH.equals(path)) {
+			requestToken(exchange);
+		} else if(OAUTH_ACCESS_TOKEN_PATH.equals(path)) {
+			accessToken(exchange, params, token, oauth);
+		} else if(OAUTH_AUTHENTICATE_PATH.equals(path)) {
+			send(exchange, SC_OK, HTML_CONTENT_TYPE, ("<html><body>" +
+				"Authorize the fake application?</body></html>").getBytes(
+					UTF_8));
+		} else {
+			sendError(exchange, SC_NOT_FOUND, 34,
+				"Sorry, that page does not exist");
+		}
+	}
+
+	private void usersShow(final HttpExchange exchange,
+		final List<NameValuePair> params) throws IOException {
+		final String screenName = getScreenName(params);
+		if(screenName == null) {
+			sendError(exchange, SC_NOT_FOUND, 50, "User not found.");
+			return;
+		}
+		final JsonResponse json = new JsonResponse();
+		data_.writeUser(json.writer_, screenName);
+		json.send(exchange);
+	}
+
+	private void followList(final HttpExchange exchange,
+		final List<NameValuePair> params, final boolean friends)
+		throws IOException {
+		final String screenName = getScreenName(params);
+		if(screenName == null) {
+			sendError(exchange, SC_NOT_FOUND, 50, "User not found.");
+			return;
+		}
+		final int count = getCount(params, DEFAULT_COUNT, MAX_COUNT);
+		final long cursor = getLong(params, "cursor", -1L);
+		// Cursors here are just the index of the first user on the page;
+		// -1 is the first page and 0 means there are no more.
+		final int start = (cursor < 0L) ? 0 : (int)Math.min(cursor,
+			Integer.MAX_VALUE);
+		final int total = friends ? data_.getFriendsCount(screenName) :
+			data_.getFollowersCount(screenName);
+		final int end = Math.min(total, start + count);
+		final long next = (end < total) ? end : 0L;
+		final long previous = (start == 0) ? 0L : -Math.max(1, start - count);
+		final JsonResponse json = new JsonResponse();
+		final JsonWriter w = json.writer_;
+		w.beginObject();
+		w.name("users").beginArray();
+		for(int i = start; i < end; i++) {
+			data_.writeUser(w, data_.getFollow(screenName, friends, i));
+		}
+		w.endArray();
+		w.name("next_cursor").value(next);
+		w.name("next_cursor_str").value(Long.toString(next));
+		w.name("previous_cursor").value(previous);
+		w.name("previous_cursor_str").value(Long.toString(previous));
+		w.endObject();
+		json.send(exchange);
+	}
+
+	private void userTimeline(final HttpExchange exchange,
+		final List<NameValuePair> params) throws IOException {
+		final String screenName = getScreenName(params);
+		if(screenName == null) {
+			sendError(exchange, SC_NOT_FOUND, 34,
+				"Sorry, that page does not exist");
+			return;
+		}
+		final JsonResponse json = new JsonResponse();
+		json.writer_.beginArray();
+		data_.getTimeline(screenName).write(json.writer_,
+			getLong(params, "max_id", 0L), getLong(params, "since_id", 0L),
+			getCount(params, DEFAULT_COUNT, MAX_COUNT));
+		json.writer_.endArray();
+		json.send(exchange);
+	}
+
+	private void searchTweets(final HttpExchange exchange,
+		final List<NameValuePair> params) throws IOException {
+		final String query = getParam(params, "q");
+		if(query == null || query.isEmpty()) {
+			sendError(exchange, SC_BAD_REQUEST, 25,
+				"Query parameters are missing.");
+			return;
+		}
+		final long sinceId = getLong(params, "since_id", 0L);
+		final JsonResponse json = new JsonResponse();
+		final JsonWriter w = json.writer_;
+		w.beginObject();
+		w.name("statuses").beginArray();
+		final int count = data_.getSearch(query).write(w,
+			getLong(params, "max_id", 0L), sinceId,
+			getCount(params, DEFAULT_SEARCH_COUNT, MAX_SEARCH_COUNT));
+		w.endArray();
+		w.name("search_metadata").beginObject();
+		w.name("count").value(count);
+		w.name("since_id").value(sinceId);
+		w.name("since_id_str").value(Long.toString(sinceId));
+		w.name("query").value(query);
+		w.endObject();
+		w.endObject();
+		json.send(exchange);
+	}
+
+	private void statusesUpdate(final HttpExchange exchange,
+		final List<NameValuePair> params, final String token)
+		throws IOException {
+		final String status = getParam(params, "status");
+		if(status == null) {
+			sendError(exchange, SC_BAD_REQUEST, 38,
+				"status parameter is missing.");
+			return;
+		}
+		final IssuedToken issued = (token == null) ? null :
+			accessTokens_.get(token);
+		if(issued == null) {
+			sendError(exchange, SC_FORBIDDEN, 220,
+				"Your credentials do not allow access to this resource.");
+			return;
+		}
+		final JsonResponse json = new JsonResponse();
+		data_.writeTweet(json.writer_, data_.newTweetId(issued.screenName_),
+			status, issued.screenName_);
+		json.send(exchange);
+	}
+
+	private void requestToken(final HttpExchange exchange)
+		throws IOException {
+		final long n = issued_.incrementAndGet();
+		final String token = "request-" + n;
+		final String secret = newSecret();
+		requestTokens_.put(token, new IssuedToken(secret, null));
+		sendForm(exchange, "oauth_token=" + token + "&oauth_token_secret=" +
+			secret + "&oauth_callback_confirmed=true");
+	}
+
+	private void accessToken(final HttpExchange exchange,
+		final List<NameValuePair> params, final String token,
+		final List<NameValuePair> oauth) throws IOException {
+		final String screenName;
+		if("client_auth".equals(getParam(params, "x_auth_mode"))) {
+			// xAuth, any username and password will do.
+			screenName = getParam(params, "x_auth_username");
+			if(screenName == null || getParam(params,
+				"x_auth_password") == null) {
+				sendError(exchange, SC_UNAUTHORIZED, 32,
+					"Could not authenticate you.");
+				return;
+			}
+		} else {
+			// Trading an authorized request token for an access token.
+			if(token == null || requestTokens_.remove(token) == null ||
+				getParam(oauth, "oauth_verifier") == null) {
+				sendError(exchange, SC_UNAUTHORIZED, 89,
+					"Invalid or expired token.");
+				return;
+			}
+			screenName = "oauthuser" + issued_.get();
+		}
+		final long userId = data_.getUserId(screenName);
+		final String accessToken = userId + "-access" +
+			issued_.incrementAndGet();
+		final String secret = newSecret();
+		accessTokens_.put(accessToken, new IssuedToken(secret, screenName));
+		sendForm(exchange, "oauth_token=" + accessToken +
+			"&oauth_token_secret=" + secret + "&user_id=" + userId +
+			"&screen_name=" + screenName);
+	}
+
+	private boolean verify(final HttpExchange exchange,
+		final List<NameValuePair> params, final List<NameValuePair> oauth)
+		throws Exception {
+		if(oauth == null || !consumerKey_.equals(getParam(oauth,
+			"oauth_consumer_key"))) {
+			return false;
+		}
+		final String url = getSignedUrl(exchange);
+		final String method = exchange.getRequestMethod();
+		final String token = getParam(oauth, "oauth_token");
+		if(token == null) {
+			return FakeOAuthVerifier.verify(method, url, params, oauth,
+				consumerSecret_, "");
+		}
+		final IssuedToken access = accessTokens_.get(token);
+		if(access != null) {
+			return FakeOAuthVerifier.verify(method, url, params, oauth,
+				consumerSecret_, access.secret_);
+		}
+		final IssuedToken request = requestTokens_.get(token);
+		// Request tokens are traded in by the client signing with the
+		// consumer alone, the token riding along as a plain parameter.
+		return request != null && (FakeOAuthVerifier.verify(method, url,
+			params, oauth, consumerSecret_, request.secret_) ||
+			FakeOAuthVerifier.verify(method, url, params, oauth,
+				consumerSecret_, ""));
+	}
+
+	/**
+	 * The URL the client signed: the Host header names the host it
+	 * thought it was talking to, over HTTPS unless it knew it was
+	 * talking to us.
+	 */
+	private String getSignedUrl(final HttpExchange exchange) {
+		String host = exchange.getRequestHeaders().getFirst(HOST_HEADER);
+		if(host == null) {
+			host = "api.twitter.com";
+		}
+		host = host.toLowerCase(Locale.US);
+		final String local = ":" + getPort();
+		final boolean direct = host.endsWith(local);
+		if(!direct && host.endsWith(":443")) {
+			host = host.substring(0, host.length() - 4);
+		}
+		return (direct ? "http://" : "https://") + host +
+			exchange.getRequestURI().getRawPath();
+	}
+
+	private void delay() throws InterruptedException {
+		if(maxLatencyMillis_ <= 0L) {
+			return;
+		}
+		final long delay = (maxLatencyMillis_ > minLatencyMillis_) ?
+			minLatencyMillis_ + ThreadLocalRandom.current().nextLong(
+				maxLatencyMillis_ - minLatencyMillis_ + 1L) :
+			minLatencyMillis_;
+		Thread.sleep(delay);
+	}
+
+	private void countRequest(final String path) {
+		AtomicLong count = requestsByPath_.get(path);
+		if(count == null) {
+			final AtomicLong newCount = new AtomicLong();
+			count = requestsByPath_.putIfAbsent(path, newCount);
+			if(count == null) {
+				count = newCount;
+			}
+		}
+		count.incrementAndGet();
+	}
+
+	private RateLimitWindow getWindow(final String key, final int limit) {
+		RateLimitWindow w = windows_.get(key);
+		if(w == null) {
+			final RateLimitWindow newWindow = new RateLimitWindow(limit);
+			w = windows_.putIfAbsent(key, newWindow);
+			if(w == null) {
+				w = newWindow;
+			}
+		}
+		return w;
+	}
+
+	private static final String getScreenName(
+		final List<NameValuePair> params) {
+		final String screenName = getParam(params, "screen_name");
+		if(screenName != null) {
+			return screenName;
+		}
+		final String userId = getParam(params, "user_id");
+		return (userId != null) ? "user" + userId : null;
+	}
+
+	private static final int getCount(final List<NameValuePair> params,
+		final int defaultCount, final int maxCount) {
+		final long count = getLong(params, "count", defaultCount);
+		return (int)Math.max(1L, Math.min(count, maxCount));
+	}
+
+	private static final long getLong(final List<NameValuePair> params,
+		final String name, final long defaultValue) {
+		final String value = getParam(params, name);
+		if(value == null) {
+			return defaultValue;
+		}
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static final String newSecret() {
+		return Long.toHexString(ThreadLocalRandom.current().nextLong()) +
+			Long.toHexString(ThreadLocalRandom.current().nextLong());
+	}
+
+	private static final void sendForm(final HttpExchange exchange,
+		final String form) throws IOException {
+		send(exchange, SC_OK, HTML_CONTENT_TYPE, form.getBytes(UTF_8));
+	}
+
+	private static final void sendError(final HttpExchange exchange,
+		final int status, final int code, final String message)
+		throws IOException {
+		final JsonResponse json = new JsonResponse();
+		final JsonWriter w = json.writer_;
+		w.beginObject();
+		w.name("errors").beginArray();
+		w.beginObject();
+		w.name("code").value(code);
+		w.name("message").value(message);
+		w.endObject();
+		w.endArray();
+		w.endObject();
+		json.send(exchange, status);
+	}
+
+	private static final void send(final HttpExchange exchange,
+		final int status, final String contentType, final byte[] body)
+		throws IOException {
+		exchange.getResponseHeaders().set(CONTENT_TYPE_HEADER, contentType);
+		exchange.sendResponseHeaders(status, body.length);
+		final OutputStream os = exchange.getResponseBody();
+		try {
+			os.write(body);
+		} finally {
+			os.close();
+		}
+	}
+
+	/**
+	 * Buffers a JSON response body so its length is known up front.
+	 */
+	private static final class JsonResponse {
+
+		private final ByteArrayOutputStream body_;
+		private final JsonWriter writer_;
+
+		private JsonResponse() {
+			body_ = new ByteArrayOutputStream(4096);
+			writer_ = new JsonWriter(new OutputStreamWriter(body_, UTF_8));
+		}
+
+		private void send(final HttpExchange exchange) throws IOException {
+			send(exchange, SC_OK);
+		}
+
+		private void send(final HttpExchange exchange, final int status)
+			throws IOException {
+			writer_.flush();
+			FakeTwitterServer.send(exchange, status, JSON_CONTENT_TYPE,
+				body_.toByteArray());
+		}
+
+	}
+
+	private static final class IssuedToken {
+
+		private final String secret_;
+		private final String screenName_;
+
+		private IssuedToken(final String secret, final String screenName) {
+			secret_ = secret;
+			screenName_ = screenName;
+		}
+
+	}
+
+	/**
+	 * Guarded by its own monitor.
+	 */
+	private static final class RateLimitWindow {
+
+		private final int limit_;
+		private int remaining_;
+		private long resetAt_;
+
+		private RateLimitWindow(final int limit) {
+			limit_ = limit;
+			resetAt_ = 0L;
+		}
+
+		/**
+		 * Uses up one request, returning how many are left, or -1 if
+		 * there were none left to use.
+		 */
+		private int take() {
+			final long now = System.currentTimeMillis();
+			if(now >= resetAt_) {
+				remaining_ = limit_;
+				resetAt_ = now + RATE_LIMIT_WINDOW_MS;
+			}
+			if(remaining_ == 0) {
+				return -1;
+			}
+			return --remaining_;
+		}
+
+	}
+
+	public static final Builder builder() {
+		return new Builder();
+	}
+
+	public static final class Builder {
+
+		private int port_ = 0;
+		private int threads_ = 64;
+		private long seed_ = 0L;
+		private long minLatencyMillis_ = 0L;
+		private long maxLatencyMillis_ = 0L;
+		private double tooManyRequestsRate_ = 0.0d;
+		private final Map<String,Integer> rateLimits_;
+		private boolean enforceRateLimits_ = true;
+		private boolean verifySignatures_ = false;
+		private String consumerKey_ = "fake-consumer-key";
+		private String consumerSecret_ = "fake-consumer-secret";
+		private String token_ = "1-fake-access-token";
+		private String tokenSecret_ = "fake-access-token-secret";
+		private String screenName_ = "fakeuser";
+
+		private Builder() {
+			// The real API's limits, per 15 minute window, per token.
+			rateLimits_ = new HashMap<String,Integer>();
+			rateLimits_.put(USERS_SHOW_PATH, 180);
+			rateLimits_.put(FRIENDS_LIST_PATH, 15);
+			rateLimits_.put(FOLLOWERS_LIST_PATH, 15);
+			rateLimits_.put(USER_TIMELINE_PATH, 180);
+			rateLimits_.put(SEARCH_TWEETS_PATH, 180);
+		}
+
+		/**
+		 * Defaults to any free port.
+		 */
+		public Builder setPort(final int port) {
+			port_ = port;
+			return this;
+		}
+
+		public Builder setThreads(final int threads) {
+			checkArgument(threads > 0, "Threads must be greater than " +
+				"zero: %s", threads);
+			threads_ = threads;
+			return this;
+		}
+
+		/**
+		 * The same seed always makes up the same data.
+		 */
+		public Builder setSeed(final long seed) {
+			seed_ = seed;
+			return this;
+		}
+
+		/**
+		 * Delays every response by somewhere between min and max.
+		 */
+		public Builder setLatency(final long min, final long max,
+			final TimeUnit unit) {
+			checkArgument(min >= 0L && min <= max, "Latency must be " +
+				"non-negative, and min no greater than max: %s, %s", min, max);
+			minLatencyMillis_ = unit.toMillis(min);
+			maxLatencyMillis_ = unit.toMillis(max);
+			return this;
+		}
+
+		/**
+		 * Answers this fraction of requests (0.0 to 1.0) with a 429,
+		 * whatever their rate limit window says.
+		 */
+		public Builder setTooManyRequestsRate(final double rate) {
+			checkArgument(rate >= 0.0d && rate <= 1.0d, "Rate must be " +
+				"between 0 and 1: %s", rate);
+			tooManyRequestsRate_ = rate;
+			return this;
+		}
+
+		/**
+		 * Overrides the requests allowed per 15 minute window, per token,
+		 * for the endpoint at the given path; a limit of zero or less
+		 * removes the endpoint's rate limit altogether.
+		 */
+		public Builder setRateLimit(final String path, final int limit) {
+			checkNotNull(path, "Path cannot be null.");
+			if(limit > 0) {
+				rateLimits_.put(path, limit);
+			} else {
+				rateLimits_.remove(path);
+			}
+			return this;
+		}
+
+		/**
+		 * If false, rate limit headers are still sent but exhausted
+		 * windows are never enforced.  Defaults to true.
+		 */
+		public Builder setEnforceRateLimits(final boolean enforce) {
+			enforceRateLimits_ = enforce;
+			return this;
+		}
+
+		/**
+		 * If true, requests that aren't properly signed with these
+		 * credentials (or tokens this server handed out) get a 401.
+		 */
+		public Builder setVerifySignatures(final boolean verify) {
+			verifySignatures_ = verify;
+			return this;
+		}
+
+		public Builder setCredentials(final String consumerKey,
+			final String consumerSecret, final String token,
+			final String tokenSecret) {
+			consumerKey_ = checkNotNull(consumerKey);
+			consumerSecret_ = checkNotNull(consumerSecret);
+			token_ = checkNotNull(token);
+			tokenSecret_ = checkNotNull(tokenSecret);
+			return this;
+		}
+
+		/**
+		 * Who the default token belongs to, and so who statuses/update
+		 * tweets as.
+		 */
+		public Builder setScreenName(final String screenName) {
+			screenName_ = checkNotNull(screenName);
+			return this;
+		}
+
+		/**
+		 * Binds and starts the server.
+		 */
+		public FakeTwitterServer build() throws IOException {
+			return new FakeTwitterServer(this);
+		}
+
+	}
+
+}